@@ -38,6 +38,8 @@ val lombokVersion = project.ext["lombokVersion"] as String
 val jmhSdkVersion = project.ext["jmhVersion"] as String
 val rocksdbVersion = project.ext["rocksdbVersion"] as String
 val ehcacheVersion = project.ext["ehcacheVersion"] as String
+val lz4Version = project.ext["lz4Version"] as String
+val zstdVersion = project.ext["zstdVersion"] as String
 
 dependencies {
     implementation("org.corfudb:universe-core:1.0.0-SNAPSHOT")
@@ -58,6 +60,8 @@ dependencies {
 
     implementation("org.rocksdb:rocksdbjni:${rocksdbVersion}")
     implementation("org.ehcache:ehcache:${ehcacheVersion}")
+    implementation("org.lz4:lz4-java:${lz4Version}")
+    implementation("com.github.luben:zstd-jni:${zstdVersion}")
 
     implementation("org.assertj:assertj-core:${assertjVersion}")
 
@@ -79,6 +83,7 @@ tasks {
         humanOutputFile = file("${buildDir}/reports/jmh/human.txt") // human-readable output file
         resultsFile = file("${buildDir}/reports/jmh/results.txt") // results file
         resultFormat = "CSV" // Result format type (one of CSV, JSON, NONE, SCSV, TEXT)
+        profilers = listOf("gc") // Report allocation rate and bytes allocated per operation
     }
 
     spotbugsJmh {
@@ -1,25 +1,73 @@
 package org.corfudb.benchmarks.runtime.collections;
 
+import org.corfudb.benchmarks.runtime.collections.experiment.ehcache.EhCacheMap;
+import org.corfudb.benchmarks.runtime.collections.experiment.rocksdb.RocksDbMap;
+import org.corfudb.benchmarks.runtime.collections.experiment.rocksdb.RocksDbSnapshot;
 import org.corfudb.benchmarks.runtime.collections.helper.CorfuTableBenchmarkHelper;
+import org.corfudb.benchmarks.runtime.collections.state.CompressionCounters;
+import org.corfudb.benchmarks.runtime.collections.state.EhCacheState.EhCacheStateForBatch;
 import org.corfudb.benchmarks.runtime.collections.state.EhCacheState.EhCacheStateForGet;
+import org.corfudb.benchmarks.runtime.collections.state.EhCacheState.EhCacheStateForNearCache;
 import org.corfudb.benchmarks.runtime.collections.state.EhCacheState.EhCacheStateForPut;
+import org.corfudb.benchmarks.runtime.collections.state.HashMapState.HashMapStateForCompression;
 import org.corfudb.benchmarks.runtime.collections.state.HashMapState.HashMapStateForGet;
 import org.corfudb.benchmarks.runtime.collections.state.HashMapState.HashMapStateForPut;
+import org.corfudb.benchmarks.runtime.collections.state.GcCounters;
+import org.corfudb.benchmarks.runtime.collections.state.HeapCounters;
+import org.corfudb.benchmarks.runtime.collections.state.IntMapState.IntMapStateForGet;
+import org.corfudb.benchmarks.runtime.collections.state.IntMapState.IntMapStateForPut;
+import org.corfudb.benchmarks.runtime.collections.state.MappedLogState.MappedLogStateForGet;
+import org.corfudb.benchmarks.runtime.collections.state.MappedLogState.MappedLogStateForPut;
+import org.corfudb.benchmarks.runtime.collections.state.MappedLogState.MappedLogStateForReopen;
+import org.corfudb.benchmarks.runtime.collections.state.MappedLogState.MappedLogStateForScan;
+import org.corfudb.benchmarks.runtime.collections.state.NearCacheCounters;
+import org.corfudb.benchmarks.runtime.collections.state.OffHeapState.OffHeapStateForAccess;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbCounters;
 import org.corfudb.benchmarks.runtime.collections.state.RocksDbState;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForCodec;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForLookup;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForMultiGet;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForNearCache;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForProfile;
 import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForPut;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForPutAll;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForRange;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForRemove;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForReopen;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForScan;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForSize;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateAfterClear;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForClear;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForCompaction;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForCompression;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForEviction;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForSnapshot;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForTables;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForUpdate;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
 import org.openjdk.jmh.results.format.ResultFormatType;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.rocksdb.RocksDBException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 /**
  * CorfuTable benchmark.
@@ -44,6 +92,7 @@ public class CorfuTableBenchmark {
         Options opt = new OptionsBuilder()
                 .include(benchmarkName)
                 .shouldFailOnError(true)
+                .addProfiler(GCProfiler.class)
 
                 .resultFormat(ResultFormatType.CSV)
                 .result("build/" + benchmarkName + ".csv")
@@ -58,15 +107,47 @@ public class CorfuTableBenchmark {
      *
      * @param state     benchmark state
      * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
      */
     @Benchmark
-    public void rocksDbPut(RocksDbStateForPut state, Blackhole blackhole) {
+    public void rocksDbPut(RocksDbStateForPut state, Blackhole blackhole,
+                           RocksDbCounters counters) {
         CorfuTableBenchmarkHelper helper = state.getHelper();
         Integer key = helper.generate();
         String result = helper.getUnderlyingMap().put(key, helper.generateValue());
         blackhole.consume(result);
     }
 
+    /**
+     * Bulk put benchmark for RocksDb, one operation is a putAll call of a batch of entries
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    public void rocksDbPutAll(RocksDbStateForPutAll state, Blackhole blackhole,
+                              RocksDbCounters counters) {
+        Map<Integer, String> batch = state.nextBatch();
+        state.getHelper().getUnderlyingMap().putAll(batch);
+        blackhole.consume(batch);
+    }
+
+    /**
+     * Size operation latency for RocksDb
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void rocksDbSize(RocksDbStateForSize state, Blackhole blackhole,
+                            RocksDbCounters counters) {
+        blackhole.consume(state.getHelper().getTable().size());
+    }
+
     /**
      * Put operation benchmark for EhCache
      *
@@ -85,9 +166,11 @@ public class CorfuTableBenchmark {
      *
      * @param state     benchmark state
      * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
      */
     @Benchmark
-    public void rocksDbGet(RocksDbState.RocksDbStateForGet state, Blackhole blackhole) {
+    public void rocksDbGet(RocksDbState.RocksDbStateForGet state, Blackhole blackhole,
+                           RocksDbCounters counters) {
         CorfuTableBenchmarkHelper helper = state.getHelper();
         int key = helper.generate();
         String value = helper.getTable().get(key);
@@ -100,48 +183,928 @@ public class CorfuTableBenchmark {
     }
 
     /**
-     * Get operation benchmark for ehCache
+     * Put operation benchmark for RocksDb, compares serialization buffer allocation strategies
      *
      * @param state     benchmark state
      * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
      */
     @Benchmark
-    public void ehCacheGet(EhCacheStateForGet state, Blackhole blackhole) {
+    public void rocksDbCodecPut(RocksDbStateForCodec state, Blackhole blackhole,
+                                RocksDbCounters counters) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        String result = helper.getUnderlyingMap().put(helper.generate(), helper.generateValue());
+        blackhole.consume(result);
+    }
+
+    /**
+     * Get operation benchmark for RocksDb, compares serialization buffer allocation strategies
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    public void rocksDbCodecGet(RocksDbStateForCodec state, Blackhole blackhole,
+                                RocksDbCounters counters) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        int key = helper.generate();
+        String value = helper.getUnderlyingMap().get(key);
+
+        if (value == null) {
+            throw new IllegalStateException("The value not found in the cache. Key: " + key);
+        }
+
+        blackhole.consume(value);
+    }
+
+    /**
+     * Hit-heavy lookup benchmark for RocksDb: get of existing keys
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    public void rocksDbGetHit(RocksDbStateForLookup state, Blackhole blackhole,
+                              RocksDbCounters counters) {
         CorfuTableBenchmarkHelper helper = state.getHelper();
         int key = helper.generate();
         String value = helper.getTable().get(key);
+
         if (value == null) {
             throw new IllegalStateException("The value not found in the cache. Key: " + key);
         }
+
         blackhole.consume(value);
     }
 
     /**
-     * Put operation benchmark for HashMap
+     * Miss-heavy lookup benchmark for RocksDb: get of missing keys
      *
      * @param state     benchmark state
      * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
      */
     @Benchmark
-    public void hashMapPut(HashMapStateForPut state, Blackhole blackhole) {
+    public void rocksDbGetMiss(RocksDbStateForLookup state, Blackhole blackhole,
+                               RocksDbCounters counters) {
         CorfuTableBenchmarkHelper helper = state.getHelper();
-        String value = helper.getTable().put(helper.generate(), helper.generateValue());
+        int key = helper.generateMissing();
+        String value = helper.getTable().get(key);
+
+        if (value != null) {
+            throw new IllegalStateException("Unexpected value in the cache. Key: " + key);
+        }
+
         blackhole.consume(value);
     }
 
     /**
-     * Get operation benchmark for HashMap
+     * Hit-heavy containsKey benchmark for RocksDb
      *
      * @param state     benchmark state
      * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
      */
     @Benchmark
-    public void hashMapGet(HashMapStateForGet state, Blackhole blackhole) {
+    public void rocksDbContainsKeyHit(RocksDbStateForLookup state, Blackhole blackhole,
+                                      RocksDbCounters counters) {
         CorfuTableBenchmarkHelper helper = state.getHelper();
-        String value = helper.getTable().get(helper.generate());
+        blackhole.consume(helper.getTable().containsKey(helper.generate()));
+    }
+
+    /**
+     * Miss-heavy containsKey benchmark for RocksDb
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    public void rocksDbContainsKeyMiss(RocksDbStateForLookup state, Blackhole blackhole,
+                                       RocksDbCounters counters) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getTable().containsKey(helper.generateMissing()));
+    }
+
+    /**
+     * Remove benchmark for RocksDb. CorfuTable deletes through Map.remove, the removal policy of the map
+     * decides whether the delete reads the value. Every removed key is put back, so that every remove hits
+     * an existing key and every key is written once between removes, as single delete requires.
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    public void rocksDbRemove(RocksDbStateForRemove state, Blackhole blackhole,
+                              RocksDbCounters counters) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        int key = helper.generate();
+        helper.getTable().delete(key);
+        blackhole.consume(helper.getTable().put(key, helper.generateValue()));
+    }
+
+    /**
+     * Short-lived keys benchmark for RocksDb: a new key is written and removed right away,
+     * each remove leaves a tombstone behind.
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    public void rocksDbUpdateThenRemove(RocksDbStateForRemove state, Blackhole blackhole,
+                                        RocksDbCounters counters) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        int key = helper.generateMissing();
+        helper.getTable().put(key, helper.generateValue());
+        blackhole.consume(helper.getTable().remove(key));
+    }
+
+    /**
+     * Full scan latency for RocksDb, one operation reads and deserializes every entry of the table
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void rocksDbScan(RocksDbStateForScan state, Blackhole blackhole,
+                            RocksDbCounters counters) {
+        Stream<Map.Entry<Integer, String>> entries = state.getHelper().getTable().entryStream();
+        if (state.isParallel()) {
+            entries = entries.parallel();
+        }
+
+        try (Stream<Map.Entry<Integer, String>> scan = entries) {
+            blackhole.consume(scan.mapToLong(entry -> entry.getValue().length()).sum());
+        }
+    }
+
+    /**
+     * Get of existing keys for every RocksDb option profile
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    public void rocksDbProfileGet(RocksDbStateForProfile state, Blackhole blackhole,
+                                  RocksDbCounters counters) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        int key = helper.generate();
+        String value = helper.getTable().get(key);
+
+        if (value == null) {
+            throw new IllegalStateException("The value not found in the cache. Key: " + key);
+        }
+
+        blackhole.consume(value);
+    }
+
+    /**
+     * Get of missing keys for every RocksDb option profile
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    public void rocksDbProfileGetMiss(RocksDbStateForProfile state, Blackhole blackhole,
+                                      RocksDbCounters counters) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getTable().get(helper.generateMissing()));
+    }
+
+    /**
+     * Put (overwrite) for every RocksDb option profile
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    public void rocksDbProfilePut(RocksDbStateForProfile state, Blackhole blackhole,
+                                  RocksDbCounters counters) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getTable().put(helper.generate(), helper.generateValue()));
+    }
+
+    /**
+     * Full sequential scan latency for every RocksDb option profile
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void rocksDbProfileScan(RocksDbStateForProfile state, Blackhole blackhole,
+                                   RocksDbCounters counters) {
+        try (Stream<Map.Entry<Integer, String>> scan = state.getHelper().getTable().entryStream()) {
+            blackhole.consume(scan.mapToLong(entry -> entry.getValue().length()).sum());
+        }
+    }
+
+    /**
+     * Batched lookup for RocksDb, one operation reads a batch of keys with a single multiGet call
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    public void rocksDbMultiGet(RocksDbStateForMultiGet state, Blackhole blackhole,
+                                RocksDbCounters counters) {
+        List<Integer> keys = state.nextKeys();
+        RocksDbMap<Integer, String> map = state.getHelper().getUnderlyingMap();
+        blackhole.consume(map.getAll(keys));
+    }
+
+    /**
+     * Baseline for {@link #rocksDbMultiGet}, one operation reads the same number of keys with single gets
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    public void rocksDbMultiGetBaseline(RocksDbStateForMultiGet state, Blackhole blackhole,
+                                        RocksDbCounters counters) {
+        List<Integer> keys = state.nextKeys();
+        RocksDbMap<Integer, String> map = state.getHelper().getUnderlyingMap();
+        for (Integer key : keys) {
+            blackhole.consume(map.get(key));
+        }
+    }
+
+    /**
+     * Range scan latency for RocksDb, the range is read by a bounded iterator over order-preserving keys
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void rocksDbRangeScan(RocksDbStateForRange state, Blackhole blackhole,
+                                 RocksDbCounters counters) {
+        int from = state.nextFrom();
+        RocksDbMap<Integer, String> map = state.getHelper().getUnderlyingMap();
+
+        try (Stream<Map.Entry<Integer, String>> range = map.range(from, from + state.getRangeSize())) {
+            blackhole.consume(range.mapToLong(entry -> entry.getValue().length()).sum());
+        }
+    }
+
+    /**
+     * Baseline for {@link #rocksDbRangeScan}: the same range is selected by filtering a full scan,
+     * the only way to run a range query over keys that don't preserve the order
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void rocksDbRangeScanBaseline(RocksDbStateForRange state, Blackhole blackhole,
+                                         RocksDbCounters counters) {
+        int from = state.nextFrom();
+        int to = from + state.getRangeSize();
+
+        try (Stream<Map.Entry<Integer, String>> scan = state.getHelper().getTable().entryStream()) {
+            blackhole.consume(scan
+                    .filter(entry -> entry.getKey() >= from && entry.getKey() < to)
+                    .mapToLong(entry -> entry.getValue().length())
+                    .sum()
+            );
+        }
+    }
+
+    /**
+     * Writer of the snapshot reads group, puts random keys and publishes new versions
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    @Group("rocksDbSnapshotReads")
+    @GroupThreads(2)
+    @BenchmarkMode({Mode.SampleTime, Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void rocksDbSnapshotWriter(RocksDbStateForSnapshot state, Blackhole blackhole,
+                                      RocksDbCounters counters) {
+        blackhole.consume(state.write());
+    }
+
+    /**
+     * Reader of the snapshot reads group, reads a random key at the latest version
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    @Group("rocksDbSnapshotReads")
+    @GroupThreads(2)
+    @BenchmarkMode({Mode.SampleTime, Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void rocksDbSnapshotReader(RocksDbStateForSnapshot state, Blackhole blackhole,
+                                      RocksDbCounters counters) {
+        try (RocksDbSnapshot<Integer, String> snapshot = state.acquireLatest()) {
+            blackhole.consume(snapshot.get(state.getHelper().generate()));
+        }
+    }
+
+    /**
+     * Writer of the baseline group for {@link #rocksDbSnapshotReader}
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    @Group("rocksDbLatestReads")
+    @GroupThreads(2)
+    @BenchmarkMode({Mode.SampleTime, Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void rocksDbLatestWriter(RocksDbStateForSnapshot state, Blackhole blackhole,
+                                    RocksDbCounters counters) {
+        blackhole.consume(state.write());
+    }
+
+    /**
+     * Reader of the baseline group for {@link #rocksDbSnapshotReader}, reads the current state without a snapshot
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    @Group("rocksDbLatestReads")
+    @GroupThreads(2)
+    @BenchmarkMode({Mode.SampleTime, Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void rocksDbLatestReader(RocksDbStateForSnapshot state, Blackhole blackhole,
+                                    RocksDbCounters counters) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getTable().get(helper.generate()));
+    }
+
+    /**
+     * Get of an existing key from a random table of a shared database
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    public void rocksDbTablesGet(RocksDbStateForTables state, Blackhole blackhole, RocksDbCounters counters) {
+        CorfuTableBenchmarkHelper helper = state.nextTable();
+        int key = helper.generate();
+        String value = helper.getTable().get(key);
+
+        if (value == null) {
+            throw new IllegalStateException("The value not found in the cache. Key: " + key);
+        }
+
         blackhole.consume(value);
     }
 
+    /**
+     * Put into a random table of a shared database
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    public void rocksDbTablesPut(RocksDbStateForTables state, Blackhole blackhole, RocksDbCounters counters) {
+        CorfuTableBenchmarkHelper helper = state.nextTable();
+        blackhole.consume(helper.getTable().put(helper.generate(), helper.generateValue()));
+    }
+
+    /**
+     * Clear of a filled table, one clear per iteration.
+     * The engine statistics after every clear are logged by the state, jmh doesn't report aux counters
+     * of single shot benchmarks.
+     *
+     * @param state benchmark state
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public void rocksDbClear(RocksDbStateForClear state) {
+        state.getHelper().getTable().clear();
+    }
+
+    /**
+     * Put into a table right after it was cleared
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    public void rocksDbPutAfterClear(RocksDbStateAfterClear state, Blackhole blackhole, RocksDbCounters counters) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getTable().put(helper.generate(), helper.generateValue()));
+    }
+
+    /**
+     * Get of a deleted key right after the table was cleared, the lookup has to get through the tombstones
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    public void rocksDbGetAfterClear(RocksDbStateAfterClear state, Blackhole blackhole, RocksDbCounters counters) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getTable().get(helper.generate()));
+    }
+
+    /**
+     * Reads and counter increments, an increment is a single merge write
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    public void rocksDbCounterIncrement(RocksDbStateForUpdate state, Blackhole blackhole, RocksDbCounters counters) {
+        RocksDbMap<Integer, String> map = state.getHelper().getUnderlyingMap();
+        int key = state.getHelper().generate();
+
+        if (state.nextIsRead()) {
+            blackhole.consume(map.getCounter(key));
+        } else {
+            map.increment(key, 1);
+        }
+    }
+
+    /**
+     * Baseline for {@link #rocksDbCounterIncrement}, an increment is a get followed by a put
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    public void rocksDbCounterGetPut(RocksDbStateForUpdate state, Blackhole blackhole, RocksDbCounters counters) {
+        RocksDbMap<Integer, String> map = state.getHelper().getUnderlyingMap();
+        int key = state.getHelper().generate();
+
+        if (state.nextIsRead()) {
+            blackhole.consume(map.getCounter(key));
+        } else {
+            map.setCounter(key, map.getCounter(key) + 1);
+        }
+    }
+
+    /**
+     * Reads and read-modify-write updates of values with {@link RocksDbMap#merge}
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    public void rocksDbMerge(RocksDbStateForUpdate state, Blackhole blackhole, RocksDbCounters counters) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        RocksDbMap<Integer, String> map = helper.getUnderlyingMap();
+        int key = helper.generate();
+
+        if (state.nextIsRead()) {
+            blackhole.consume(map.get(key));
+        } else {
+            blackhole.consume(map.merge(key, helper.generateValue(), (previous, value) -> value));
+        }
+    }
+
+    /**
+     * Baseline for {@link #rocksDbMerge}, an update is a get followed by a put
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    public void rocksDbGetPut(RocksDbStateForUpdate state, Blackhole blackhole, RocksDbCounters counters) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        RocksDbMap<Integer, String> map = helper.getUnderlyingMap();
+        int key = helper.generate();
+
+        if (state.nextIsRead()) {
+            blackhole.consume(map.get(key));
+        } else {
+            String previous = map.get(key);
+            blackhole.consume(previous);
+            blackhole.consume(map.put(key, helper.generateValue()));
+        }
+    }
+
+    /**
+     * Writer of the compaction group: sustained puts of random keys.
+     * Every measurement iteration reports its own latency percentiles, so the iterations make up
+     * a timeline of the latency while compactions go through the levels. The average time run
+     * reports the compaction counters, jmh doesn't report aux counters of sampled benchmarks.
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    @Group("rocksDbCompaction")
+    @GroupThreads(2)
+    @BenchmarkMode({Mode.SampleTime, Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 1, time = 10)
+    @Measurement(iterations = 20, time = 30)
+    public void rocksDbCompactionWriter(RocksDbStateForCompaction state, Blackhole blackhole,
+                                        RocksDbCounters counters) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getTable().put(helper.generate(), helper.generateValue()));
+    }
+
+    /**
+     * Reader of the compaction group: gets of random existing keys
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    @Group("rocksDbCompaction")
+    @GroupThreads(2)
+    @BenchmarkMode({Mode.SampleTime, Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 1, time = 10)
+    @Measurement(iterations = 20, time = 30)
+    public void rocksDbCompactionReader(RocksDbStateForCompaction state, Blackhole blackhole,
+                                        RocksDbCounters counters) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getTable().get(helper.generate()));
+    }
+
+    /**
+     * Writer of the eviction group: a constant stream of inserts of new keys.
+     * Disk usage over the iterations is reported by the sstFilesBytes counter.
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    @Group("rocksDbEviction")
+    @GroupThreads(1)
+    @Warmup(iterations = 1, time = 10)
+    @Measurement(iterations = 10, time = 30)
+    public void rocksDbEvictionWriter(RocksDbStateForEviction state, Blackhole blackhole, RocksDbCounters counters) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getTable().put(state.nextKey(), helper.generateValue()));
+    }
+
+    /**
+     * Reader of the eviction group: lookups of recently inserted keys, misses once keys expire or get evicted
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     */
+    @Benchmark
+    @Group("rocksDbEviction")
+    @GroupThreads(3)
+    @Warmup(iterations = 1, time = 10)
+    @Measurement(iterations = 10, time = 30)
+    public void rocksDbEvictionReader(RocksDbStateForEviction state, Blackhole blackhole, RocksDbCounters counters) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getTable().get(state.recentKey()));
+    }
+
+    /**
+     * Get operation benchmark for ehCache
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     */
+    @Benchmark
+    public void ehCacheGet(EhCacheStateForGet state, Blackhole blackhole) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        int key = helper.generate();
+        String value = helper.getTable().get(key);
+        if (value == null) {
+            throw new IllegalStateException("The value not found in the cache. Key: " + key);
+        }
+        blackhole.consume(value);
+    }
+
+    /**
+     * Batched lookup for ehCache, one operation is a getAll call, see {@link #rocksDbMultiGet}
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     */
+    @Benchmark
+    public void ehCacheGetAll(EhCacheStateForBatch state, Blackhole blackhole) {
+        List<Integer> keys = state.nextKeys();
+        EhCacheMap<Integer, String> map = state.getHelper().getUnderlyingMap();
+        blackhole.consume(map.getAll(keys));
+    }
+
+    /**
+     * Bulk put for ehCache, one operation is a putAll call, see {@link #rocksDbPutAll}
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     */
+    @Benchmark
+    public void ehCachePutAll(EhCacheStateForBatch state, Blackhole blackhole) {
+        Map<Integer, String> batch = state.nextBatch();
+        state.getHelper().getUnderlyingMap().putAll(batch);
+        blackhole.consume(batch);
+    }
+
+    /**
+     * Put operation benchmark for HashMap
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     */
+    @Benchmark
+    public void hashMapPut(HashMapStateForPut state, Blackhole blackhole) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        String value = helper.getTable().put(helper.generate(), helper.generateValue());
+        blackhole.consume(value);
+    }
+
+    /**
+     * Get operation benchmark for HashMap
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  heap footprint of the table
+     * @param gc        garbage collections, compare with {@link #offHeapGet}
+     */
+    @Benchmark
+    public void hashMapGet(HashMapStateForGet state, Blackhole blackhole, HeapCounters counters, GcCounters gc) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        String value = helper.getTable().get(helper.generate());
+        blackhole.consume(value);
+    }
+
+    /**
+     * Put operation benchmark for the int-keyed open-addressing map
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     */
+    @Benchmark
+    public void intMapPut(IntMapStateForPut state, Blackhole blackhole) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        String value = helper.getTable().put(helper.generate(), helper.generateValue());
+        blackhole.consume(value);
+    }
+
+    /**
+     * Get operation benchmark for the int-keyed open-addressing map, compare with {@link #hashMapGet}
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  heap footprint of the table
+     */
+    @Benchmark
+    public void intMapGet(IntMapStateForGet state, Blackhole blackhole, HeapCounters counters) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        String value = helper.getTable().get(helper.generate());
+        blackhole.consume(value);
+    }
+
+    /**
+     * Get operation benchmark for the off-heap map. The heap stays small no matter how big the table is,
+     * the direct memory limit must fit the table.
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param gc        garbage collections
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-XX:MaxDirectMemorySize=32g"})
+    public void offHeapGet(OffHeapStateForAccess state, Blackhole blackhole, GcCounters gc) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getTable().get(helper.generate()));
+    }
+
+    /**
+     * Put operation benchmark for the off-heap map, every put overwrites an existing key
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param gc        garbage collections
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-XX:MaxDirectMemorySize=32g"})
+    public void offHeapPut(OffHeapStateForAccess state, Blackhole blackhole, GcCounters gc) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getTable().put(helper.generate(), helper.generateValue()));
+    }
+
+    /**
+     * Remove benchmark for the off-heap map. Every removed key is put back into the block
+     * the remove has just freed, so the benchmark measures the free list reuse.
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param gc        garbage collections
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-XX:MaxDirectMemorySize=32g"})
+    public void offHeapRemove(OffHeapStateForAccess state, Blackhole blackhole, GcCounters gc) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        int key = helper.generate();
+        helper.getTable().delete(key);
+        blackhole.consume(helper.getTable().put(key, helper.generateValue()));
+    }
+
+    /**
+     * Put operation benchmark for the memory-mapped log, compare with {@link #rocksDbPut}
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     */
+    @Benchmark
+    public void mappedLogPut(MappedLogStateForPut state, Blackhole blackhole) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getTable().put(helper.generate(), helper.generateValue()));
+    }
+
+    /**
+     * Get operation benchmark for the memory-mapped log, compare with {@link #rocksDbGet}
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     */
+    @Benchmark
+    public void mappedLogGet(MappedLogStateForGet state, Blackhole blackhole) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        int key = helper.generate();
+        String value = helper.getTable().get(key);
+
+        if (value == null) {
+            throw new IllegalStateException("The value not found in the log. Key: " + key);
+        }
+
+        blackhole.consume(value);
+    }
+
+    /**
+     * Full scan latency for the memory-mapped log, compare with {@link #rocksDbScan}
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void mappedLogScan(MappedLogStateForScan state, Blackhole blackhole) {
+        Stream<Map.Entry<Integer, String>> entries = state.getHelper().getTable().entryStream();
+        if (state.isParallel()) {
+            entries = entries.parallel();
+        }
+
+        try (Stream<Map.Entry<Integer, String>> scan = entries) {
+            blackhole.consume(scan.mapToLong(entry -> entry.getValue().length()).sum());
+        }
+    }
+
+    /**
+     * Recovery time of the memory-mapped log after a kill, one open per iteration
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @throws IOException io exception
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public void mappedLogReopen(MappedLogStateForReopen state, Blackhole blackhole) throws IOException {
+        blackhole.consume(state.reopen());
+    }
+
+    /**
+     * Recovery time of RocksDb with the write ahead log replay, one open per iteration
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @throws RocksDBException db exception
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public void rocksDbReopen(RocksDbStateForReopen state, Blackhole blackhole) throws RocksDBException {
+        blackhole.consume(state.reopen());
+    }
+
+    /**
+     * Skewed lookups for RocksDb through a near cache, compare the cache sizes with the undecorated map
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     * @param cache     near cache counters
+     */
+    @Benchmark
+    public void rocksDbNearCacheGet(RocksDbStateForNearCache state, Blackhole blackhole,
+                                    RocksDbCounters counters, NearCacheCounters cache) {
+        blackhole.consume(state.getNearCacheTable().get(state.nextKey()));
+    }
+
+    /**
+     * Skewed lookups for EhCache through a near cache, compare the cache sizes with the undecorated map
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param cache     near cache counters
+     */
+    @Benchmark
+    public void ehCacheNearCacheGet(EhCacheStateForNearCache state, Blackhole blackhole, NearCacheCounters cache) {
+        blackhole.consume(state.getNearCacheTable().get(state.nextKey()));
+    }
+
+    /**
+     * Get operation benchmark for HashMap with compressed values, compare the codecs
+     *
+     * @param state       benchmark state
+     * @param blackhole   jmh blackhole
+     * @param counters    heap footprint of the table
+     * @param compression compression counters
+     */
+    @Benchmark
+    public void hashMapCompressedGet(HashMapStateForCompression state, Blackhole blackhole,
+                                     HeapCounters counters, CompressionCounters compression) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getTable().get(helper.generate()));
+    }
+
+    /**
+     * Put operation benchmark for HashMap with compressed values, compare the codecs
+     *
+     * @param state       benchmark state
+     * @param blackhole   jmh blackhole
+     * @param counters    heap footprint of the table
+     * @param compression compression counters
+     */
+    @Benchmark
+    public void hashMapCompressedPut(HashMapStateForCompression state, Blackhole blackhole,
+                                     HeapCounters counters, CompressionCounters compression) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getTable().put(helper.generate(), helper.generateValue()));
+    }
+
+    /**
+     * Get operation benchmark for RocksDb with compressed values, compare the codecs
+     *
+     * @param state       benchmark state
+     * @param blackhole   jmh blackhole
+     * @param counters    rocksdb engine counters
+     * @param compression compression counters
+     */
+    @Benchmark
+    public void rocksDbCompressedGet(RocksDbStateForCompression state, Blackhole blackhole,
+                                     RocksDbCounters counters, CompressionCounters compression) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getTable().get(helper.generate()));
+    }
+
+    /**
+     * Put operation benchmark for RocksDb with compressed values, compare the codecs
+     *
+     * @param state       benchmark state
+     * @param blackhole   jmh blackhole
+     * @param counters    rocksdb engine counters
+     * @param compression compression counters
+     */
+    @Benchmark
+    public void rocksDbCompressedPut(RocksDbStateForCompression state, Blackhole blackhole,
+                                     RocksDbCounters counters, CompressionCounters compression) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getTable().put(helper.generate(), helper.generateValue()));
+    }
+
     /**
      * Get/Put 50x50 load for HashMap
      *
@@ -0,0 +1,217 @@
+package org.corfudb.benchmarks.runtime.collections;
+
+import org.corfudb.benchmarks.runtime.collections.helper.CorfuTableBenchmarkHelper;
+import org.corfudb.benchmarks.runtime.collections.helper.ThreadSweep;
+import org.corfudb.benchmarks.runtime.collections.state.EhCacheState.EhCacheStateForGet;
+import org.corfudb.benchmarks.runtime.collections.state.EhCacheState.EhCacheStateForPut;
+import org.corfudb.benchmarks.runtime.collections.state.HashMapState.HashMapStateForGet;
+import org.corfudb.benchmarks.runtime.collections.state.InsertKeys;
+import org.corfudb.benchmarks.runtime.collections.state.IntMapState.IntMapStateForGet;
+import org.corfudb.benchmarks.runtime.collections.state.MappedLogState.MappedLogStateForGet;
+import org.corfudb.benchmarks.runtime.collections.state.MappedLogState.MappedLogStateForPut;
+import org.corfudb.benchmarks.runtime.collections.state.OffHeapState.OffHeapStateForAccess;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForGet;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForPut;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.RunnerException;
+
+/**
+ * Throughput of the map backends from 1 to 32 threads, the runner repeats the benchmarks for every
+ * thread count, see {@link ThreadSweep}.
+ * <p>
+ * The benchmarks access the underlying maps directly. The states are shared by the threads, the keys
+ * and the values are generated by the random generator of the calling thread and the inserts take the keys
+ * of the thread partition ({@link InsertKeys}), so the threads contend on the maps only.
+ * The heap maps are not thread-safe, they are read only.
+ */
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 1, time = 3)
+@Measurement(iterations = 3, time = 10)
+@Threads(1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ScalabilityBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32};
+
+    /**
+     * Scalability benchmark for 1 to 32 threads
+     *
+     * @param args args
+     * @throws RunnerException jmh runner exception
+     */
+    public static void main(String[] args) throws RunnerException {
+        ThreadSweep.run(ScalabilityBenchmark.class, THREADS);
+    }
+
+    /**
+     * Get operation benchmark for HashMap
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     */
+    @Benchmark
+    public void hashMapGet(HashMapStateForGet state, Blackhole blackhole) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getUnderlyingMap().get(helper.generate()));
+    }
+
+    /**
+     * Get operation benchmark for the int-keyed open-addressing map
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     */
+    @Benchmark
+    public void intMapGet(IntMapStateForGet state, Blackhole blackhole) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getUnderlyingMap().get(helper.generate()));
+    }
+
+    /**
+     * Get operation benchmark for RocksDb
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     */
+    @Benchmark
+    public void rocksDbGet(RocksDbStateForGet state, Blackhole blackhole) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getUnderlyingMap().get(helper.generate()));
+    }
+
+    /**
+     * Put operation benchmark for RocksDb, the threads write the same keys
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     */
+    @Benchmark
+    public void rocksDbPut(RocksDbStateForPut state, Blackhole blackhole) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getUnderlyingMap().put(helper.generate(), helper.generateValue()));
+    }
+
+    /**
+     * Insert benchmark for RocksDb, every thread writes its own new keys
+     *
+     * @param state     benchmark state
+     * @param keys      keys of the thread
+     * @param blackhole jmh blackhole
+     */
+    @Benchmark
+    public void rocksDbInsert(RocksDbStateForPut state, InsertKeys keys, Blackhole blackhole) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        int key = keys.next(helper.getTableSize());
+        blackhole.consume(helper.getUnderlyingMap().put(key, helper.generateValue()));
+    }
+
+    /**
+     * Get operation benchmark for EhCache
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     */
+    @Benchmark
+    public void ehCacheGet(EhCacheStateForGet state, Blackhole blackhole) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getUnderlyingMap().get(helper.generate()));
+    }
+
+    /**
+     * Put operation benchmark for EhCache, the threads write the same keys
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     */
+    @Benchmark
+    public void ehCachePut(EhCacheStateForPut state, Blackhole blackhole) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getUnderlyingMap().put(helper.generate(), helper.generateValue()));
+    }
+
+    /**
+     * Insert benchmark for EhCache, every thread writes its own new keys
+     *
+     * @param state     benchmark state
+     * @param keys      keys of the thread
+     * @param blackhole jmh blackhole
+     */
+    @Benchmark
+    public void ehCacheInsert(EhCacheStateForPut state, InsertKeys keys, Blackhole blackhole) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        int key = keys.next(helper.getTableSize());
+        blackhole.consume(helper.getUnderlyingMap().put(key, helper.generateValue()));
+    }
+
+    /**
+     * Get operation benchmark for the off-heap map
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-XX:MaxDirectMemorySize=32g"})
+    public void offHeapGet(OffHeapStateForAccess state, Blackhole blackhole) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getUnderlyingMap().get(helper.generate()));
+    }
+
+    /**
+     * Put operation benchmark for the off-heap map, every put overwrites an existing key.
+     * There is no insert benchmark, the direct memory limit is sized for the table.
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     */
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-XX:MaxDirectMemorySize=32g"})
+    public void offHeapPut(OffHeapStateForAccess state, Blackhole blackhole) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getUnderlyingMap().put(helper.generate(), helper.generateValue()));
+    }
+
+    /**
+     * Get operation benchmark for the memory-mapped log
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     */
+    @Benchmark
+    public void mappedLogGet(MappedLogStateForGet state, Blackhole blackhole) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getUnderlyingMap().get(helper.generate()));
+    }
+
+    /**
+     * Put operation benchmark for the memory-mapped log, the threads write the same keys
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     */
+    @Benchmark
+    public void mappedLogPut(MappedLogStateForPut state, Blackhole blackhole) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(helper.getUnderlyingMap().put(helper.generate(), helper.generateValue()));
+    }
+
+    /**
+     * Insert benchmark for the memory-mapped log, every thread writes its own new keys
+     *
+     * @param state     benchmark state
+     * @param keys      keys of the thread
+     * @param blackhole jmh blackhole
+     */
+    @Benchmark
+    public void mappedLogInsert(MappedLogStateForPut state, InsertKeys keys, Blackhole blackhole) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        int key = keys.next(helper.getTableSize());
+        blackhole.consume(helper.getUnderlyingMap().put(key, helper.generateValue()));
+    }
+}
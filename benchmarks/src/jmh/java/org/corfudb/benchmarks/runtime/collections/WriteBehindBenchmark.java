@@ -0,0 +1,74 @@
+package org.corfudb.benchmarks.runtime.collections;
+
+import org.corfudb.benchmarks.runtime.collections.helper.CorfuTableBenchmarkHelper;
+import org.corfudb.benchmarks.runtime.collections.helper.ThreadSweep;
+import org.corfudb.benchmarks.runtime.collections.state.EhCacheState.EhCacheStateForWriteBehind;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbCounters;
+import org.corfudb.benchmarks.runtime.collections.state.RocksDbState.RocksDbStateForWriteBehind;
+import org.corfudb.benchmarks.runtime.collections.state.WriteBehindCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Put throughput and latency of the write-behind decorator compared with the synchronous puts.
+ * The runner repeats the benchmarks for every thread count, see {@link ThreadSweep}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 1, time = 3)
+@Measurement(iterations = 3, time = 10)
+@Threads(1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class WriteBehindBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16};
+
+    /**
+     * Write-behind benchmark for 1 to 16 threads
+     *
+     * @param args args
+     * @throws RunnerException jmh runner exception
+     */
+    public static void main(String[] args) throws RunnerException {
+
+        ThreadSweep.run(WriteBehindBenchmark.class, THREADS);
+    }
+
+    /**
+     * Put operation benchmark for RocksDb, synchronous or write-behind
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param counters  rocksdb engine counters
+     * @param writes    write-behind counters
+     */
+    @Benchmark
+    public void rocksDbPut(RocksDbStateForWriteBehind state, Blackhole blackhole,
+                           RocksDbCounters counters, WriteBehindCounters writes) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(state.getWriteTable().put(helper.generate(), helper.generateValue()));
+    }
+
+    /**
+     * Put operation benchmark for EhCache, synchronous or write-behind
+     *
+     * @param state     benchmark state
+     * @param blackhole jmh blackhole
+     * @param writes    write-behind counters
+     */
+    @Benchmark
+    public void ehCachePut(EhCacheStateForWriteBehind state, Blackhole blackhole, WriteBehindCounters writes) {
+        CorfuTableBenchmarkHelper helper = state.getHelper();
+        blackhole.consume(state.getWriteTable().put(helper.generate(), helper.generateValue()));
+    }
+}
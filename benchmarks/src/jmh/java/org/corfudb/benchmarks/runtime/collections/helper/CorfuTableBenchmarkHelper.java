@@ -1,14 +1,16 @@
 package org.corfudb.benchmarks.runtime.collections.helper;
 
 import lombok.Builder;
-import lombok.Builder.Default;
 import lombok.Getter;
 import lombok.NonNull;
 import org.corfudb.common.util.ClassUtils;
 import org.corfudb.runtime.collections.CorfuTable;
 
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Common corfu table configuration parameters
@@ -17,9 +19,6 @@ import java.util.Random;
 @Getter
 public class CorfuTableBenchmarkHelper {
 
-    @Default
-    private final Random random = new Random();
-
     @NonNull
     private final CorfuTable<Integer, String> table;
 
@@ -29,18 +28,34 @@ public class CorfuTableBenchmarkHelper {
     @NonNull
     protected ValueGenerator valueGenerator;
 
+    /**
+     * Distribution of the keys of {@link #generate()}
+     */
+    @NonNull
+    private final KeyDistribution keyDistribution;
+
     private final int dataSize;
 
     private final int tableSize;
 
     /**
-     * Generate a random number
+     * Generate a random key of the table, according to the key distribution
      *
-     * @return random number
+     * @return random key
      */
     public int generate() {
         check();
-        return random.nextInt(getTableSize() - 1);
+        return keyDistribution.next(getRandom());
+    }
+
+    /**
+     * Generate a random key that doesn't exist in a filled table.
+     * {@link #fillTable()} puts keys from 0 to tableSize, missing keys are taken from the next range.
+     *
+     * @return random missing key
+     */
+    public int generateMissing() {
+        return getTableSize() + generate();
     }
 
     /**
@@ -58,6 +73,79 @@ public class CorfuTableBenchmarkHelper {
         return this;
     }
 
+    /**
+     * Fill corfu table with random values in batches. Every batch is written by a single putAll call,
+     * which lets the underlying map use its bulk write path.
+     *
+     * @param batchSize number of entries in a batch
+     * @return benchmark helper
+     */
+    public CorfuTableBenchmarkHelper fillTable(int batchSize) {
+        check();
+
+        Map<Integer, String> batch = new HashMap<>();
+        for (int i = 0; i < getTableSize(); i++) {
+            batch.put(i, valueGenerator.value());
+
+            if (batch.size() >= batchSize) {
+                table.putAll(batch);
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            table.putAll(batch);
+        }
+
+        return this;
+    }
+
+    /**
+     * Generate a batch of random keys and values
+     *
+     * @param batchSize number of entries
+     * @param batch     the map to fill, gets cleared before use
+     * @return batch
+     */
+    public Map<Integer, String> generateBatch(int batchSize, Map<Integer, String> batch) {
+        check();
+
+        batch.clear();
+        while (batch.size() < batchSize) {
+            batch.put(generate(), valueGenerator.value());
+        }
+
+        return batch;
+    }
+
+    /**
+     * Generate a batch of random keys
+     *
+     * @param batchSize number of keys
+     * @param keys      the list to fill, gets cleared before use
+     * @return keys
+     */
+    public List<Integer> generateKeys(int batchSize, List<Integer> keys) {
+        check();
+
+        keys.clear();
+        for (int i = 0; i < batchSize; i++) {
+            keys.add(generate());
+        }
+
+        return keys;
+    }
+
+    /**
+     * Random generator of the calling thread. The helper is shared by all the benchmark threads,
+     * a shared {@link Random} would make them contend on its seed instead of the table.
+     *
+     * @return random generator
+     */
+    public Random getRandom() {
+        return ThreadLocalRandom.current();
+    }
+
     public <T extends Map<Integer, String>> T getUnderlyingMap() {
         return ClassUtils.cast(underlyingMap);
     }
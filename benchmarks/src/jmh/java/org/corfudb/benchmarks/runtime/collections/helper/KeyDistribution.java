@@ -0,0 +1,172 @@
+package org.corfudb.benchmarks.runtime.collections.helper;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Distribution of the keys accessed by a benchmark, keys are from 0 to n - 1.
+ * <p>
+ * A distribution is selected by a spec, the name of the distribution followed by its arguments:
+ * <ul>
+ * <li>uniform</li>
+ * <li>zipfian[:theta] - the most popular keys are the smallest ones, theta is 0.99 by default</li>
+ * <li>scrambled_zipfian[:theta] - zipfian with the popular keys scattered over the key range</li>
+ * <li>hotspot[:opShare[:keyShare]] - opShare of the operations go to the first keyShare of the keys,
+ * 0.9 and 0.1 by default</li>
+ * <li>sequential - all the keys in order, round robin, every thread from its own start</li>
+ * <li>latest[:theta] - zipfian from the last key down: a table is filled in the key order,
+ * so the most popular keys are the most recently written ones</li>
+ * </ul>
+ */
+public interface KeyDistribution {
+
+    double DEFAULT_THETA = 0.99;
+
+    /**
+     * Next key
+     *
+     * @param random random generator
+     * @return key
+     */
+    int next(Random random);
+
+    /**
+     * Parse a distribution spec
+     *
+     * @param spec  distribution spec
+     * @param items number of keys
+     * @return key distribution
+     */
+    static KeyDistribution of(String spec, int items) {
+        String[] parts = spec.trim().toLowerCase(Locale.ROOT).split(":");
+        try {
+            switch (parts[0]) {
+                case "uniform":
+                    return new Uniform(items);
+                case "zipfian":
+                    return new ZipfGenerator(items, arg(parts, 1, DEFAULT_THETA), false);
+                case "scrambled_zipfian":
+                    return new ZipfGenerator(items, arg(parts, 1, DEFAULT_THETA), true);
+                case "hotspot":
+                    return new Hotspot(items, arg(parts, 1, 0.9), arg(parts, 2, 0.1));
+                case "sequential":
+                    return new Sequential(items);
+                case "latest":
+                    return new Latest(new ZipfGenerator(items, arg(parts, 1, DEFAULT_THETA), false), items);
+                default:
+                    throw new IllegalArgumentException("Unknown key distribution: " + spec);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid key distribution: " + spec, e);
+        }
+    }
+
+    /**
+     * Numeric argument of a spec
+     *
+     * @param parts        spec split by colons
+     * @param index        argument index, the name is at 0
+     * @param defaultValue value of a missing argument
+     * @return argument
+     */
+    static double arg(String[] parts, int index, double defaultValue) {
+        return parts.length > index ? Double.parseDouble(parts[index]) : defaultValue;
+    }
+
+    /**
+     * All the keys are equally likely
+     */
+    class Uniform implements KeyDistribution {
+        private final int items;
+
+        public Uniform(int items) {
+            this.items = items;
+        }
+
+        @Override
+        public int next(Random random) {
+            return random.nextInt(items);
+        }
+    }
+
+    /**
+     * A share of the operations goes to a share of the keys, the hot keys are the smallest ones
+     */
+    class Hotspot implements KeyDistribution {
+        private final int items;
+        private final int hotItems;
+        private final double opShare;
+
+        /**
+         * A hotspot distribution
+         *
+         * @param items    number of keys
+         * @param opShare  share of the operations on the hot keys
+         * @param keyShare share of the hot keys
+         */
+        public Hotspot(int items, double opShare, double keyShare) {
+            if (opShare < 0 || opShare > 1 || keyShare <= 0 || keyShare >= 1) {
+                throw new IllegalArgumentException("Invalid hotspot: " + opShare + " of ops on " + keyShare
+                        + " of keys");
+            }
+
+            this.items = items;
+            this.hotItems = Math.max(1, (int) (items * keyShare));
+            this.opShare = opShare;
+        }
+
+        @Override
+        public int next(Random random) {
+            if (random.nextDouble() < opShare || hotItems == items) {
+                return random.nextInt(hotItems);
+            }
+            return hotItems + random.nextInt(items - hotItems);
+        }
+    }
+
+    /**
+     * The keys in order, starting over after the last one. Every thread has its own position,
+     * starting at a random key, so the threads of a benchmark don't contend on a shared counter.
+     */
+    class Sequential implements KeyDistribution {
+        private final int items;
+        private final ThreadLocal<int[]> position;
+
+        /**
+         * A sequential distribution
+         *
+         * @param items number of keys
+         */
+        public Sequential(int items) {
+            this.items = items;
+            this.position = ThreadLocal.withInitial(() -> new int[]{ThreadLocalRandom.current().nextInt(items)});
+        }
+
+        @Override
+        public int next(Random random) {
+            int[] current = position.get();
+            int key = current[0];
+            current[0] = key + 1 == items ? 0 : key + 1;
+            return key;
+        }
+    }
+
+    /**
+     * Zipfian ranks counted from the last key down
+     */
+    class Latest implements KeyDistribution {
+        private final ZipfGenerator ranks;
+        private final int items;
+
+        public Latest(ZipfGenerator ranks, int items) {
+            this.ranks = ranks;
+            this.items = items;
+        }
+
+        @Override
+        public int next(Random random) {
+            return items - 1 - ranks.nextRank(random);
+        }
+    }
+}
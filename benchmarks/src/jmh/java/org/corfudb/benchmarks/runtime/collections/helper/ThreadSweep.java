@@ -0,0 +1,45 @@
+package org.corfudb.benchmarks.runtime.collections.helper;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of a class once per thread count. Jmh can't take the number of threads as a param,
+ * every run writes its own csv: build/{benchmark}-{threads}-threads.csv
+ */
+public class ThreadSweep {
+
+    private ThreadSweep() {
+        //prevent creating instances
+    }
+
+    /**
+     * Run the benchmarks for every thread count
+     *
+     * @param benchmark benchmark class
+     * @param threads   thread counts
+     * @throws RunnerException jmh runner exception
+     */
+    public static void run(Class<?> benchmark, int... threads) throws RunnerException {
+        String benchmarkName = benchmark.getSimpleName();
+
+        for (int threadCount : threads) {
+            Options opt = new OptionsBuilder()
+                    .include(benchmarkName)
+                    .threads(threadCount)
+                    .shouldFailOnError(true)
+                    .addProfiler(GCProfiler.class)
+
+                    .resultFormat(ResultFormatType.CSV)
+                    .result("build/" + benchmarkName + "-" + threadCount + "-threads.csv")
+
+                    .build();
+
+            new Runner(opt).run();
+        }
+    }
+}
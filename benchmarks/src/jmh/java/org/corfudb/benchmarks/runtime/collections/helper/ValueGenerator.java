@@ -2,6 +2,9 @@ package org.corfudb.benchmarks.runtime.collections.helper;
 
 import org.corfudb.benchmarks.util.DataGenerator;
 
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
 public interface ValueGenerator {
     String value();
 
@@ -40,4 +43,56 @@ public interface ValueGenerator {
             return DataGenerator.generateDataString(valueSize);
         }
     }
+
+    /**
+     * Generates json documents of the given size, made of field names, enum-like values and words
+     * of a small vocabulary, numbers and random ids. The documents compress like real records do,
+     * unlike the random strings of the other generators. A value is taken from a pool of pre-generated
+     * documents, so the generator is cheap.
+     */
+    class CompressibleValueGenerator implements ValueGenerator {
+
+        private static final int POOL_SIZE = 1024;
+
+        private static final String[] FIELDS = {
+            "owner", "region", "status", "priority", "category", "description", "createdBy", "updatedBy"
+        };
+        private static final String[] WORDS = {
+            "ACTIVE", "PENDING", "DELETED", "replicated", "us-west-2", "eu-central-1", "admin", "operator",
+            "firewall", "segment", "gateway", "policy", "allow", "deny", "tcp", "udp", "edge", "tier1"
+        };
+        private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+        private final String[] pool = new String[POOL_SIZE];
+
+        public CompressibleValueGenerator(int valueSize) {
+            Random random = new Random();
+            for (int i = 0; i < POOL_SIZE; i++) {
+                pool[i] = document(valueSize, random);
+            }
+        }
+
+        private static String document(int valueSize, Random random) {
+            StringBuilder doc = new StringBuilder(valueSize + 64);
+            doc.append("{\"id\":\"");
+            for (int i = 0; i < 32; i++) {
+                doc.append(HEX[random.nextInt(HEX.length)]);
+            }
+            doc.append("\",\"version\":").append(random.nextInt(1000));
+
+            while (doc.length() < valueSize) {
+                doc.append(",\"").append(FIELDS[random.nextInt(FIELDS.length)]).append("\":\"")
+                        .append(WORDS[random.nextInt(WORDS.length)]).append(' ')
+                        .append(WORDS[random.nextInt(WORDS.length)]).append("\",\"ts\":")
+                        .append(1_600_000_000_000L + random.nextInt(Integer.MAX_VALUE));
+            }
+
+            return doc.substring(0, valueSize);
+        }
+
+        @Override
+        public String value() {
+            return pool[ThreadLocalRandom.current().nextInt(POOL_SIZE)];
+        }
+    }
 }
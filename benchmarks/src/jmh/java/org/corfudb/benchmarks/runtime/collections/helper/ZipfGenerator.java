@@ -0,0 +1,76 @@
+package org.corfudb.benchmarks.runtime.collections.helper;
+
+import java.util.Random;
+
+/**
+ * Generates keys from 0 to n - 1 with a zipfian distribution: the probability of the key of rank i
+ * is proportional to 1 / i^theta. The higher theta the more skewed the distribution, YCSB uses 0.99.
+ * <p>
+ * Uses the constant-time method of Gray et al. "Quickly generating billion-record synthetic databases",
+ * the zeta constant is computed once in O(n). The scrambled generator scatters the ranks over the key range
+ * by a multiplicative permutation, so the hot keys are not the smallest ones.
+ */
+public class ZipfGenerator implements KeyDistribution {
+
+    private static final long SCATTER = 1_000_003L;
+
+    private final int items;
+    private final double alpha;
+    private final double zetaN;
+    private final double eta;
+    private final double secondRankThreshold;
+    private final boolean scatter;
+
+    /**
+     * A zipfian generator
+     *
+     * @param items     number of keys
+     * @param theta     skew, from 0 (exclusive) to 1 (exclusive)
+     * @param scrambled whether the ranks are scattered over the key range
+     */
+    public ZipfGenerator(int items, double theta, boolean scrambled) {
+        if (items < 2 || theta <= 0 || theta >= 1) {
+            throw new IllegalArgumentException("Invalid zipf distribution: items=" + items + ", theta=" + theta);
+        }
+
+        this.items = items;
+        this.alpha = 1 / (1 - theta);
+        this.zetaN = zeta(items, theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+        this.secondRankThreshold = 1 + Math.pow(0.5, theta);
+        this.scatter = scrambled && items % SCATTER != 0;
+    }
+
+    private static double zeta(int items, double theta) {
+        double sum = 0;
+        for (int i = 1; i <= items; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+
+    /**
+     * Rank of the next key, 0 is the most popular one
+     *
+     * @param random random generator
+     * @return rank
+     */
+    public int nextRank(Random random) {
+        double u = random.nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1) {
+            return 0;
+        }
+        if (uz < secondRankThreshold) {
+            return 1;
+        }
+
+        return Math.min(items - 1, (int) (items * Math.pow(eta * u - eta + 1, alpha)));
+    }
+
+    @Override
+    public int next(Random random) {
+        int rank = nextRank(random);
+        return scatter ? (int) (rank * SCATTER % items) : rank;
+    }
+}
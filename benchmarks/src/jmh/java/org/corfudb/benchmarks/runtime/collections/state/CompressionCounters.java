@@ -0,0 +1,50 @@
+package org.corfudb.benchmarks.runtime.collections.state;
+
+import org.corfudb.benchmarks.runtime.collections.experiment.compression.CompressedMap;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Value compression counters of the running benchmark, over all the values written to the table,
+ * including the fill. The ratios are averaged over the iterations.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class CompressionCounters extends ThreadShareCounters {
+
+    private long writes;
+    private long rawBytes;
+    private long storedBytes;
+
+    /**
+     * Take the map counters after every iteration
+     */
+    @Override
+    protected void after() {
+        CompressedMap<?> map = tracked(CompressedMap.class);
+        if (map != null) {
+            writes = map.getWrites();
+            rawBytes = map.getRawBytes();
+            storedBytes = map.getStoredBytes();
+        }
+    }
+
+    /**
+     * Size of the values before compression to the size stored in the backend
+     *
+     * @return compression ratio
+     */
+    public double compressionRatio() {
+        return storedBytes == 0 ? 0 : mean((double) rawBytes / storedBytes);
+    }
+
+    /**
+     * Average size of a value as stored in the backend
+     *
+     * @return bytes
+     */
+    public double storedBytesPerValue() {
+        return writes == 0 ? 0 : mean((double) storedBytes / writes);
+    }
+}
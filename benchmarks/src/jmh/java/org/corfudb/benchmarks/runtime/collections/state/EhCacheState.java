@@ -5,8 +5,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.corfudb.benchmarks.runtime.collections.experiment.ehcache.EhCacheMap;
+import org.corfudb.benchmarks.runtime.collections.experiment.writebehind.WriteBehindMap;
 import org.corfudb.benchmarks.runtime.collections.helper.CorfuTableBenchmarkHelper;
+import org.corfudb.benchmarks.runtime.collections.helper.KeyDistribution;
 import org.corfudb.benchmarks.runtime.collections.helper.ValueGenerator.StaticValueGenerator;
+import org.corfudb.benchmarks.runtime.collections.helper.ZipfGenerator;
 import org.corfudb.benchmarks.util.SizeUnit;
 import org.corfudb.runtime.collections.ContextAwareMap;
 import org.corfudb.runtime.collections.CorfuTable;
@@ -15,21 +18,27 @@ import org.corfudb.runtime.object.ICorfuVersionPolicy;
 import org.ehcache.PersistentCacheManager;
 import org.ehcache.config.ResourcePools;
 import org.ehcache.config.builders.CacheManagerBuilder;
-import org.ehcache.config.builders.ResourcePoolsBuilder;
-import org.ehcache.config.units.EntryUnit;
-import org.ehcache.config.units.MemoryUnit;
 import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Supplier;
 
+/**
+ * Tier sizes are shared parameters of all the ehCache states
+ */
 @Slf4j
+@State(Scope.Benchmark)
 public abstract class EhCacheState {
 
     public static final String TMP_DIR = System.getProperty("java.io.tmpdir");
@@ -44,6 +53,36 @@ public abstract class EhCacheState {
     @Getter
     CorfuTableBenchmarkHelper helper;
 
+    /**
+     * Distribution of the keys accessed by the benchmark, see {@link KeyDistribution} for the specs
+     */
+    @Param({"uniform"})
+    @Getter
+    public String keyDistribution;
+
+    private PersistentCacheManager cacheManager;
+
+    /**
+     * Max number of entries in the heap tier, 0 - no heap tier
+     */
+    @Param({"10000"})
+    @Getter
+    public long heapEntries;
+
+    /**
+     * Off-heap tier size in MB, 0 - no off-heap tier
+     */
+    @Param({"0", "256"})
+    @Getter
+    public long offHeapMb;
+
+    /**
+     * Disk tier size in MB, 0 - no disk tier
+     */
+    @Param({"5000"})
+    @Getter
+    public long diskMb;
+
     void init(int dataSize, int tableSize) throws IOException {
         log.info("Initialization...");
 
@@ -61,6 +100,7 @@ public abstract class EhCacheState {
                 .table(table)
                 .dataSize(dataSize)
                 .tableSize(tableSize)
+                .keyDistribution(KeyDistribution.of(keyDistribution, tableSize))
                 .build()
                 .check();
     }
@@ -72,21 +112,22 @@ public abstract class EhCacheState {
     }
 
     private EhCacheMap<Integer, String> getEhCacheMap() {
-        PersistentCacheManager cacheManager =
-                CacheManagerBuilder.newCacheManagerBuilder()
-                        .with(CacheManagerBuilder.persistence(persistedCacheLocation.toFile()))
-                        .build(true);
+        cacheManager = CacheManagerBuilder.newCacheManagerBuilder()
+                .with(CacheManagerBuilder.persistence(persistedCacheLocation.toFile()))
+                .build(true);
 
-        ResourcePools resourcePool = ResourcePoolsBuilder.newResourcePoolsBuilder()
-                .heap(MAX_HEAP_ENTRIES, EntryUnit.ENTRIES)
-                .disk(MAX_DISK_QUOTA_MB, MemoryUnit.MB, true)
-                .build();
+        ResourcePools resourcePool = EhCacheMap.resourcePools(heapEntries, offHeapMb, diskMb);
 
         return new EhCacheMap<>(
                 cacheManager, resourcePool, Integer.class, String.class
         );
     }
 
+    void stop() throws IOException {
+        cacheManager.close();
+        cleanDbDir();
+    }
+
 
     @State(Scope.Benchmark)
     @Slf4j
@@ -105,6 +146,11 @@ public abstract class EhCacheState {
             init(dataSize, tableSize);
             helper.fillTable();
         }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            stop();
+        }
     }
 
     @State(Scope.Benchmark)
@@ -122,5 +168,192 @@ public abstract class EhCacheState {
         public void init() throws IOException {
             init(dataSize, tableSize);
         }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            stop();
+        }
+    }
+
+    /**
+     * Batch operations, compared with {@link RocksDbState.RocksDbStateForMultiGet} and
+     * {@link RocksDbState.RocksDbStateForPutAll}
+     */
+    @State(Scope.Benchmark)
+    @Slf4j
+    public static class EhCacheStateForBatch extends EhCacheState {
+
+        @Param({"8", "64", "512"})
+        @Getter
+        public int batchSize;
+
+        @Param({"64"})
+        @Getter
+        public int dataSize;
+
+        @Param({"1000000"})
+        @Getter
+        public int tableSize;
+
+        private final List<Integer> keys = new ArrayList<>();
+        private final Map<Integer, String> batch = new HashMap<>();
+
+        /**
+         * Next batch of random existing keys
+         *
+         * @return keys
+         */
+        public List<Integer> nextKeys() {
+            return helper.generateKeys(batchSize, keys);
+        }
+
+        /**
+         * Next batch of random entries
+         *
+         * @return batch
+         */
+        public Map<Integer, String> nextBatch() {
+            return helper.generateBatch(batchSize, batch);
+        }
+
+        @Setup
+        public void init() throws IOException {
+            init(dataSize, tableSize);
+            helper.fillTable(RocksDbState.FILL_BATCH_SIZE);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            stop();
+        }
+    }
+
+    /**
+     * Lookups of zipf-distributed keys through a near cache, compared with
+     * {@link RocksDbState.RocksDbStateForNearCache}
+     */
+    @State(Scope.Benchmark)
+    @Slf4j
+    public static class EhCacheStateForNearCache extends EhCacheState {
+
+        @Param({"0", "1", "10"})
+        @Getter
+        public int cachePercent;
+
+        @Param({"0.8", "0.99"})
+        @Getter
+        public double zipfTheta;
+
+        @Param({"64"})
+        @Getter
+        public int dataSize;
+
+        @Param({"1000000"})
+        @Getter
+        public int tableSize;
+
+        @Getter
+        private CorfuTable<Integer, String> nearCacheTable;
+
+        private ZipfGenerator keys;
+
+        /**
+         * Next key of the zipf distribution
+         *
+         * @return key
+         */
+        public int nextKey() {
+            return keys.next(helper.getRandom());
+        }
+
+        /**
+         * Fill the table and put the near cache in front of it
+         *
+         * @throws IOException io exception
+         */
+        @Setup
+        public void init() throws IOException {
+            init(dataSize, tableSize);
+            helper.fillTable(RocksDbState.FILL_BATCH_SIZE);
+            nearCacheTable = RocksDbState.createNearCacheTable(
+                    helper.getUnderlyingMap(), tableSize, cachePercent, dataSize
+            );
+            keys = new ZipfGenerator(tableSize, zipfTheta, true);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            stop();
+        }
+    }
+
+    /**
+     * Puts of random keys, synchronously or through a write-behind buffer, compared with
+     * {@link RocksDbState.RocksDbStateForWriteBehind}
+     */
+    @State(Scope.Benchmark)
+    @Slf4j
+    public static class EhCacheStateForWriteBehind extends EhCacheState {
+
+        @Param({"false", "true"})
+        @Getter
+        public boolean writeBehind;
+
+        @Param({"64", "1024"})
+        @Getter
+        public int dataSize;
+
+        /**
+         * Puts go to random keys of the table, the writes to a small table get coalesced more often
+         */
+        @Param({"10000", "1000000"})
+        @Getter
+        public int tableSize;
+
+        @Getter
+        private CorfuTable<Integer, String> writeTable;
+
+        private WriteBehindMap<Integer, String> writeBehindMap;
+
+        /**
+         * Open the map and put the write-behind buffer in front of it
+         *
+         * @throws IOException io exception
+         */
+        @Setup
+        public void init() throws IOException {
+            init(dataSize, tableSize);
+
+            Map<Integer, String> map = helper.getUnderlyingMap();
+            if (writeBehind) {
+                writeBehindMap = WriteBehindMap.<Integer, String>builder()
+                        .backend(map)
+                        .build()
+                        .init();
+                map = writeBehindMap;
+            }
+            ThreadShareCounters.track(WriteBehindMap.class, writeBehindMap);
+
+            Map<Integer, String> tableMap = map;
+            Supplier<ContextAwareMap<Integer, String>> mapSupplier = () -> new StreamingMapDecorator<>(tableMap);
+            writeTable = new CorfuTable<>(mapSupplier, ICorfuVersionPolicy.DEFAULT);
+        }
+
+        /**
+         * Apply the pending writes and close the map
+         *
+         * @throws IOException io exception
+         */
+        @TearDown
+        public void tearDown() throws IOException {
+            if (writeBehindMap != null) {
+                writeBehindMap.close();
+                log.info("Write-behind: {} writes in {} batches, {} coalesced",
+                        writeBehindMap.getAppliedWrites(), writeBehindMap.getBatches(),
+                        writeBehindMap.getCoalescedWrites());
+            }
+            ThreadShareCounters.track(WriteBehindMap.class, null);
+            stop();
+        }
     }
 }
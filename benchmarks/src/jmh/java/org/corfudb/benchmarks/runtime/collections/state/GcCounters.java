@@ -0,0 +1,107 @@
+package org.corfudb.benchmarks.runtime.collections.state;
+
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Garbage collections during an iteration, reported by jmh next to the score of a benchmark.
+ * The longest collection is taken from the GC notifications, for the stop-the-world collections it's the pause.
+ * Jmh sums the counters of the measurement iterations, so a measurement iteration reports only the amount
+ * its longest pause exceeds the longest pause of the previous ones: the score is the longest pause
+ * of the measurement. The longest pause of every iteration is logged.
+ */
+@Slf4j
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class GcCounters extends ThreadShareCounters {
+
+    private static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+
+    private static final AtomicLong MAX_PAUSE_MS = new AtomicLong();
+
+    static {
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                ((NotificationEmitter) collector).addNotificationListener(GcCounters::onCollection, null, null);
+            }
+        }
+    }
+
+    private long startCount;
+    private long startTimeMs;
+    private long count;
+    private long timeMs;
+    private long maxPauseMs;
+    private long measurementMaxPauseMs;
+
+    private static void onCollection(Notification notification, Object handback) {
+        if (!GC_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+
+        CompositeData gcInfo = (CompositeData) ((CompositeData) notification.getUserData()).get("gcInfo");
+        long duration = (Long) gcInfo.get("duration");
+        MAX_PAUSE_MS.accumulateAndGet(duration, Math::max);
+    }
+
+    private static long totalCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+                .sum();
+    }
+
+    private static long totalTimeMs() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                .sum();
+    }
+
+    /**
+     * Take the collector totals before every iteration
+     */
+    @Override
+    protected void before() {
+        MAX_PAUSE_MS.set(0);
+        startCount = totalCount();
+        startTimeMs = totalTimeMs();
+    }
+
+    /**
+     * Take the collector totals after every iteration
+     */
+    @Override
+    protected void after() {
+        count = totalCount() - startCount;
+        timeMs = totalTimeMs() - startTimeMs;
+        long iterationMaxPauseMs = MAX_PAUSE_MS.get();
+        log.info("Longest gc pause of the iteration: {} ms", iterationMaxPauseMs);
+
+        if (isMeasurement()) {
+            maxPauseMs = Math.max(0, iterationMaxPauseMs - measurementMaxPauseMs);
+            measurementMaxPauseMs = Math.max(measurementMaxPauseMs, iterationMaxPauseMs);
+        } else {
+            maxPauseMs = iterationMaxPauseMs;
+        }
+    }
+
+    public double gcCount() {
+        return share(count);
+    }
+
+    public double gcTimeMs() {
+        return share(timeMs);
+    }
+
+    public double gcMaxPauseMs() {
+        return share(maxPauseMs);
+    }
+}
@@ -2,7 +2,13 @@ package org.corfudb.benchmarks.runtime.collections.state;
 
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
+import org.corfudb.benchmarks.runtime.collections.experiment.compression.CompressedMap;
+import org.corfudb.benchmarks.runtime.collections.experiment.compression.ValueCodec;
 import org.corfudb.benchmarks.runtime.collections.helper.CorfuTableBenchmarkHelper;
+import org.corfudb.benchmarks.runtime.collections.helper.KeyDistribution;
+import org.corfudb.benchmarks.runtime.collections.helper.ValueGenerator;
+import org.corfudb.benchmarks.runtime.collections.helper.ValueGenerator.CompressibleValueGenerator;
+import org.corfudb.benchmarks.runtime.collections.helper.ValueGenerator.DynamicValueGenerator;
 import org.corfudb.benchmarks.runtime.collections.helper.ValueGenerator.StaticValueGenerator;
 import org.corfudb.benchmarks.util.SizeUnit;
 import org.corfudb.runtime.collections.ContextAwareMap;
@@ -13,21 +19,43 @@ import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 
 import java.util.HashMap;
+import java.util.Map;
 import java.util.function.Supplier;
 
 @Slf4j
+@State(Scope.Benchmark)
 public abstract class HashMapState {
 
+    /**
+     * Heap footprint of an entry of the last filled table, see {@link #fillTable()}
+     */
+    @Getter
+    private static volatile double bytesPerEntry;
+
     @Getter
     CorfuTableBenchmarkHelper helper;
 
+    /**
+     * Distribution of the keys accessed by the benchmark, see {@link KeyDistribution} for the specs
+     */
+    @Param({"uniform"})
+    @Getter
+    public String keyDistribution;
+
     void init(int dataSize, int tableSize) {
+        init(dataSize, tableSize, new HashMap<>());
+    }
+
+    void init(int dataSize, int tableSize, Map<Integer, String> underlyingMap) {
+        init(dataSize, tableSize, underlyingMap, new StaticValueGenerator(dataSize));
+    }
+
+    void init(int dataSize, int tableSize, Map<Integer, String> underlyingMap, ValueGenerator valueGenerator) {
         log.info("Initialization...");
 
-        StaticValueGenerator valueGenerator = new StaticValueGenerator(dataSize);
-        HashMap<Integer, String> underlyingMap = new HashMap<>();
         Supplier<ContextAwareMap<Integer, String>> mapSupplier = () -> new StreamingMapDecorator<>(underlyingMap);
         CorfuTable<Integer, String> table = new CorfuTable<>(mapSupplier, ICorfuVersionPolicy.DEFAULT);
 
@@ -37,10 +65,35 @@ public abstract class HashMapState {
                 .table(table)
                 .dataSize(dataSize)
                 .tableSize(tableSize)
+                .keyDistribution(KeyDistribution.of(keyDistribution, tableSize))
                 .build()
                 .check();
     }
 
+    /**
+     * Fill the table and measure the heap it takes. The footprint includes the values,
+     * the get states fill their tables with a value per entry, so that all the maps hold the same data.
+     */
+    void fillTable() {
+        long before = usedHeap();
+        helper.fillTable();
+        bytesPerEntry = (double) (usedHeap() - before) / helper.getTableSize();
+        log.info("Heap footprint: {} bytes per entry", String.format("%.1f", bytesPerEntry));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * A filled table with a value per entry. Table sizes keep the biggest tables (1024 byte values,
+     * 2 bytes per char) within the 4g heap of the fork.
+     */
     @State(Scope.Benchmark)
     @Getter
     @Slf4j
@@ -51,13 +104,13 @@ public abstract class HashMapState {
         public int dataSize;
 
         @Getter
-        @Param({"10000"})
+        @Param({"10000", "1000000"})
         protected int inMemTableSize;
 
         @Setup
         public void init() {
-            init(dataSize, inMemTableSize);
-            helper.fillTable();
+            init(dataSize, inMemTableSize, new HashMap<>(), new DynamicValueGenerator(dataSize));
+            fillTable();
         }
     }
 
@@ -77,4 +130,58 @@ public abstract class HashMapState {
             init(dataSize, tableSize);
         }
     }
+
+    /**
+     * A table of compressible documents with compressed values, the values are stored in a hash map
+     */
+    @State(Scope.Benchmark)
+    @Slf4j
+    public static class HashMapStateForCompression extends HashMapState {
+
+        @Param({"NONE", "DEFLATE_FAST", "LZ4", "ZSTD", "ZSTD_DICTIONARY"})
+        @Getter
+        public ValueCodec codec;
+
+        /**
+         * Values shorter than that, in bytes, are stored as is
+         */
+        @Param({"0", "128"})
+        @Getter
+        public int minSize;
+
+        @Param({"64", "1024", "8192"})
+        @Getter
+        public int dataSize;
+
+        @Param({"100000"})
+        @Getter
+        public int tableSize;
+
+        private CompressedMap<Integer> compressedMap;
+
+        /**
+         * Fill the table through the compressed map
+         */
+        @Setup
+        public void init() {
+            compressedMap = CompressedMap.<Integer>builder()
+                    .backend(new HashMap<>())
+                    .codec(codec)
+                    .minSize(minSize)
+                    .build();
+            ThreadShareCounters.track(CompressedMap.class, compressedMap);
+
+            init(dataSize, tableSize, compressedMap, new CompressibleValueGenerator(dataSize));
+            fillTable();
+        }
+
+        /**
+         * Release the codec resources of the compressed map
+         */
+        @TearDown
+        public void tearDown() {
+            compressedMap.close();
+            ThreadShareCounters.track(CompressedMap.class, null);
+        }
+    }
 }
@@ -0,0 +1,18 @@
+package org.corfudb.benchmarks.runtime.collections.state;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Heap footprint of the table of the running in-memory benchmark, see {@link HashMapState#getBytesPerEntry()}.
+ * The footprint is a gauge, averaged over the iterations.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class HeapCounters extends ThreadShareCounters {
+
+    public double bytesPerEntry() {
+        return mean(HashMapState.getBytesPerEntry());
+    }
+}
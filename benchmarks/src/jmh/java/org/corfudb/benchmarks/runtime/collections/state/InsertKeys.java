@@ -0,0 +1,42 @@
+package org.corfudb.benchmarks.runtime.collections.state;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.ThreadParams;
+
+/**
+ * New keys of an insert benchmark, the key range above the table is partitioned between the benchmark threads:
+ * a thread takes every n-th key starting from its thread index. The threads never insert the same key
+ * and don't share a counter.
+ */
+@State(Scope.Thread)
+public class InsertKeys {
+
+    private int threadIndex;
+    private int threadCount;
+    private long inserted;
+
+    /**
+     * Take the partition of the thread
+     *
+     * @param params thread params
+     */
+    @Setup
+    public void init(ThreadParams params) {
+        threadIndex = params.getThreadIndex();
+        threadCount = params.getThreadCount();
+        inserted = 0;
+    }
+
+    /**
+     * Next key of the thread, the keys wrap around after the int range
+     *
+     * @param tableSize number of keys of the filled table
+     * @return key
+     */
+    public int next(int tableSize) {
+        long key = tableSize + inserted++ * threadCount + threadIndex;
+        return (int) (key % Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,58 @@
+package org.corfudb.benchmarks.runtime.collections.state;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.corfudb.benchmarks.runtime.collections.experiment.primitive.IntHashMap;
+import org.corfudb.benchmarks.runtime.collections.helper.ValueGenerator.DynamicValueGenerator;
+import org.corfudb.benchmarks.util.SizeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Corfu table backed by {@link IntHashMap}, the same workloads as {@link HashMapState}
+ */
+@Slf4j
+public abstract class IntMapState extends HashMapState {
+
+    /**
+     * A filled table with a value per entry, the same sizes as {@link HashMapStateForGet}
+     */
+    @State(Scope.Benchmark)
+    @Getter
+    @Slf4j
+    public static class IntMapStateForGet extends IntMapState {
+
+        @Param({"64", "256", "1024"})
+        @Getter
+        public int dataSize;
+
+        @Getter
+        @Param({"10000", "1000000"})
+        protected int inMemTableSize;
+
+        @Setup
+        public void init() {
+            init(dataSize, inMemTableSize, IntHashMap.ofStrings(inMemTableSize), new DynamicValueGenerator(dataSize));
+            fillTable();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    @Slf4j
+    public static class IntMapStateForPut extends IntMapState {
+
+        @Param({"64", "256"})
+        @Getter
+        public int dataSize;
+
+        @Getter
+        protected int tableSize = SizeUnit.HUNDRED_K.getValue();
+
+        @Setup
+        public void init() {
+            init(dataSize, tableSize, IntHashMap.ofStrings(tableSize));
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package org.corfudb.benchmarks.runtime.collections.state;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.corfudb.benchmarks.runtime.collections.experiment.mmap.MappedLogMap;
+import org.corfudb.benchmarks.runtime.collections.helper.CorfuTableBenchmarkHelper;
+import org.corfudb.benchmarks.runtime.collections.helper.KeyDistribution;
+import org.corfudb.benchmarks.runtime.collections.helper.ValueGenerator.StaticValueGenerator;
+import org.corfudb.benchmarks.util.SizeUnit;
+import org.corfudb.runtime.collections.ContextAwareMap;
+import org.corfudb.runtime.collections.CorfuTable;
+import org.corfudb.runtime.collections.StreamingMapDecorator;
+import org.corfudb.runtime.object.ICorfuVersionPolicy;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Supplier;
+
+/**
+ * Corfu table backed by {@link MappedLogMap}, the workloads mirror the ones of {@link RocksDbState}
+ */
+@Slf4j
+@State(Scope.Benchmark)
+public abstract class MappedLogState {
+    private static final String TMP_DIR = System.getProperty("java.io.tmpdir");
+
+    @Getter
+    CorfuTableBenchmarkHelper helper;
+
+    /**
+     * Distribution of the keys accessed by the benchmark, see {@link KeyDistribution} for the specs
+     */
+    @Param({"uniform"})
+    @Getter
+    public String keyDistribution;
+
+    final Path dbPath = Paths.get(
+            FilenameUtils.getName(TMP_DIR), "corfu", "rt", "persistence", "mapped_log"
+    );
+
+    MappedLogMap<Integer, String> openMap(long compactionIntervalMs) throws IOException {
+        return MappedLogMap.<Integer, String>builder()
+                .dbPath(dbPath)
+                .keyType(Integer.class)
+                .valueType(String.class)
+                .compactionIntervalMs(compactionIntervalMs)
+                .build()
+                .init();
+    }
+
+    void cleanDbDir() throws IOException {
+        File dbDir = dbPath.toFile();
+        FileUtils.deleteDirectory(dbDir);
+        FileUtils.forceMkdir(dbDir);
+    }
+
+    void init(int dataSize, int tableSize) throws IOException {
+        log.info("Initialization...");
+
+        cleanDbDir();
+        MappedLogMap<Integer, String> logMap = openMap(1000);
+
+        Supplier<ContextAwareMap<Integer, String>> mapSupplier = () -> new StreamingMapDecorator<>(logMap);
+        CorfuTable<Integer, String> table = new CorfuTable<>(mapSupplier, ICorfuVersionPolicy.DEFAULT);
+
+        helper = CorfuTableBenchmarkHelper.builder()
+                .underlyingMap(logMap)
+                .valueGenerator(new StaticValueGenerator(dataSize))
+                .table(table)
+                .dataSize(dataSize)
+                .tableSize(tableSize)
+                .keyDistribution(KeyDistribution.of(keyDistribution, tableSize))
+                .build()
+                .check();
+    }
+
+    void stop() throws IOException {
+        MappedLogMap<Integer, String> logMap = helper.getUnderlyingMap();
+        log.info("Segments: {}, log size: {} bytes", logMap.getSegmentCount(), logMap.getLogBytes());
+        logMap.close();
+
+        cleanDbDir();
+    }
+
+    @State(Scope.Benchmark)
+    @Getter
+    @Slf4j
+    public static class MappedLogStateForGet extends MappedLogState {
+
+        @Param({"64", "256"})
+        @Getter
+        public int dataSize;
+
+        @Getter
+        @Param({"100000", "1000000"})
+        protected int tableSize;
+
+        @Setup
+        public void init() throws IOException {
+            init(dataSize, tableSize);
+            helper.fillTable();
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            stop();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    @Slf4j
+    public static class MappedLogStateForPut extends MappedLogState {
+
+        @Param({"64", "256"})
+        @Getter
+        public int dataSize;
+
+        @Getter
+        protected int tableSize = SizeUnit.HUNDRED_K.getValue();
+
+        @Setup
+        public void init() throws IOException {
+            init(dataSize, tableSize);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            stop();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    @Slf4j
+    public static class MappedLogStateForScan extends MappedLogState {
+
+        @Param({"false", "true"})
+        @Getter
+        public boolean parallel;
+
+        @Param({"64"})
+        @Getter
+        public int dataSize;
+
+        @Param({"1000000", "10000000"})
+        @Getter
+        public int tableSize;
+
+        @Setup
+        public void init() throws IOException {
+            init(dataSize, tableSize);
+            helper.fillTable();
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            stop();
+        }
+    }
+
+    /**
+     * Recovery after a kill. Every iteration fills a new log and leaves the map open,
+     * nothing is flushed to disk and the page cache holds the log, as after a killed process.
+     * The benchmark opens the log, which replays all the segments to rebuild the index.
+     */
+    @State(Scope.Benchmark)
+    @Slf4j
+    public static class MappedLogStateForReopen extends MappedLogState {
+
+        @Param({"64"})
+        @Getter
+        public int dataSize;
+
+        @Param({"1000000", "10000000"})
+        @Getter
+        public int tableSize;
+
+        private MappedLogMap<Integer, String> killed;
+        private MappedLogMap<Integer, String> reopened;
+
+        /**
+         * Fill a log and leave it open, the compaction is off, so the killed map doesn't touch the files
+         *
+         * @throws IOException io exception
+         */
+        @Setup(Level.Iteration)
+        public void fillAndKill() throws IOException {
+            cleanDbDir();
+            killed = openMap(0);
+            String value = new StaticValueGenerator(dataSize).value();
+            for (int i = 0; i < tableSize; i++) {
+                killed.put(i, value);
+            }
+        }
+
+        /**
+         * Open the log
+         *
+         * @return the recovered map
+         * @throws IOException io exception
+         */
+        public MappedLogMap<Integer, String> reopen() throws IOException {
+            reopened = openMap(0);
+            return reopened;
+        }
+
+        /**
+         * Close the recovered map and the files of the killed one, the killed map is not synced to disk
+         *
+         * @throws IOException io exception
+         */
+        @TearDown(Level.Iteration)
+        public void closeReopened() throws IOException {
+            if (reopened.size() != tableSize) {
+                throw new IllegalStateException("Lost entries after recovery: " + reopened.size());
+            }
+            reopened.close();
+            killed.abandon();
+            cleanDbDir();
+        }
+    }
+}
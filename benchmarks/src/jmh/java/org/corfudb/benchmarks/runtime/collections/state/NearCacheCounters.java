@@ -0,0 +1,67 @@
+package org.corfudb.benchmarks.runtime.collections.state;
+
+import org.corfudb.benchmarks.runtime.collections.experiment.nearcache.NearCacheMap;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Near cache counters of the running benchmark, collected during an iteration. All the counters are 0
+ * for a benchmark without a near cache, see {@link ThreadShareCounters#track(Class, Object)}.
+ * The hit ratio and the cache size are averaged over the iterations.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class NearCacheCounters extends ThreadShareCounters {
+
+    private NearCacheMap<?, ?> cache;
+
+    private long startHits;
+    private long startMisses;
+    private long hits;
+    private long misses;
+    private long weightedSize;
+    private long entries;
+
+    /**
+     * Take the cache counters before every iteration
+     */
+    @Override
+    protected void before() {
+        cache = tracked(NearCacheMap.class);
+        if (cache != null) {
+            startHits = cache.getHits();
+            startMisses = cache.getMisses();
+        }
+    }
+
+    /**
+     * Take the cache counters after every iteration
+     */
+    @Override
+    protected void after() {
+        if (cache != null) {
+            hits = cache.getHits() - startHits;
+            misses = cache.getMisses() - startMisses;
+            weightedSize = cache.getWeightedSize();
+            entries = cache.getCachedEntries();
+        }
+    }
+
+    public double hitRatio() {
+        return hits + misses == 0 ? 0 : mean((double) hits / (hits + misses));
+    }
+
+    /**
+     * Estimated heap size of the cached entries, the weight of the cache
+     *
+     * @return bytes
+     */
+    public double cacheHeapBytes() {
+        return mean(weightedSize);
+    }
+
+    public double cachedEntries() {
+        return mean(entries);
+    }
+}
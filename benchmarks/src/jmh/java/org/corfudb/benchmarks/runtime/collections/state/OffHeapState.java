@@ -0,0 +1,102 @@
+package org.corfudb.benchmarks.runtime.collections.state;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.corfudb.benchmarks.runtime.collections.experiment.offheap.OffHeapMap;
+import org.corfudb.benchmarks.runtime.collections.helper.CorfuTableBenchmarkHelper;
+import org.corfudb.benchmarks.runtime.collections.helper.KeyDistribution;
+import org.corfudb.benchmarks.runtime.collections.helper.ValueGenerator.StaticValueGenerator;
+import org.corfudb.runtime.collections.ContextAwareMap;
+import org.corfudb.runtime.collections.CorfuTable;
+import org.corfudb.runtime.collections.StreamingMapDecorator;
+import org.corfudb.runtime.object.ICorfuVersionPolicy;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.function.Supplier;
+
+/**
+ * Corfu table backed by {@link OffHeapMap}, the data set lives in direct memory
+ */
+@Slf4j
+@State(Scope.Benchmark)
+public abstract class OffHeapState {
+
+    /**
+     * Direct memory limit of the slabs per entry, records are rounded up to 16 bytes
+     */
+    private static final long MAX_BYTES_PER_ENTRY = 256;
+
+    @Getter
+    CorfuTableBenchmarkHelper helper;
+
+    /**
+     * Distribution of the keys accessed by the benchmark, see {@link KeyDistribution} for the specs
+     */
+    @Param({"uniform"})
+    @Getter
+    public String keyDistribution;
+
+    private OffHeapMap<Integer, String> offHeapMap;
+
+    void init(int dataSize, int tableSize) {
+        log.info("Initialization...");
+
+        offHeapMap = OffHeapMap.<Integer, String>builder()
+                .keyType(Integer.class)
+                .valueType(String.class)
+                .expectedSize(tableSize)
+                .maxMemory(Math.max(1L << 30, MAX_BYTES_PER_ENTRY * tableSize))
+                .build()
+                .init();
+
+        StaticValueGenerator valueGenerator = new StaticValueGenerator(dataSize);
+        Supplier<ContextAwareMap<Integer, String>> mapSupplier = () -> new StreamingMapDecorator<>(offHeapMap);
+        CorfuTable<Integer, String> table = new CorfuTable<>(mapSupplier, ICorfuVersionPolicy.DEFAULT);
+
+        helper = CorfuTableBenchmarkHelper.builder()
+                .underlyingMap(offHeapMap)
+                .valueGenerator(valueGenerator)
+                .table(table)
+                .dataSize(dataSize)
+                .tableSize(tableSize)
+                .keyDistribution(KeyDistribution.of(keyDistribution, tableSize))
+                .build()
+                .check();
+    }
+
+    /**
+     * Release the direct memory of the map
+     */
+    @TearDown
+    public void stop() {
+        log.info("Off-heap memory: slabs {} bytes, records {} bytes, index {} bytes",
+                offHeapMap.getAllocatedBytes(), offHeapMap.getUsedBytes(), offHeapMap.getIndexBytes());
+        offHeapMap.close();
+    }
+
+    /**
+     * A filled table, shared by get, put and remove benchmarks
+     */
+    @State(Scope.Benchmark)
+    @Slf4j
+    public static class OffHeapStateForAccess extends OffHeapState {
+
+        @Param({"64"})
+        @Getter
+        public int dataSize;
+
+        @Param({"10000000", "100000000"})
+        @Getter
+        public int tableSize;
+
+        @Setup
+        public void init() {
+            init(dataSize, tableSize);
+            helper.fillTable();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.corfudb.benchmarks.runtime.collections.state;
+
+import org.corfudb.benchmarks.runtime.collections.experiment.rocksdb.RocksDbMap;
+import org.corfudb.benchmarks.runtime.collections.experiment.rocksdb.RocksDbStatistics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.rocksdb.RocksDBException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * RocksDb engine counters, reported by jmh next to the score of a benchmark.
+ * The counters are taken from the statistics of the map of the running benchmark, collected during an iteration.
+ * The tickers are reset before every iteration and add up, the percentiles, ratios and db properties
+ * are averaged over the iterations.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class RocksDbCounters extends ThreadShareCounters {
+
+    private RocksDbMap<?, ?> map;
+
+    private RocksDbStatistics start;
+    private RocksDbStatistics end;
+    private long residentBytes;
+
+    /**
+     * Reset the statistics before every iteration
+     *
+     * @throws RocksDBException db exception
+     */
+    @Override
+    protected void before() throws RocksDBException {
+        map = RocksDbState.getActiveMap();
+        map.resetStatistics();
+        start = map.getStatistics();
+    }
+
+    /**
+     * Take the snapshot the counters are read from, before the map gets closed by the last iteration
+     *
+     * @throws RocksDBException db exception
+     */
+    @Override
+    protected void after() throws RocksDBException {
+        end = map.getStatistics();
+        residentBytes = readResidentBytes();
+    }
+
+    /**
+     * Resident set size of the process, 0 if it's unknown (not linux)
+     */
+    private static long readResidentBytes() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("\\D", "")) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+
+        return 0;
+    }
+
+    public double dbGetP50Us() {
+        return mean(end.getGet().getP50());
+    }
+
+    public double dbGetP99Us() {
+        return mean(end.getGet().getP99());
+    }
+
+    public double dbWriteP99Us() {
+        return mean(end.getWrite().getP99());
+    }
+
+    public double dbSeekP99Us() {
+        return mean(end.getSeek().getP99());
+    }
+
+    public double blockCacheHitRatio() {
+        return mean(end.getBlockCacheHitRatio());
+    }
+
+    public double stallMicros() {
+        return share(end.getStallMicros());
+    }
+
+    public double memtableStalls() {
+        return share(end.getMemtableStalls() - start.getMemtableStalls());
+    }
+
+    public double compactionStalls() {
+        return share(end.getCompactionStalls() - start.getCompactionStalls());
+    }
+
+    public double level0Files() {
+        return mean(end.getLevel0Files());
+    }
+
+    public double pendingCompactionBytes() {
+        return mean(end.getPendingCompactionBytes());
+    }
+
+    public double compactionBytesWritten() {
+        return share(end.getCompactionBytesWritten());
+    }
+
+    public double bytesWritten() {
+        return share(end.getBytesWritten());
+    }
+
+    public double writeAmplification() {
+        return mean(end.getWriteAmplification());
+    }
+
+    public double liveSnapshots() {
+        return mean(end.getSnapshots());
+    }
+
+    public double memtableBytes() {
+        return mean(end.getMemtableBytes());
+    }
+
+    public double sstFilesBytes() {
+        return mean(end.getSstFilesBytes());
+    }
+
+    public double totalMemtableBytes() {
+        return mean(end.getTotalMemtableBytes());
+    }
+
+    public double blockCacheBytes() {
+        return mean(end.getBlockCacheBytes());
+    }
+
+    public double tableReadersBytes() {
+        return mean(end.getTableReadersBytes());
+    }
+
+    public double residentBytes() {
+        return mean(residentBytes);
+    }
+}
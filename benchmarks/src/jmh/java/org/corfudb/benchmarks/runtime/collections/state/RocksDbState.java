@@ -1,50 +1,110 @@
 package org.corfudb.benchmarks.runtime.collections.state;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.corfudb.benchmarks.runtime.collections.experiment.compression.CompressedMap;
+import org.corfudb.benchmarks.runtime.collections.experiment.compression.ValueCodec;
+import org.corfudb.benchmarks.runtime.collections.experiment.nearcache.NearCacheMap;
+import org.corfudb.benchmarks.runtime.collections.experiment.rocksdb.RocksDbBulkWriter.BulkLoadMode;
+import org.corfudb.benchmarks.runtime.collections.experiment.rocksdb.RocksDbCodec;
+import org.corfudb.benchmarks.runtime.collections.experiment.rocksdb.RocksDbKeyEncoder;
 import org.corfudb.benchmarks.runtime.collections.experiment.rocksdb.RocksDbMap;
+import org.corfudb.benchmarks.runtime.collections.experiment.rocksdb.RocksDbMap.ClearMode;
+import org.corfudb.benchmarks.runtime.collections.experiment.rocksdb.RocksDbMap.RemovalPolicy;
+import org.corfudb.benchmarks.runtime.collections.experiment.rocksdb.RocksDbMap.RocksDbMapBuilder;
+import org.corfudb.benchmarks.runtime.collections.experiment.rocksdb.RocksDbMap.SizeMode;
+import org.corfudb.benchmarks.runtime.collections.experiment.rocksdb.RocksDbMapFactory;
+import org.corfudb.benchmarks.runtime.collections.experiment.rocksdb.RocksDbOptions;
+import org.corfudb.benchmarks.runtime.collections.experiment.rocksdb.RocksDbProfile;
+import org.corfudb.benchmarks.runtime.collections.experiment.rocksdb.RocksDbSnapshot;
+import org.corfudb.benchmarks.runtime.collections.experiment.writebehind.WriteBehindMap;
 import org.corfudb.benchmarks.runtime.collections.helper.CorfuTableBenchmarkHelper;
+import org.corfudb.benchmarks.runtime.collections.helper.KeyDistribution;
+import org.corfudb.benchmarks.runtime.collections.helper.ValueGenerator;
+import org.corfudb.benchmarks.runtime.collections.helper.ValueGenerator.CompressibleValueGenerator;
 import org.corfudb.benchmarks.runtime.collections.helper.ValueGenerator.StaticValueGenerator;
+import org.corfudb.benchmarks.runtime.collections.helper.ZipfGenerator;
 import org.corfudb.benchmarks.util.SizeUnit;
 import org.corfudb.runtime.collections.ContextAwareMap;
 import org.corfudb.runtime.collections.CorfuTable;
 import org.corfudb.runtime.collections.StreamingMapDecorator;
 import org.corfudb.runtime.object.ICorfuVersionPolicy;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
 import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteOptions;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 
 @Slf4j
+@State(Scope.Benchmark)
 public abstract class RocksDbState {
     private static final String TMP_DIR = System.getProperty("java.io.tmpdir");
 
+    /**
+     * Number of entries written by a single putAll call while filling a table
+     */
+    static final int FILL_BATCH_SIZE = 10_000;
+
+    /**
+     * Approximate heap size of a near cache entry besides the value chars: the cache node, the hash map node,
+     * the boxed key and the headers of the string and its char array
+     */
+    static final int NEAR_CACHE_ENTRY_OVERHEAD = 136;
+
+    /**
+     * The map of the running benchmark, {@link RocksDbCounters} are taken from its statistics
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private static volatile RocksDbMap<?, ?> activeMap;
+
     @Getter
     CorfuTableBenchmarkHelper helper;
 
-    private final Path dbPath = Paths.get(
+    /**
+     * Distribution of the keys accessed by the benchmark, see {@link KeyDistribution} for the specs
+     */
+    @Param({"uniform"})
+    @Getter
+    public String keyDistribution;
+
+    final Path dbPath = Paths.get(
             FilenameUtils.getName(TMP_DIR), "corfu", "rt", "persistence", "rocks_db"
     );
 
-    RocksDbMap<Integer, String> getRocksDbMap() {
+    RocksDbMapBuilder<Integer, String> getRocksDbMapBuilder() {
         return RocksDbMap.<Integer, String>builder()
                 .dbPath(dbPath)
                 .keyType(Integer.class)
                 .valueType(String.class)
-                .build();
+                .statisticsEnabled(true);
+    }
+
+    RocksDbMap<Integer, String> getRocksDbMap() {
+        return getRocksDbMapBuilder().build();
     }
 
-    private void cleanDbDir() throws IOException {
+    void cleanDbDir() throws IOException {
         File dbDir = dbPath.toFile();
         FileUtils.deleteDirectory(dbDir);
         FileUtils.forceMkdir(dbDir);
@@ -55,25 +115,67 @@ public abstract class RocksDbState {
 
         cleanDbDir();
         RocksDbMap<Integer, String> rocksMap = getRocksDbMap().init();
+        activeMap = rocksMap;
+
+        helper = createHelper(rocksMap, dataSize, tableSize);
+    }
+
+    CorfuTableBenchmarkHelper createHelper(RocksDbMap<Integer, String> rocksMap, int dataSize, int tableSize) {
+        return createHelper(rocksMap, new StaticValueGenerator(dataSize), dataSize, tableSize);
+    }
 
-        Supplier<ContextAwareMap<Integer, String>> mapSupplier = () -> new StreamingMapDecorator<>(rocksMap);
+    CorfuTableBenchmarkHelper createHelper(Map<Integer, String> map, ValueGenerator valueGenerator,
+                                           int dataSize, int tableSize) {
+        Supplier<ContextAwareMap<Integer, String>> mapSupplier = () -> new StreamingMapDecorator<>(map);
         CorfuTable<Integer, String> table = new CorfuTable<>(mapSupplier, ICorfuVersionPolicy.DEFAULT);
-        StaticValueGenerator valueGenerator = new StaticValueGenerator(dataSize);
 
-        helper = CorfuTableBenchmarkHelper.builder()
-                .underlyingMap(rocksMap)
+        return CorfuTableBenchmarkHelper.builder()
+                .underlyingMap(map)
                 .valueGenerator(valueGenerator)
                 .table(table)
                 .dataSize(dataSize)
                 .tableSize(tableSize)
+                .keyDistribution(KeyDistribution.of(keyDistribution, tableSize))
                 .build()
                 .check();
     }
 
+    /**
+     * Corfu table over a near cache in front of a map, the cache holds a share of the table.
+     * The cache is bounded by the estimated heap size of the entries.
+     *
+     * @param backend      the map behind the cache
+     * @param tableSize    number of entries in the map
+     * @param cachePercent cache size in percents of the table, 0 - the table goes straight to the map
+     * @param dataSize     value size
+     * @return corfu table
+     */
+    static CorfuTable<Integer, String> createNearCacheTable(Map<Integer, String> backend, int tableSize,
+                                                           int cachePercent, int dataSize) {
+        NearCacheMap<Integer, String> nearCache = null;
+        if (cachePercent > 0) {
+            long cachedEntries = (long) tableSize * cachePercent / 100;
+            nearCache = NearCacheMap.<Integer, String>builder()
+                    .backend(backend)
+                    .maximumWeight(cachedEntries * (NEAR_CACHE_ENTRY_OVERHEAD + 2 * dataSize))
+                    .weigher((key, value) -> NEAR_CACHE_ENTRY_OVERHEAD + 2 * value.length())
+                    .expectedSize(cachedEntries)
+                    .build()
+                    .init();
+        }
+        ThreadShareCounters.track(NearCacheMap.class, nearCache);
+
+        Map<Integer, String> map = nearCache == null ? backend : nearCache;
+        Supplier<ContextAwareMap<Integer, String>> mapSupplier = () -> new StreamingMapDecorator<>(map);
+        return new CorfuTable<>(mapSupplier, ICorfuVersionPolicy.DEFAULT);
+    }
+
     void stop() throws RocksDBException, IOException {
         RocksDbMap<Integer, String> rocksDbMap = helper.getUnderlyingMap();
         log.info(rocksDbMap.getStats());
+        log.info("Statistics: {}", rocksDbMap.getStatistics());
         rocksDbMap.close();
+        activeMap = null;
 
         cleanDbDir();
     }
@@ -94,7 +196,7 @@ public abstract class RocksDbState {
         @Setup
         public void init() throws IOException, RocksDBException {
             init(dataSize, tableSize);
-            helper.fillTable();
+            helper.fillTable(FILL_BATCH_SIZE);
         }
 
         @TearDown
@@ -103,6 +205,73 @@ public abstract class RocksDbState {
         }
     }
 
+    /**
+     * Bulk writes, sweeps bulk load modes and batch sizes
+     */
+    @Slf4j
+    @State(Scope.Benchmark)
+    public static class RocksDbStateForPutAll extends RocksDbState {
+
+        @Param({"WRITE_BATCH", "WRITE_BATCH_WITH_INDEX", "SST_FILE"})
+        @Getter
+        public BulkLoadMode bulkLoadMode;
+
+        /**
+         * Number of entries in a putAll call, it's also the max number of entries in a batch
+         */
+        @Param({"10", "100", "1000", "10000"})
+        @Getter
+        public int batchSize;
+
+        /**
+         * Max size of a batch in bytes
+         */
+        @Param({"16777216"})
+        @Getter
+        public long batchSizeBytes;
+
+        @Param({"64", "256"})
+        @Getter
+        public int dataSize;
+
+        @Getter
+        protected int tableSize = SizeUnit.MIL.getValue();
+
+        private final Map<Integer, String> batch = new HashMap<>();
+
+        /**
+         * Sst file ingestion doesn't work with plain tables, all the modes use block based tables
+         * to get comparable results.
+         */
+        @Override
+        RocksDbMapBuilder<Integer, String> getRocksDbMapBuilder() {
+            return super.getRocksDbMapBuilder()
+                    .options(RocksDbOptions.blockBasedTable())
+                    .bulkLoadMode(bulkLoadMode)
+                    .batchSizeEntries(batchSize)
+                    .batchSizeBytes(batchSizeBytes);
+        }
+
+        /**
+         * Next batch of random entries
+         *
+         * @return batch
+         */
+        public Map<Integer, String> nextBatch() {
+            return helper.generateBatch(batchSize, batch);
+        }
+
+        @Setup
+        public void init() throws IOException, RocksDBException {
+            init(dataSize, tableSize);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException, RocksDBException {
+            stop();
+        }
+    }
+
     @Slf4j
     @State(Scope.Benchmark)
     public static class RocksDbStateForPut extends RocksDbState {
@@ -127,4 +296,1104 @@ public abstract class RocksDbState {
             stop();
         }
     }
+
+    /**
+     * Compares the original padded serialization with pooled and unpooled serialization buffers,
+     * run with the gc profiler to get bytes allocated per operation (gc.alloc.rate.norm).
+     */
+    @Slf4j
+    @State(Scope.Benchmark)
+    public static class RocksDbStateForCodec extends RocksDbState {
+
+        @Param({"LEGACY", "UNPOOLED", "POOLED"})
+        @Getter
+        public RocksDbCodec codec;
+
+        @Param({"64", "256"})
+        @Getter
+        public int dataSize;
+
+        @Getter
+        protected int tableSize = SizeUnit.HUNDRED_K.getValue();
+
+        @Override
+        RocksDbMapBuilder<Integer, String> getRocksDbMapBuilder() {
+            return super.getRocksDbMapBuilder().codec(codec);
+        }
+
+        @Setup
+        public void init() throws IOException, RocksDBException {
+            init(dataSize, tableSize);
+            helper.fillTable();
+        }
+
+        @TearDown
+        public void tearDown() throws IOException, RocksDBException {
+            stop();
+        }
+    }
+
+    /**
+     * Map size calculation, sweeps size modes and table sizes
+     */
+    @Slf4j
+    @State(Scope.Benchmark)
+    public static class RocksDbStateForSize extends RocksDbState {
+
+        @Param({"EXACT", "ESTIMATE", "SCAN"})
+        @Getter
+        public SizeMode sizeMode;
+
+        @Param({"64"})
+        @Getter
+        public int dataSize;
+
+        @Param({"100000", "1000000", "10000000"})
+        @Getter
+        public int tableSize;
+
+        @Override
+        RocksDbMapBuilder<Integer, String> getRocksDbMapBuilder() {
+            return super.getRocksDbMapBuilder().sizeMode(sizeMode);
+        }
+
+        @Setup
+        public void init() throws IOException, RocksDBException {
+            init(dataSize, tableSize);
+            helper.fillTable(FILL_BATCH_SIZE);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException, RocksDBException {
+            stop();
+        }
+    }
+
+    /**
+     * Point lookups of existing and missing keys, with and without a bloom filter
+     */
+    @Slf4j
+    @State(Scope.Benchmark)
+    public static class RocksDbStateForLookup extends RocksDbState {
+
+        /**
+         * Bloom filter bits per key, 0 - no filter
+         */
+        @Param({"0", "10"})
+        @Getter
+        public int bloomBitsPerKey;
+
+        @Param({"64"})
+        @Getter
+        public int dataSize;
+
+        @Param({"1000000", "10000000"})
+        @Getter
+        public int tableSize;
+
+        @Override
+        RocksDbMapBuilder<Integer, String> getRocksDbMapBuilder() {
+            return super.getRocksDbMapBuilder()
+                    .options(RocksDbOptions.blockBasedTable(bloomBitsPerKey, true));
+        }
+
+        @Setup
+        public void init() throws IOException, RocksDBException {
+            init(dataSize, tableSize);
+            helper.fillTable(FILL_BATCH_SIZE);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException, RocksDBException {
+            stop();
+        }
+    }
+
+    /**
+     * Removes with different removal policies, with and without the exact key counter
+     */
+    @Slf4j
+    @State(Scope.Benchmark)
+    public static class RocksDbStateForRemove extends RocksDbState {
+
+        @Param({"RETURN_PREVIOUS", "BLIND_DELETE", "SINGLE_DELETE"})
+        @Getter
+        public RemovalPolicy removalPolicy;
+
+        /**
+         * The exact counter needs an existence check on every remove, even a blind one
+         */
+        @Param({"EXACT", "ESTIMATE"})
+        @Getter
+        public SizeMode sizeMode;
+
+        @Param({"64"})
+        @Getter
+        public int dataSize;
+
+        @Param({"1000000"})
+        @Getter
+        public int tableSize;
+
+        @Override
+        RocksDbMapBuilder<Integer, String> getRocksDbMapBuilder() {
+            return super.getRocksDbMapBuilder()
+                    .removalPolicy(removalPolicy)
+                    .sizeMode(sizeMode);
+        }
+
+        @Setup
+        public void init() throws IOException, RocksDBException {
+            init(dataSize, tableSize);
+            helper.fillTable(FILL_BATCH_SIZE);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException, RocksDBException {
+            stop();
+        }
+    }
+
+    /**
+     * Full table scans, sequential and parallel. Parallel scans split the key range,
+     * which needs block based table format.
+     */
+    @Slf4j
+    @State(Scope.Benchmark)
+    public static class RocksDbStateForScan extends RocksDbState {
+
+        @Param({"false", "true"})
+        @Getter
+        public boolean parallel;
+
+        @Param({"64"})
+        @Getter
+        public int dataSize;
+
+        @Param({"1000000", "10000000"})
+        @Getter
+        public int tableSize;
+
+        @Override
+        RocksDbMapBuilder<Integer, String> getRocksDbMapBuilder() {
+            return super.getRocksDbMapBuilder().options(RocksDbOptions.blockBasedTable());
+        }
+
+        @Setup
+        public void init() throws IOException, RocksDBException {
+            init(dataSize, tableSize);
+            helper.fillTable(FILL_BATCH_SIZE);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException, RocksDBException {
+            stop();
+        }
+    }
+
+    /**
+     * Option profiles, every profile benchmark runs against every profile and data size,
+     * which gives a profile x operation x data size matrix
+     */
+    @Slf4j
+    @State(Scope.Benchmark)
+    public static class RocksDbStateForProfile extends RocksDbState {
+
+        @Param({"PLAIN_TABLE", "POINT_LOOKUP", "SCAN_HEAVY", "WRITE_HEAVY", "LOW_MEMORY"})
+        @Getter
+        public RocksDbProfile profile;
+
+        @Param({"64", "256", "1024"})
+        @Getter
+        public int dataSize;
+
+        @Param({"1000000"})
+        @Getter
+        public int tableSize;
+
+        @Override
+        RocksDbMapBuilder<Integer, String> getRocksDbMapBuilder() {
+            return super.getRocksDbMapBuilder().options(profile.options());
+        }
+
+        @Setup
+        public void init() throws IOException, RocksDBException {
+            init(dataSize, tableSize);
+            helper.fillTable(FILL_BATCH_SIZE);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException, RocksDBException {
+            stop();
+        }
+    }
+
+    /**
+     * Batched lookups: one multiGet call vs a get per key
+     */
+    @Slf4j
+    @State(Scope.Benchmark)
+    public static class RocksDbStateForMultiGet extends RocksDbState {
+
+        @Param({"8", "64", "512"})
+        @Getter
+        public int batchSize;
+
+        @Param({"64"})
+        @Getter
+        public int dataSize;
+
+        @Param({"1000000"})
+        @Getter
+        public int tableSize;
+
+        private final List<Integer> keys = new ArrayList<>();
+
+        /**
+         * Next batch of random existing keys
+         *
+         * @return keys
+         */
+        public List<Integer> nextKeys() {
+            return helper.generateKeys(batchSize, keys);
+        }
+
+        @Setup
+        public void init() throws IOException, RocksDBException {
+            init(dataSize, tableSize);
+            helper.fillTable(FILL_BATCH_SIZE);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException, RocksDBException {
+            stop();
+        }
+    }
+
+    /**
+     * Range scans over order-preserving keys, sweeps the share of the table a range covers
+     */
+    @Slf4j
+    @State(Scope.Benchmark)
+    public static class RocksDbStateForRange extends RocksDbState {
+
+        /**
+         * Share of the table covered by a range, from 0.1% to 10%
+         */
+        @Param({"0.001", "0.01", "0.1"})
+        @Getter
+        public double selectivity;
+
+        /**
+         * Iterator readahead size in bytes, 0 - RocksDb default
+         */
+        @Param({"0", "2097152"})
+        @Getter
+        public long readaheadSize;
+
+        @Param({"64"})
+        @Getter
+        public int dataSize;
+
+        @Param({"1000000"})
+        @Getter
+        public int tableSize;
+
+        @Override
+        RocksDbMapBuilder<Integer, String> getRocksDbMapBuilder() {
+            return super.getRocksDbMapBuilder()
+                    .keyEncoder(RocksDbKeyEncoder.INT)
+                    .readaheadSize(readaheadSize)
+                    .options(RocksDbOptions.blockBasedTable());
+        }
+
+        /**
+         * Number of keys in a range
+         *
+         * @return range size
+         */
+        public int getRangeSize() {
+            return Math.max(1, (int) (tableSize * selectivity));
+        }
+
+        /**
+         * Random first key of a range, the range fits into the table
+         *
+         * @return first key
+         */
+        public int nextFrom() {
+            return helper.getRandom().nextInt(tableSize - getRangeSize() + 1);
+        }
+
+        @Setup
+        public void init() throws IOException, RocksDBException {
+            init(dataSize, tableSize);
+            helper.fillTable(FILL_BATCH_SIZE);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException, RocksDBException {
+            stop();
+        }
+    }
+
+    /**
+     * Concurrent writers and snapshot readers. Writers advance the version every snapshotInterval writes
+     * and pin it with a snapshot, readers read at the latest version. The last retainedSnapshots versions
+     * are kept alive, so the memory held by live snapshots can be compared.
+     */
+    @Slf4j
+    @State(Scope.Benchmark)
+    public static class RocksDbStateForSnapshot extends RocksDbState {
+
+        /**
+         * Number of writes per version
+         */
+        @Param({"100", "10000"})
+        @Getter
+        public int snapshotInterval;
+
+        /**
+         * Number of the latest versions with a live snapshot
+         */
+        @Param({"1", "16"})
+        @Getter
+        public int retainedSnapshots;
+
+        @Param({"64"})
+        @Getter
+        public int dataSize;
+
+        @Param({"100000"})
+        @Getter
+        public int tableSize;
+
+        private final AtomicLong writes = new AtomicLong();
+        private final Deque<RocksDbSnapshot<Integer, String>> retained = new ArrayDeque<>();
+
+        /**
+         * Snapshot of the latest version, readers share it without a lookup by version
+         */
+        private volatile RocksDbSnapshot<Integer, String> latest;
+
+        /**
+         * Put a random key, publish a new version every snapshotInterval writes
+         *
+         * @return put result
+         */
+        public String write() {
+            RocksDbMap<Integer, String> map = helper.getUnderlyingMap();
+            String result = map.put(helper.generate(), helper.generateValue());
+
+            long count = writes.incrementAndGet();
+            if (count % snapshotInterval == 0) {
+                publish(count / snapshotInterval);
+            }
+
+            return result;
+        }
+
+        /**
+         * Pin the current state as a version. Writers race to publish, a version older than the latest one
+         * is skipped: the snapshot of the latest version is taken later and covers its writes too.
+         */
+        private synchronized void publish(long version) {
+            if (latest != null && version <= latest.getVersion()) {
+                return;
+            }
+
+            RocksDbMap<Integer, String> map = helper.getUnderlyingMap();
+            RocksDbSnapshot<Integer, String> snapshot = map.snapshot(version);
+            retained.addLast(snapshot);
+            latest = snapshot;
+
+            while (retained.size() > retainedSnapshots) {
+                retained.removeFirst().close();
+            }
+        }
+
+        /**
+         * Acquire the snapshot of the latest version, the snapshot has to be closed.
+         * The latest snapshot is retained until a newer one is published, so a failed acquire
+         * means there is a newer snapshot to take.
+         *
+         * @return snapshot
+         */
+        public RocksDbSnapshot<Integer, String> acquireLatest() {
+            RocksDbSnapshot<Integer, String> snapshot = latest;
+            while (!snapshot.retain()) {
+                snapshot = latest;
+            }
+            return snapshot;
+        }
+
+        /**
+         * Fill the table and publish the initial version
+         *
+         * @throws IOException      io exception
+         * @throws RocksDBException db exception
+         */
+        @Setup
+        public void init() throws IOException, RocksDBException {
+            init(dataSize, tableSize);
+            helper.fillTable(FILL_BATCH_SIZE);
+            publish(0);
+        }
+
+        /**
+         * Release the retained snapshots and close the map
+         *
+         * @throws IOException      io exception
+         * @throws RocksDBException db exception
+         */
+        @TearDown
+        public synchronized void tearDown() throws IOException, RocksDBException {
+            retained.forEach(RocksDbSnapshot::close);
+            retained.clear();
+            stop();
+        }
+    }
+
+    /**
+     * Many tables in one shared database, see {@link RocksDbMapFactory}.
+     * Every operation goes to a random table.
+     */
+    @Slf4j
+    @State(Scope.Benchmark)
+    public static class RocksDbStateForTables extends RocksDbState {
+
+        @Param({"10", "100", "1000"})
+        @Getter
+        public int tables;
+
+        @Param({"64"})
+        @Getter
+        public int dataSize;
+
+        /**
+         * Number of keys in a table
+         */
+        @Param({"10000"})
+        @Getter
+        public int tableSize;
+
+        private RocksDbMapFactory factory;
+        private final List<CorfuTableBenchmarkHelper> helpers = new ArrayList<>();
+
+        /**
+         * Benchmark helper of a random table
+         *
+         * @return benchmark helper
+         */
+        public CorfuTableBenchmarkHelper nextTable() {
+            return helpers.get(ThreadLocalRandom.current().nextInt(helpers.size()));
+        }
+
+        /**
+         * Open and fill the tables
+         *
+         * @throws IOException      io exception
+         * @throws RocksDBException db exception
+         */
+        @Setup
+        public void init() throws IOException, RocksDBException {
+            log.info("Initialization...");
+
+            cleanDbDir();
+            factory = RocksDbMapFactory.builder()
+                    .dbPath(dbPath)
+                    .statisticsEnabled(true)
+                    .build()
+                    .init();
+
+            for (int i = 0; i < tables; i++) {
+                RocksDbMap<Integer, String> rocksMap = factory.map("table-" + i, Integer.class, String.class)
+                        .build()
+                        .init();
+
+                helpers.add(createHelper(rocksMap, dataSize, tableSize).fillTable(FILL_BATCH_SIZE));
+            }
+
+            helper = helpers.get(0);
+            activeMap = helper.<RocksDbMap<Integer, String>>getUnderlyingMap();
+            log.info("Memory usage: {}", factory.getMemoryUsage());
+        }
+
+        /**
+         * Close the tables and the shared database
+         *
+         * @throws IOException      io exception
+         * @throws RocksDBException db exception
+         */
+        @TearDown
+        public void tearDown() throws IOException, RocksDBException {
+            log.info("Memory usage: {}", factory.getMemoryUsage());
+            log.info("Statistics: {}", activeMap.getStatistics());
+
+            helpers.forEach(tableHelper -> tableHelper.<RocksDbMap<Integer, String>>getUnderlyingMap().close());
+            helpers.clear();
+            activeMap = null;
+            factory.close();
+
+            cleanDbDir();
+        }
+    }
+
+    /**
+     * A table refilled before every iteration and cleared by the benchmark.
+     * All the clear modes use a table in a shared database, so that they run with the same options.
+     */
+    @Slf4j
+    @State(Scope.Benchmark)
+    public static class RocksDbStateForClear extends RocksDbState {
+
+        @Param({"DELETE_RANGE", "DROP_COLUMN", "DELETE_KEYS"})
+        @Getter
+        public ClearMode clearMode;
+
+        @Param({"64"})
+        @Getter
+        public int dataSize;
+
+        @Param({"1000000"})
+        @Getter
+        public int tableSize;
+
+        private RocksDbMapFactory factory;
+
+        /**
+         * Open the table
+         *
+         * @throws IOException      io exception
+         * @throws RocksDBException db exception
+         */
+        @Setup
+        public void init() throws IOException, RocksDBException {
+            log.info("Initialization...");
+
+            cleanDbDir();
+            factory = RocksDbMapFactory.builder()
+                    .dbPath(dbPath)
+                    .statisticsEnabled(true)
+                    .build()
+                    .init();
+
+            RocksDbMap<Integer, String> rocksMap = factory.map("table", Integer.class, String.class)
+                    .clearMode(clearMode)
+                    .build()
+                    .init();
+
+            activeMap = rocksMap;
+            helper = createHelper(rocksMap, dataSize, tableSize);
+        }
+
+        @Setup(Level.Iteration)
+        public void fillTable() {
+            helper.fillTable(FILL_BATCH_SIZE);
+            afterFill();
+        }
+
+        void afterFill() {
+            //nothing to do
+        }
+
+        /**
+         * Log the statistics of the iteration. Single shot benchmarks don't report aux counters,
+         * the log shows the space the clear left behind (memtables, sst files and pending compactions).
+         *
+         * @throws RocksDBException db exception
+         */
+        @TearDown(Level.Iteration)
+        public void logStatistics() throws RocksDBException {
+            RocksDbMap<Integer, String> rocksMap = helper.getUnderlyingMap();
+            log.info("Iteration statistics: {}", rocksMap.getStatistics());
+        }
+
+        /**
+         * Close the table and the shared database
+         *
+         * @throws IOException      io exception
+         * @throws RocksDBException db exception
+         */
+        @TearDown
+        public void tearDown() throws IOException, RocksDBException {
+            RocksDbMap<Integer, String> rocksMap = helper.getUnderlyingMap();
+            log.info("Statistics: {}", rocksMap.getStatistics());
+
+            rocksMap.close();
+            activeMap = null;
+            factory.close();
+
+            cleanDbDir();
+        }
+    }
+
+    /**
+     * A table filled and cleared before every iteration, the benchmark works with the table right after the clear,
+     * while range tombstones and deleted keys are not compacted yet
+     */
+    @Slf4j
+    @State(Scope.Benchmark)
+    public static class RocksDbStateAfterClear extends RocksDbStateForClear {
+
+        @Override
+        void afterFill() {
+            helper.getTable().clear();
+        }
+    }
+
+    /**
+     * Update-heavy workload (YCSB-A style): every operation is a read or an update of a random key.
+     * Counters are preloaded for all the keys of the table.
+     */
+    @Slf4j
+    @State(Scope.Benchmark)
+    public static class RocksDbStateForUpdate extends RocksDbState {
+
+        /**
+         * Share of reads, the rest are updates
+         */
+        @Param({"0.5"})
+        @Getter
+        public double readProportion;
+
+        @Param({"64"})
+        @Getter
+        public int dataSize;
+
+        @Param({"1000000"})
+        @Getter
+        public int tableSize;
+
+        /**
+         * Whether the next operation is a read
+         *
+         * @return true - read, false - update
+         */
+        public boolean nextIsRead() {
+            return ThreadLocalRandom.current().nextDouble() < readProportion;
+        }
+
+        /**
+         * Fill the table and the counters
+         *
+         * @throws IOException      io exception
+         * @throws RocksDBException db exception
+         */
+        @Setup
+        public void init() throws IOException, RocksDBException {
+            init(dataSize, tableSize);
+            helper.fillTable(FILL_BATCH_SIZE);
+
+            RocksDbMap<Integer, String> rocksMap = helper.getUnderlyingMap();
+            for (int i = 0; i < tableSize; i++) {
+                rocksMap.setCounter(i, 0);
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws IOException, RocksDBException {
+            stop();
+        }
+    }
+
+    /**
+     * Sustained writes with concurrent reads, long enough for compactions of all the levels.
+     * Puts overwrite random keys, so compactions keep rewriting the data. The map estimates its size,
+     * so that puts are blind writes.
+     */
+    @Slf4j
+    @State(Scope.Benchmark)
+    public static class RocksDbStateForCompaction extends RocksDbState {
+
+        /**
+         * Flush and compaction write rate limit in MB/s, 0 - unlimited
+         */
+        @Param({"0", "64"})
+        @Getter
+        public int rateLimitMbPerSec;
+
+        @Param({"false", "true"})
+        @Getter
+        public boolean directIo;
+
+        @Param({"2", "8"})
+        @Getter
+        public int maxBackgroundJobs;
+
+        @Param({"1024"})
+        @Getter
+        public int dataSize;
+
+        @Param({"1000000"})
+        @Getter
+        public int tableSize;
+
+        @Override
+        RocksDbMapBuilder<Integer, String> getRocksDbMapBuilder() {
+            long rateLimit = 1024L * 1024 * rateLimitMbPerSec;
+            return super.getRocksDbMapBuilder()
+                    .options(RocksDbOptions.sustainedWrite(rateLimit, directIo, maxBackgroundJobs))
+                    .sizeMode(SizeMode.ESTIMATE);
+        }
+
+        @Setup
+        public void init() throws IOException, RocksDBException {
+            init(dataSize, tableSize);
+            helper.fillTable(FILL_BATCH_SIZE);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException, RocksDBException {
+            stop();
+        }
+    }
+
+    /**
+     * The map as a cache tier: a constant stream of inserts of new keys and lookups of recently inserted keys.
+     * Without a bound the database grows with the stream, with a ttl or a max size the disk usage levels off.
+     */
+    @Slf4j
+    @State(Scope.Benchmark)
+    public static class RocksDbStateForEviction extends RocksDbState {
+
+        /**
+         * Time to live in seconds, 0 - no expiry
+         */
+        @Param({"0", "60"})
+        @Getter
+        public int ttlSeconds;
+
+        /**
+         * Max size of data files in MB, 0 - unbounded
+         */
+        @Param({"0", "256"})
+        @Getter
+        public int maxMb;
+
+        @Param({"1024"})
+        @Getter
+        public int dataSize;
+
+        /**
+         * Lookups go to the last tableSize inserted keys
+         */
+        @Param({"1000000"})
+        @Getter
+        public int tableSize;
+
+        private final AtomicInteger inserted = new AtomicInteger();
+
+        @Override
+        RocksDbMapBuilder<Integer, String> getRocksDbMapBuilder() {
+            return super.getRocksDbMapBuilder()
+                    .options(RocksDbOptions.blockBasedTable())
+                    .sizeMode(SizeMode.ESTIMATE)
+                    .ttlSeconds(ttlSeconds)
+                    .maxBytes(1024L * 1024 * maxMb);
+        }
+
+        /**
+         * Next key of the insert stream
+         *
+         * @return new key
+         */
+        public int nextKey() {
+            return inserted.getAndIncrement();
+        }
+
+        /**
+         * Random key out of the last tableSize inserted keys, the key may be expired or evicted
+         *
+         * @return recent key
+         */
+        public int recentKey() {
+            int last = inserted.get();
+            int window = Math.max(1, Math.min(last, tableSize));
+            return last - 1 - ThreadLocalRandom.current().nextInt(window);
+        }
+
+        @Setup
+        public void init() throws IOException, RocksDBException {
+            init(dataSize, tableSize);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException, RocksDBException {
+            stop();
+        }
+    }
+
+    /**
+     * Recovery after a kill, the baseline for {@link MappedLogState.MappedLogStateForReopen}.
+     * A killed process can't be emulated in the same jvm, the database lock is held until the database is closed.
+     * Every iteration fills a database with the write ahead log on and closes it, close doesn't flush
+     * the memtables when they are in the log, so the benchmark opens the database and replays the log
+     * like after a kill.
+     */
+    @Slf4j
+    @State(Scope.Benchmark)
+    public static class RocksDbStateForReopen extends RocksDbState {
+
+        @Param({"64"})
+        @Getter
+        public int dataSize;
+
+        @Param({"1000000", "10000000"})
+        @Getter
+        public int tableSize;
+
+        private WriteOptions walOptions;
+        private RocksDbMap<Integer, String> reopened;
+
+        @Override
+        RocksDbMapBuilder<Integer, String> getRocksDbMapBuilder() {
+            return super.getRocksDbMapBuilder().writeOptions(walOptions);
+        }
+
+        /**
+         * Fill a database and close it
+         *
+         * @throws IOException      io exception
+         * @throws RocksDBException db exception
+         */
+        @Setup(Level.Iteration)
+        public void fillAndClose() throws IOException, RocksDBException {
+            walOptions = new WriteOptions();
+            init(dataSize, tableSize);
+            helper.fillTable(FILL_BATCH_SIZE);
+            helper.<RocksDbMap<Integer, String>>getUnderlyingMap().close();
+        }
+
+        /**
+         * Open the database
+         *
+         * @return the recovered map
+         * @throws RocksDBException db exception
+         */
+        public RocksDbMap<Integer, String> reopen() throws RocksDBException {
+            reopened = getRocksDbMap().init();
+            return reopened;
+        }
+
+        /**
+         * Close the recovered map
+         *
+         * @throws IOException io exception
+         */
+        @TearDown(Level.Iteration)
+        public void closeReopened() throws IOException {
+            reopened.close();
+            walOptions.close();
+            cleanDbDir();
+        }
+    }
+
+    /**
+     * Lookups of zipf-distributed keys through a near cache, 0 percent is the map without a cache.
+     * The skew is a param of its own, the key distribution param doesn't apply.
+     */
+    @Slf4j
+    @State(Scope.Benchmark)
+    public static class RocksDbStateForNearCache extends RocksDbState {
+
+        @Param({"0", "1", "10"})
+        @Getter
+        public int cachePercent;
+
+        @Param({"0.8", "0.99"})
+        @Getter
+        public double zipfTheta;
+
+        @Param({"64"})
+        @Getter
+        public int dataSize;
+
+        @Param({"1000000"})
+        @Getter
+        public int tableSize;
+
+        @Getter
+        private CorfuTable<Integer, String> nearCacheTable;
+
+        private ZipfGenerator keys;
+
+        /**
+         * Next key of the zipf distribution
+         *
+         * @return key
+         */
+        public int nextKey() {
+            return keys.next(helper.getRandom());
+        }
+
+        /**
+         * Fill the table and put the near cache in front of it
+         *
+         * @throws IOException      io exception
+         * @throws RocksDBException db exception
+         */
+        @Setup
+        public void init() throws IOException, RocksDBException {
+            init(dataSize, tableSize);
+            helper.fillTable(FILL_BATCH_SIZE);
+            nearCacheTable = createNearCacheTable(helper.getUnderlyingMap(), tableSize, cachePercent, dataSize);
+            keys = new ZipfGenerator(tableSize, zipfTheta, true);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException, RocksDBException {
+            stop();
+        }
+    }
+
+    /**
+     * A table of compressible documents with compressed values, the values are stored in RocksDb
+     */
+    @Slf4j
+    @State(Scope.Benchmark)
+    public static class RocksDbStateForCompression extends RocksDbState {
+
+        @Param({"NONE", "DEFLATE_FAST", "LZ4", "ZSTD", "ZSTD_DICTIONARY"})
+        @Getter
+        public ValueCodec codec;
+
+        /**
+         * Values shorter than that, in bytes, are stored as is
+         */
+        @Param({"0", "128"})
+        @Getter
+        public int minSize;
+
+        @Param({"64", "1024", "8192"})
+        @Getter
+        public int dataSize;
+
+        @Param({"100000"})
+        @Getter
+        public int tableSize;
+
+        private RocksDbMap<Integer, byte[]> rocksMap;
+        private CompressedMap<Integer> compressedMap;
+
+        /**
+         * Fill the table through the compressed map
+         *
+         * @throws IOException      io exception
+         * @throws RocksDBException db exception
+         */
+        @Setup
+        public void init() throws IOException, RocksDBException {
+            log.info("Initialization...");
+
+            cleanDbDir();
+            rocksMap = RocksDbMap.<Integer, byte[]>builder()
+                    .dbPath(dbPath)
+                    .keyType(Integer.class)
+                    .valueType(byte[].class)
+                    .statisticsEnabled(true)
+                    .build()
+                    .init();
+            activeMap = rocksMap;
+
+            compressedMap = CompressedMap.<Integer>builder()
+                    .backend(rocksMap)
+                    .codec(codec)
+                    .minSize(minSize)
+                    .build();
+            ThreadShareCounters.track(CompressedMap.class, compressedMap);
+
+            helper = createHelper(compressedMap, new CompressibleValueGenerator(dataSize), dataSize, tableSize)
+                    .fillTable(FILL_BATCH_SIZE);
+        }
+
+        /**
+         * Close the compressed map and the table
+         *
+         * @throws IOException      io exception
+         * @throws RocksDBException db exception
+         */
+        @TearDown
+        public void tearDown() throws IOException, RocksDBException {
+            log.info(rocksMap.getStats());
+            log.info("Statistics: {}", rocksMap.getStatistics());
+            compressedMap.close();
+            rocksMap.close();
+            activeMap = null;
+            ThreadShareCounters.track(CompressedMap.class, null);
+
+            cleanDbDir();
+        }
+    }
+
+    /**
+     * Puts of random keys, synchronously or through a write-behind buffer
+     */
+    @Slf4j
+    @State(Scope.Benchmark)
+    public static class RocksDbStateForWriteBehind extends RocksDbState {
+
+        @Param({"false", "true"})
+        @Getter
+        public boolean writeBehind;
+
+        @Param({"64", "1024"})
+        @Getter
+        public int dataSize;
+
+        /**
+         * Puts go to random keys of the table, the writes to a small table get coalesced more often
+         */
+        @Param({"10000", "1000000"})
+        @Getter
+        public int tableSize;
+
+        @Getter
+        private CorfuTable<Integer, String> writeTable;
+
+        private WriteBehindMap<Integer, String> writeBehindMap;
+
+        /**
+         * Open the map and put the write-behind buffer in front of it
+         *
+         * @throws IOException      io exception
+         * @throws RocksDBException db exception
+         */
+        @Setup
+        public void init() throws IOException, RocksDBException {
+            init(dataSize, tableSize);
+
+            Map<Integer, String> map = helper.getUnderlyingMap();
+            if (writeBehind) {
+                writeBehindMap = WriteBehindMap.<Integer, String>builder()
+                        .backend(map)
+                        .build()
+                        .init();
+                map = writeBehindMap;
+            }
+            ThreadShareCounters.track(WriteBehindMap.class, writeBehindMap);
+
+            Map<Integer, String> tableMap = map;
+            Supplier<ContextAwareMap<Integer, String>> mapSupplier = () -> new StreamingMapDecorator<>(tableMap);
+            writeTable = new CorfuTable<>(mapSupplier, ICorfuVersionPolicy.DEFAULT);
+        }
+
+        /**
+         * Apply the pending writes and close the map
+         *
+         * @throws IOException      io exception
+         * @throws RocksDBException db exception
+         */
+        @TearDown
+        public void tearDown() throws IOException, RocksDBException {
+            if (writeBehindMap != null) {
+                writeBehindMap.close();
+                log.info("Write-behind: {} writes in {} batches, {} coalesced",
+                        writeBehindMap.getAppliedWrites(), writeBehindMap.getBatches(),
+                        writeBehindMap.getCoalescedWrites());
+            }
+            ThreadShareCounters.track(WriteBehindMap.class, null);
+            stop();
+        }
+    }
 }
@@ -0,0 +1,130 @@
+package org.corfudb.benchmarks.runtime.collections.state;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Base of the aux counters reported by jmh next to the score of a benchmark. A subclass takes its counters
+ * before and after every iteration and reports them through public getters.
+ * Jmh sums the counters of all the benchmark threads and of all the iterations. Every thread reports
+ * its share of a counter that adds up over the iterations (events, bytes written), see {@link #share(double)}.
+ * A gauge, a ratio or a percentile doesn't add up, so every thread reports its share divided by the number
+ * of iterations, see {@link #mean(double)}: the score is the mean over the iterations, the lines printed
+ * for the single iterations show the value divided by the number of iterations.
+ */
+public abstract class ThreadShareCounters {
+
+    /**
+     * Objects the counters of the running benchmark are taken from, by type
+     */
+    private static final Map<Class<?>, Object> SOURCES = new ConcurrentHashMap<>();
+
+    private int threads;
+    private int iterations;
+    private boolean measurement;
+
+    /**
+     * Set the object of the running benchmark the counters of the type are taken from
+     *
+     * @param type   source type
+     * @param source source or null if the benchmark has no such object
+     * @param <T>    source type
+     */
+    static <T> void track(Class<T> type, T source) {
+        if (source == null) {
+            SOURCES.remove(type);
+        } else {
+            SOURCES.put(type, source);
+        }
+    }
+
+    /**
+     * The object of the running benchmark the counters of the type are taken from
+     *
+     * @param type source type
+     * @param <T>  source type
+     * @return source or null if the benchmark has no such object
+     */
+    static <T> T tracked(Class<T> type) {
+        return type.cast(SOURCES.get(type));
+    }
+
+    /**
+     * Read the number of benchmark threads and iterations and take the counters before every iteration
+     *
+     * @param params    benchmark params
+     * @param iteration params of the warmup or measurement iteration
+     * @throws Exception if the counters can't be taken
+     */
+    @Setup(Level.Iteration)
+    public void reset(BenchmarkParams params, IterationParams iteration) throws Exception {
+        threads = params.getThreads();
+        iterations = iteration.getCount();
+        measurement = iteration.getType() == IterationType.MEASUREMENT;
+        before();
+    }
+
+    /**
+     * Take the counters after every iteration
+     *
+     * @throws Exception if the counters can't be taken
+     */
+    @TearDown(Level.Iteration)
+    public void snapshot() throws Exception {
+        after();
+    }
+
+    /**
+     * Take the counters before an iteration
+     *
+     * @throws Exception if the counters can't be taken
+     */
+    protected void before() throws Exception {
+        //nothing to do
+    }
+
+    /**
+     * Take the counters after an iteration
+     *
+     * @throws Exception if the counters can't be taken
+     */
+    protected void after() throws Exception {
+        //nothing to do
+    }
+
+    /**
+     * Share of a counter reported by a benchmark thread
+     *
+     * @param value counter value
+     * @return value divided by the number of benchmark threads
+     */
+    protected double share(double value) {
+        return value / threads;
+    }
+
+    /**
+     * Share of a gauge, a ratio or a percentile reported by a benchmark thread for an iteration
+     *
+     * @param value value at the end of the iteration
+     * @return value divided by the number of benchmark threads and iterations
+     */
+    protected double mean(double value) {
+        return value / threads / iterations;
+    }
+
+    /**
+     * Whether the current iteration is a measurement iteration, the score is taken from these only
+     *
+     * @return true for a measurement iteration, false for a warmup one
+     */
+    protected boolean isMeasurement() {
+        return measurement;
+    }
+}
@@ -0,0 +1,82 @@
+package org.corfudb.benchmarks.runtime.collections.state;
+
+import org.corfudb.benchmarks.runtime.collections.experiment.writebehind.WriteBehindMap;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Write-behind counters of the running benchmark, collected during an iteration. All the counters are 0
+ * for a benchmark that writes synchronously, see {@link ThreadShareCounters#track(Class, Object)}.
+ * The backpressure waits add up, the ratios and the buffered writes are averaged over the iterations.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class WriteBehindCounters extends ThreadShareCounters {
+
+    private WriteBehindMap<?, ?> map;
+
+    private long startBatches;
+    private long startApplied;
+    private long startCoalesced;
+    private long startWaits;
+    private long batches;
+    private long applied;
+    private long coalesced;
+    private long waits;
+    private long buffered;
+
+    /**
+     * Take the map counters before every iteration
+     */
+    @Override
+    protected void before() {
+        map = tracked(WriteBehindMap.class);
+        if (map != null) {
+            startBatches = map.getBatches();
+            startApplied = map.getAppliedWrites();
+            startCoalesced = map.getCoalescedWrites();
+            startWaits = map.getBackpressureWaits();
+        }
+    }
+
+    /**
+     * Take the map counters after every iteration
+     */
+    @Override
+    protected void after() {
+        if (map != null) {
+            batches = map.getBatches() - startBatches;
+            applied = map.getAppliedWrites() - startApplied;
+            coalesced = map.getCoalescedWrites() - startCoalesced;
+            waits = map.getBackpressureWaits() - startWaits;
+            buffered = map.getBufferedWrites();
+        }
+    }
+
+    /**
+     * Average number of writes applied to the backend at once
+     *
+     * @return number of writes
+     */
+    public double writesPerBatch() {
+        return batches == 0 ? 0 : mean((double) applied / batches);
+    }
+
+    /**
+     * Share of the writes skipped because the same key was written again before they were applied
+     *
+     * @return ratio
+     */
+    public double coalescedRatio() {
+        return applied + coalesced == 0 ? 0 : mean((double) coalesced / (applied + coalesced));
+    }
+
+    public double backpressureWaits() {
+        return share(waits);
+    }
+
+    public double bufferedWrites() {
+        return mean(buffered);
+    }
+}
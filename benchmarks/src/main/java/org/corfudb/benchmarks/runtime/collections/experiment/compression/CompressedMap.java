@@ -0,0 +1,487 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.compression;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import lombok.Builder;
+import lombok.Builder.Default;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * String values compressed on the way to a map of byte arrays, usually a persisted one.
+ * <p>
+ * Every stored value starts with a format byte: the values shorter than the min size and the values
+ * that don't get shorter are stored as is, the rest are compressed by the codec of the map, the size
+ * of the original value follows the format byte. The map trains a zstd dictionary on the first values
+ * written to it, if the codec uses one. The values written before the dictionary is ready are compressed
+ * without it.
+ * <p>
+ * The dictionary is kept in memory only, a persisted table has to keep it next to its data, see
+ * {@link #getDictionary()}. The map holds native resources of the codec until it's closed,
+ * closing the map doesn't close the backend.
+ *
+ * @param <K> key type
+ */
+@Builder
+@Slf4j
+public class CompressedMap<K> extends AbstractMap<K, String> implements AutoCloseable {
+
+    private static final byte RAW = 0;
+    private static final byte COMPRESSED = 1;
+    private static final byte COMPRESSED_WITH_DICTIONARY = 2;
+
+    private static final int RAW_HEADER = 1;
+    private static final int COMPRESSED_HEADER = RAW_HEADER + Integer.BYTES;
+
+    private static final LZ4Compressor LZ4_COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+    private static final LZ4FastDecompressor LZ4_DECOMPRESSOR = LZ4Factory.fastestInstance().fastDecompressor();
+
+    @NonNull
+    @Getter
+    private final Map<K, byte[]> backend;
+
+    @NonNull
+    @Default
+    @Getter
+    private final ValueCodec codec = ValueCodec.LZ4;
+
+    /**
+     * Values shorter than that, in bytes, are stored as is
+     */
+    @Default
+    private final int minSize = 128;
+
+    /**
+     * Max dictionary size
+     */
+    @Default
+    private final int dictionarySize = 32 * 1024;
+
+    /**
+     * Number of value bytes the dictionary is trained on
+     */
+    @Default
+    private final int trainingBytes = 1024 * 1024;
+
+    /**
+     * The dictionary of the table, set once. A dictionary can be passed to the builder,
+     * otherwise the map trains one.
+     */
+    @Getter
+    private volatile byte[] dictionary;
+
+    private final Samples samples = new Samples();
+
+    private final ZstdDictionaries zstdDictionaries = new ZstdDictionaries();
+
+    private final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(this::newDeflater);
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(this::newInflater);
+
+    /**
+     * Deflaters and inflaters of all the threads, their native memory is released on close
+     */
+    private final Queue<Deflater> allDeflaters = new ConcurrentLinkedQueue<>();
+    private final Queue<Inflater> allInflaters = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder storedBytes = new LongAdder();
+
+    /**
+     * Values collected for the dictionary training
+     */
+    private static class Samples {
+        private ZstdDictTrainer trainer;
+        private int size;
+    }
+
+    /**
+     * The dictionary digested by zstd, created once the dictionary is set
+     */
+    private static class ZstdDictionaries {
+        private volatile ZstdDictCompress compress;
+        private volatile ZstdDictDecompress decompress;
+    }
+
+    private Deflater newDeflater() {
+        Deflater deflater = new Deflater(codec.getLevel(), true);
+        allDeflaters.add(deflater);
+        return deflater;
+    }
+
+    private Inflater newInflater() {
+        Inflater inflater = new Inflater(true);
+        allInflaters.add(inflater);
+        return inflater;
+    }
+
+    @Override
+    public String get(@NonNull Object key) {
+        return decompress(backend.get(key));
+    }
+
+    @Override
+    public String put(@NonNull K key, @NonNull String value) {
+        return decompress(backend.put(key, compress(value)));
+    }
+
+    @Override
+    public String remove(@NonNull Object key) {
+        return decompress(backend.remove(key));
+    }
+
+    /**
+     * Compress all the values and write them to the backend at once, so the backend can use its bulk write path
+     *
+     * @param map entries to write
+     */
+    @Override
+    public void putAll(@NonNull Map<? extends K, ? extends String> map) {
+        Map<K, byte[]> compressed = new LinkedHashMap<>(map.size() * 4 / 3 + 1);
+        map.forEach((key, value) -> compressed.put(key, compress(value)));
+        backend.putAll(compressed);
+    }
+
+    @Override
+    public boolean containsKey(@NonNull Object key) {
+        return backend.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return backend.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return backend.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        backend.clear();
+        writes.reset();
+        rawBytes.reset();
+        storedBytes.reset();
+    }
+
+    /**
+     * Entries of the backend, a value is decompressed when the entry is read
+     *
+     * @return entries
+     */
+    @Override
+    public Set<Entry<K, String>> entrySet() {
+        return new AbstractSet<Entry<K, String>>() {
+            @Override
+            public Iterator<Entry<K, String>> iterator() {
+                Iterator<Entry<K, byte[]>> entries = backend.entrySet().iterator();
+                return new Iterator<Entry<K, String>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public Entry<K, String> next() {
+                        Entry<K, byte[]> entry = entries.next();
+                        return new SimpleImmutableEntry<>(entry.getKey(), decompress(entry.getValue()));
+                    }
+
+                    @Override
+                    public void remove() {
+                        entries.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return backend.size();
+            }
+        };
+    }
+
+    private byte[] compress(String value) {
+        byte[] raw = value.getBytes(StandardCharsets.UTF_8);
+        byte[] stored = raw.length < minSize || codec == ValueCodec.NONE ? null : compress(raw);
+        if (stored == null) {
+            stored = new byte[RAW_HEADER + raw.length];
+            stored[0] = RAW;
+            System.arraycopy(raw, 0, stored, RAW_HEADER, raw.length);
+        }
+
+        writes.increment();
+        rawBytes.add(raw.length);
+        storedBytes.add(stored.length);
+        return stored;
+    }
+
+    /**
+     * Compress a value
+     *
+     * @return stored value or null if the value doesn't get shorter
+     */
+    private byte[] compress(byte[] raw) {
+        // the stored value must be shorter than the raw one, a tiny value leaves no room after the header
+        int maxStoredSize = RAW_HEADER + raw.length - 1;
+        if (maxStoredSize <= COMPRESSED_HEADER) {
+            return null;
+        }
+
+        byte[] currentDictionary = dictionary;
+        if (codec.isDictionaryEnabled() && currentDictionary == null) {
+            currentDictionary = sample(raw);
+        }
+        boolean withDictionary = currentDictionary != null && currentDictionary.length > 0;
+
+        byte[] stored = new byte[maxStoredSize];
+        int size;
+        switch (codec.getAlgorithm()) {
+            case DEFLATE:
+                size = deflate(raw, stored);
+                break;
+            case LZ4:
+                size = lz4(raw, stored);
+                break;
+            case ZSTD:
+                size = zstd(raw, stored, withDictionary);
+                break;
+            default:
+                throw new IllegalStateException("Unknown algorithm: " + codec.getAlgorithm());
+        }
+        if (size < 0) {
+            return null;
+        }
+
+        stored[0] = withDictionary ? COMPRESSED_WITH_DICTIONARY : COMPRESSED;
+        ByteBuffer.wrap(stored, RAW_HEADER, Integer.BYTES).putInt(raw.length);
+        byte[] result = new byte[COMPRESSED_HEADER + size];
+        System.arraycopy(stored, 0, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * Compress a value after the header of the stored value
+     *
+     * @return compressed size or -1 if it doesn't fit
+     */
+    private int deflate(byte[] raw, byte[] stored) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+
+        int size = COMPRESSED_HEADER;
+        while (!deflater.finished() && size < stored.length) {
+            size += deflater.deflate(stored, size, stored.length - size);
+        }
+
+        return deflater.finished() ? size - COMPRESSED_HEADER : -1;
+    }
+
+    private static int lz4(byte[] raw, byte[] stored) {
+        try {
+            return LZ4_COMPRESSOR.compress(raw, 0, raw.length, stored, COMPRESSED_HEADER,
+                    stored.length - COMPRESSED_HEADER);
+        } catch (LZ4Exception e) {
+            return -1;
+        }
+    }
+
+    private int zstd(byte[] raw, byte[] stored, boolean withDictionary) {
+        long size = withDictionary
+                ? Zstd.compressFastDict(stored, COMPRESSED_HEADER, raw, 0, raw.length, compressDictionary())
+                : Zstd.compressByteArray(stored, COMPRESSED_HEADER, stored.length - COMPRESSED_HEADER,
+                        raw, 0, raw.length, codec.getLevel());
+
+        // the destination is too small, other errors are handled the same way
+        return Zstd.isError(size) ? -1 : (int) size;
+    }
+
+    private ZstdDictCompress compressDictionary() {
+        ZstdDictCompress compress = zstdDictionaries.compress;
+        if (compress == null) {
+            synchronized (zstdDictionaries) {
+                if (zstdDictionaries.compress == null) {
+                    zstdDictionaries.compress = new ZstdDictCompress(dictionary, codec.getLevel());
+                }
+                compress = zstdDictionaries.compress;
+            }
+        }
+        return compress;
+    }
+
+    private ZstdDictDecompress decompressDictionary() {
+        ZstdDictDecompress decompress = zstdDictionaries.decompress;
+        if (decompress == null) {
+            synchronized (zstdDictionaries) {
+                if (zstdDictionaries.decompress == null) {
+                    zstdDictionaries.decompress = new ZstdDictDecompress(dictionary);
+                }
+                decompress = zstdDictionaries.decompress;
+            }
+        }
+        return decompress;
+    }
+
+    /**
+     * Keep a value for the dictionary training and train the dictionary once there are enough samples.
+     * A failed training leaves the map with an empty dictionary, the values are compressed without it.
+     *
+     * @return the dictionary or null if it's not ready yet
+     */
+    private byte[] sample(byte[] raw) {
+        synchronized (samples) {
+            if (dictionary != null) {
+                return dictionary;
+            }
+
+            if (samples.trainer == null) {
+                samples.trainer = new ZstdDictTrainer(trainingBytes, dictionarySize);
+            }
+            samples.size += raw.length;
+            if (samples.trainer.addSample(raw) && samples.size < trainingBytes) {
+                return null;
+            }
+
+            try {
+                dictionary = samples.trainer.trainSamples();
+            } catch (RuntimeException e) {
+                log.warn("Can't train a dictionary on {} bytes of values", samples.size, e);
+                dictionary = new byte[0];
+            }
+            samples.trainer = null;
+            return dictionary;
+        }
+    }
+
+    private String decompress(byte[] stored) {
+        if (stored == null) {
+            return null;
+        }
+
+        if (stored[0] == RAW) {
+            return new String(stored, RAW_HEADER, stored.length - RAW_HEADER, StandardCharsets.UTF_8);
+        }
+
+        byte[] raw = new byte[ByteBuffer.wrap(stored, RAW_HEADER, Integer.BYTES).getInt()];
+        switch (codec.getAlgorithm()) {
+            case DEFLATE:
+                inflate(stored, raw);
+                break;
+            case LZ4:
+                LZ4_DECOMPRESSOR.decompress(stored, COMPRESSED_HEADER, raw, 0, raw.length);
+                break;
+            case ZSTD:
+                unzstd(stored, raw);
+                break;
+            default:
+                throw new IllegalStateException("Unknown algorithm: " + codec.getAlgorithm());
+        }
+
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    private void inflate(byte[] stored, byte[] raw) {
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        inflater.setInput(stored, COMPRESSED_HEADER, stored.length - COMPRESSED_HEADER);
+
+        try {
+            int size = 0;
+            while (size < raw.length) {
+                int inflated = inflater.inflate(raw, size, raw.length - size);
+                if (inflated == 0 && inflater.needsInput()) {
+                    throw new DataFormatException("Truncated value");
+                }
+                size += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("can't inflate a value", e);
+        }
+    }
+
+    private void unzstd(byte[] stored, byte[] raw) {
+        int length = stored.length - COMPRESSED_HEADER;
+        long size = stored[0] == COMPRESSED_WITH_DICTIONARY
+                ? Zstd.decompressFastDict(raw, 0, stored, COMPRESSED_HEADER, length, decompressDictionary())
+                : Zstd.decompressByteArray(raw, 0, raw.length, stored, COMPRESSED_HEADER, length);
+
+        if (Zstd.isError(size) || size != raw.length) {
+            throw new IllegalStateException("can't decompress a value: " + Zstd.getErrorName(size));
+        }
+    }
+
+    /**
+     * Release the native memory of the codec: the deflaters and inflaters of all the threads
+     * and the digested dictionary. The map can't be used after that.
+     */
+    @Override
+    public void close() {
+        allDeflaters.forEach(Deflater::end);
+        allDeflaters.clear();
+        allInflaters.forEach(Inflater::end);
+        allInflaters.clear();
+
+        synchronized (zstdDictionaries) {
+            if (zstdDictionaries.compress != null) {
+                zstdDictionaries.compress.close();
+                zstdDictionaries.compress = null;
+            }
+            if (zstdDictionaries.decompress != null) {
+                zstdDictionaries.decompress.close();
+                zstdDictionaries.decompress = null;
+            }
+        }
+    }
+
+    /**
+     * Number of values written since the map was created or cleared
+     *
+     * @return number of values
+     */
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    /**
+     * Size of the values written since the map was created or cleared, before compression
+     *
+     * @return number of bytes
+     */
+    public long getRawBytes() {
+        return rawBytes.sum();
+    }
+
+    /**
+     * Size of the values written since the map was created or cleared, as stored in the backend
+     *
+     * @return number of bytes
+     */
+    public long getStoredBytes() {
+        return storedBytes.sum();
+    }
+}
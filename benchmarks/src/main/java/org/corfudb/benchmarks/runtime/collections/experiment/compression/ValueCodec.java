@@ -0,0 +1,65 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.compression;
+
+import lombok.Getter;
+
+import java.util.zip.Deflater;
+
+/**
+ * Compression of the values of a {@link CompressedMap}: the compression algorithm, its level and the use
+ * of a dictionary trained on the values of the table.
+ */
+public enum ValueCodec {
+
+    /**
+     * Values are stored as is, the baseline for the other codecs.
+     */
+    NONE(Algorithm.NONE, 0, false),
+
+    /**
+     * The fastest level of the jdk deflate, the reference that needs no native library.
+     */
+    DEFLATE_FAST(Algorithm.DEFLATE, Deflater.BEST_SPEED, false),
+
+    /**
+     * LZ4 fast compressor: the cheapest compression and decompression, a value is compressed on its own.
+     * Small values have too little repetition in them to get any shorter.
+     */
+    LZ4(Algorithm.LZ4, 0, false),
+
+    /**
+     * Zstd at its default level, a value is compressed on its own.
+     */
+    ZSTD(Algorithm.ZSTD, 3, false),
+
+    /**
+     * Zstd at its default level with a dictionary trained on the values of the table.
+     * The dictionary holds the strings common to the values, so even small values get compressed.
+     * The dictionary is digested once and shared by all the threads.
+     */
+    ZSTD_DICTIONARY(Algorithm.ZSTD, 3, true);
+
+    /**
+     * Compression algorithm of a codec
+     */
+    public enum Algorithm {
+        NONE, DEFLATE, LZ4, ZSTD
+    }
+
+    @Getter
+    private final Algorithm algorithm;
+
+    /**
+     * Compression level of the algorithm, not used by LZ4
+     */
+    @Getter
+    private final int level;
+
+    @Getter
+    private final boolean dictionaryEnabled;
+
+    ValueCodec(Algorithm algorithm, int level, boolean dictionaryEnabled) {
+        this.algorithm = algorithm;
+        this.level = level;
+        this.dictionaryEnabled = dictionaryEnabled;
+    }
+}
@@ -6,24 +6,40 @@ import org.ehcache.Cache;
 import org.ehcache.PersistentCacheManager;
 import org.ehcache.config.ResourcePools;
 import org.ehcache.config.builders.CacheConfigurationBuilder;
-
+import org.ehcache.config.builders.CacheEventListenerConfigurationBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.event.CacheEvent;
+import org.ehcache.event.CacheEventListener;
+import org.ehcache.event.EventType;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * A persistent map backed by EhCache
+ * A persistent map backed by EhCache.
+ * The size is maintained by a synchronous cache event listener, so it accounts for overwrites, removals of missing
+ * keys, evictions and expirations. Views of the map iterate over the cache iterator.
  *
  * @param <K> key type
  * @param <V> value type
  */
-public class EhCacheMap<K, V> implements Map<K, V> {
+public class EhCacheMap<K, V> extends AbstractMap<K, V> {
+
+    private static final String CACHE_ALIAS = "threeTieredCache";
 
     private final PersistentCacheManager persistentCacheManager;
     private final ResourcePools resourcePools;
     private final Cache<K, V> cache;
-    private final AtomicInteger dataSetSize = new AtomicInteger();
+    private final AtomicLong dataSetSize = new AtomicLong();
 
     /**
      * A persistent map backed by EhCache
@@ -39,14 +55,57 @@ public class EhCacheMap<K, V> implements Map<K, V> {
                       @NonNull Class<V> valueType) {
         this.persistentCacheManager = persistentCacheManager;
         this.resourcePools = resourcePools;
+
+        CacheEventListener<K, V> sizeListener = this::onEvent;
+        CacheEventListenerConfigurationBuilder listenerConfig = CacheEventListenerConfigurationBuilder
+                .newEventListenerConfiguration(
+                        sizeListener, EventType.CREATED, EventType.REMOVED, EventType.EVICTED, EventType.EXPIRED
+                )
+                .synchronous()
+                .unordered();
+
         CacheConfigurationBuilder<K, V> configBuilder = CacheConfigurationBuilder
-                .newCacheConfigurationBuilder(keyType, valueType, resourcePools);
-        this.cache = persistentCacheManager.createCache("threeTieredCache", configBuilder);
+                .newCacheConfigurationBuilder(keyType, valueType, resourcePools)
+                .withService(listenerConfig);
+        this.cache = persistentCacheManager.createCache(CACHE_ALIAS, configBuilder);
+    }
+
+    /**
+     * Resource pools of up to three tiers, a tier with zero size is not configured.
+     * Heap is the fastest tier and holds the hottest entries, off-heap keeps serialized entries in direct memory
+     * outside of the GC heap, disk is the persistent authoritative tier.
+     *
+     * @param heapEntries max number of entries on heap
+     * @param offHeapMb   off-heap tier size in MB
+     * @param diskMb      disk tier size in MB
+     * @return resource pools
+     */
+    public static ResourcePools resourcePools(long heapEntries, long offHeapMb, long diskMb) {
+        ResourcePoolsBuilder builder = ResourcePoolsBuilder.newResourcePoolsBuilder();
+        if (heapEntries > 0) {
+            builder = builder.heap(heapEntries, EntryUnit.ENTRIES);
+        }
+        if (offHeapMb > 0) {
+            builder = builder.offheap(offHeapMb, MemoryUnit.MB);
+        }
+        if (diskMb > 0) {
+            builder = builder.disk(diskMb, MemoryUnit.MB, true);
+        }
+
+        return builder.build();
+    }
+
+    private void onEvent(CacheEvent<? extends K, ? extends V> event) {
+        if (event.getType() == EventType.CREATED) {
+            dataSetSize.incrementAndGet();
+        } else {
+            dataSetSize.decrementAndGet();
+        }
     }
 
     @Override
     public int size() {
-        return dataSetSize.get();
+        return (int) Math.min(dataSetSize.get(), Integer.MAX_VALUE);
     }
 
     @Override
@@ -59,11 +118,6 @@ public class EhCacheMap<K, V> implements Map<K, V> {
         return cache.containsKey(ClassUtils.cast(key));
     }
 
-    @Override
-    public boolean containsValue(@NonNull Object value) {
-        throw new UnsupportedOperationException();
-    }
-
     @Override
     public V get(@NonNull Object key) {
         return cache.get(ClassUtils.cast(key));
@@ -72,7 +126,6 @@ public class EhCacheMap<K, V> implements Map<K, V> {
     @Override
     public V put(@NonNull K key, @NonNull V value) {
         cache.put(key, value);
-        dataSetSize.incrementAndGet();
         return value;
     }
 
@@ -80,35 +133,74 @@ public class EhCacheMap<K, V> implements Map<K, V> {
     public V remove(@NonNull Object key) {
         V value = cache.get(ClassUtils.cast(key));
         cache.remove(ClassUtils.cast(key));
-        dataSetSize.decrementAndGet();
         return value;
     }
 
     @Override
     public void putAll(@NonNull Map<? extends K, ? extends V> map) {
-        dataSetSize.addAndGet(map.size());
         cache.putAll(map);
     }
 
-    @Override
-    public void clear() {
-        dataSetSize.set(0);
-        cache.clear();
-    }
+    /**
+     * Batched lookup, a single cache call for all the keys. Missing keys are absent in the result.
+     *
+     * @param keys keys
+     * @return existing keys and their values
+     */
+    public Map<K, V> getAll(@NonNull Collection<? extends K> keys) {
+        Set<? extends K> keySet = keys instanceof Set ? (Set<? extends K>) keys : new HashSet<>(keys);
 
-    @Override
-    public Set<K> keySet() {
-        throw new UnsupportedOperationException();
+        Map<K, V> result = new HashMap<>(cache.getAll(keySet));
+        result.values().removeIf(value -> value == null);
+        return result;
     }
 
     @Override
-    public Collection<V> values() {
-        throw new UnsupportedOperationException();
+    public void clear() {
+        cache.clear();
+        dataSetSize.set(0);
     }
 
+    /**
+     * View of the cache entries, iterates over the cache iterator. The iterator supports removal.
+     *
+     * @return entries
+     */
     @Override
     public Set<Entry<K, V>> entrySet() {
-        throw new UnsupportedOperationException();
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                Iterator<Cache.Entry<K, V>> entries = cache.iterator();
+
+                return new Iterator<Entry<K, V>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public Entry<K, V> next() {
+                        Cache.Entry<K, V> entry = entries.next();
+                        return new SimpleImmutableEntry<>(entry.getKey(), entry.getValue());
+                    }
+
+                    @Override
+                    public void remove() {
+                        entries.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return EhCacheMap.this.size();
+            }
+
+            @Override
+            public void clear() {
+                EhCacheMap.this.clear();
+            }
+        };
     }
-
 }
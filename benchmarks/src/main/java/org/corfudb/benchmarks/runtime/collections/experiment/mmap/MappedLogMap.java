@@ -0,0 +1,706 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.mmap;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import lombok.Builder;
+import lombok.Builder.Default;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.corfudb.benchmarks.runtime.collections.experiment.rocksdb.RocksDbCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent map on memory-mapped files, written in java only.
+ * <p>
+ * The data is an append-only log split into fixed-size segment files, every segment is mapped into memory
+ * with a {@link MappedByteBuffer}. A record is [crc][key size][value size][value capacity][key][value],
+ * the value capacity is the value size rounded up to 8 bytes, so an update of a value that fits the capacity
+ * is written in place, any other update appends a new record. Removals append a tombstone.
+ * The index is an in-memory hash map from a key to the address of its latest record (segment id and offset),
+ * it's rebuilt by replaying the segments in order when the map is opened.
+ * <p>
+ * A background thread compacts the sealed segments that are mostly garbage: the live records are appended
+ * to the head of the log and the segment file is deleted. Tombstones are carried over until
+ * the segment is the oldest one, then no older record can be resurrected by a replay.
+ * <p>
+ * The page cache keeps the writes of a killed process, the append of a record sets the key size last,
+ * so a record torn by a kill is the end of the log on replay. An in-place update torn by a kill fails
+ * the crc check, the replay drops the key and turns the record into a tombstone, so an older record
+ * of the key isn't resurrected. The segments are flushed to disk on close only.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+@Builder
+@Slf4j
+public class MappedLogMap<K, V> extends AbstractMap<K, V> implements AutoCloseable {
+
+    private static final int MB = 1024 * 1024;
+
+    /**
+     * Record header: crc, key size, value size, value capacity
+     */
+    private static final int HEADER = Integer.BYTES * 4;
+    private static final int CRC_OFFSET = 0;
+    private static final int KEY_SIZE_OFFSET = Integer.BYTES;
+    private static final int VALUE_SIZE_OFFSET = Integer.BYTES * 2;
+    private static final int CAPACITY_OFFSET = Integer.BYTES * 3;
+
+    private static final int TOMBSTONE = -1;
+    private static final int ALIGNMENT = 8;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.log");
+
+    @NonNull
+    private final Class<K> keyType;
+
+    @NonNull
+    private final Class<V> valueType;
+
+    @NonNull
+    @Getter
+    private final Path dbPath;
+
+    @Default
+    private final int segmentSize = 64 * MB;
+
+    /**
+     * A sealed segment gets compacted once the share of its live records drops below the threshold
+     */
+    @Default
+    private final double compactionThreshold = 0.5;
+
+    /**
+     * Delay between background compactions, 0 - no background compaction
+     */
+    @Default
+    private final long compactionIntervalMs = 1000;
+
+    @NonNull
+    @Default
+    private final RocksDbCodec codec = RocksDbCodec.POOLED;
+
+    /**
+     * Writers and compaction take the write lock, readers take the read lock
+     * so that a segment can't be deleted under them
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<K, Long> index = new ConcurrentHashMap<>();
+
+    private final ConcurrentNavigableMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+
+    private volatile Segment head;
+
+    private ScheduledExecutorService compactor;
+
+    /**
+     * A segment file of the log
+     */
+    private static class Segment {
+        private final int id;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+
+        /**
+         * Append position
+         */
+        private int position;
+
+        /**
+         * Bytes taken by the records the index points to
+         */
+        private long liveBytes;
+
+        Segment(int id, Path path, int size) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.capacity = (int) Math.max(size, channel.size());
+            this.buffer = channel.map(MapMode.READ_WRITE, 0, capacity);
+        }
+
+        /**
+         * Unmapping is left to the garbage collector, a deleted file stays mapped until then
+         */
+        void close() throws IOException {
+            buffer.force();
+            channel.close();
+        }
+    }
+
+    /**
+     * Open the log and rebuild the index from the existing segments
+     *
+     * @return the map
+     * @throws IOException io exception
+     */
+    public MappedLogMap<K, V> init() throws IOException {
+        Files.createDirectories(dbPath);
+
+        List<Integer> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dbPath)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    ids.add(Integer.parseInt(matcher.group(1)));
+                }
+            });
+        }
+        ids.sort(Integer::compare);
+
+        long records = 0;
+        for (int id : ids) {
+            Segment segment = new Segment(id, segmentPath(id), segmentSize);
+            segments.put(id, segment);
+            records += replay(segment);
+        }
+        log.info("Recovered {} entries from {} records in {} segments", index.size(), records, ids.size());
+
+        head = segments.isEmpty() ? roll(0) : segments.lastEntry().getValue();
+
+        if (compactionIntervalMs > 0) {
+            compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "mapped-log-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactor.scheduleWithFixedDelay(this::compact, compactionIntervalMs, compactionIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+
+        return this;
+    }
+
+    private Path segmentPath(int id) {
+        return dbPath.resolve(String.format("segment-%010d.log", id));
+    }
+
+    private Segment roll(int id) throws IOException {
+        Segment segment = new Segment(id, segmentPath(id), segmentSize);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private static long address(Segment segment, int offset) {
+        return ((long) segment.id << Integer.SIZE) | offset;
+    }
+
+    private Segment segment(long address) {
+        return segments.get((int) (address >>> Integer.SIZE));
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static ByteBuffer view(Segment segment, int offset, int length) {
+        ByteBuffer view = segment.buffer.duplicate();
+        view.limit(offset + length);
+        view.position(offset);
+        return view;
+    }
+
+    private static int recordSize(Segment segment, int offset) {
+        ByteBuffer buffer = segment.buffer;
+        return HEADER + buffer.getInt(offset + KEY_SIZE_OFFSET) + buffer.getInt(offset + CAPACITY_OFFSET);
+    }
+
+    private static int capacityFor(int valueSize) {
+        return (valueSize + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static int crc(ByteBuffer key, ByteBuffer value) {
+        CRC32 crc = new CRC32();
+        crc.update(key);
+        if (value != null) {
+            crc.update(value);
+        }
+        return (int) crc.getValue();
+    }
+
+    private <T> T read(Segment segment, int offset, int size, Class<T> type) {
+        ByteBuf buffer = codec.allocate(size);
+        try {
+            buffer.writeBytes(view(segment, offset, size));
+            return codec.decode(buffer, type);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    private K readKey(Segment segment, int offset) {
+        return read(segment, offset + HEADER, segment.buffer.getInt(offset + KEY_SIZE_OFFSET), keyType);
+    }
+
+    private V readValue(long address) {
+        Segment segment = segment(address);
+        int offset = offset(address);
+        int keySize = segment.buffer.getInt(offset + KEY_SIZE_OFFSET);
+        int valueSize = segment.buffer.getInt(offset + VALUE_SIZE_OFFSET);
+        return read(segment, offset + HEADER + keySize, valueSize, valueType);
+    }
+
+    /**
+     * Add the records of a segment to the index
+     *
+     * @return number of records
+     */
+    private long replay(Segment segment) {
+        long records = 0;
+        int offset = 0;
+        while (offset + HEADER <= segment.capacity) {
+            int keySize = segment.buffer.getInt(offset + KEY_SIZE_OFFSET);
+            int valueSize = segment.buffer.getInt(offset + VALUE_SIZE_OFFSET);
+            int capacity = segment.buffer.getInt(offset + CAPACITY_OFFSET);
+            if (keySize <= 0 || capacity < 0 || valueSize > capacity
+                    || (long) offset + HEADER + keySize + capacity > segment.capacity) {
+                break;
+            }
+
+            ByteBuffer value = valueSize == TOMBSTONE ? null : view(segment, offset + HEADER + keySize, valueSize);
+            int crc = crc(view(segment, offset + HEADER, keySize), value);
+
+            if (crc == segment.buffer.getInt(offset + CRC_OFFSET)) {
+                K key = readKey(segment, offset);
+                Long previous = valueSize == TOMBSTONE
+                        ? index.remove(key)
+                        : index.put(key, address(segment, offset));
+                if (previous != null) {
+                    markGarbage(previous);
+                }
+                if (valueSize != TOMBSTONE) {
+                    segment.liveBytes += HEADER + keySize + capacity;
+                }
+                records++;
+            } else {
+                // a torn in-place update, the key isn't rewritten by an update. The older records of the key
+                // must not come back, the record becomes a tombstone
+                log.warn("Replace a corrupted record at {}:{} with a tombstone", segment.path, offset);
+                Long previous = index.remove(readKey(segment, offset));
+                if (previous != null) {
+                    markGarbage(previous);
+                }
+                segment.buffer.putInt(offset + VALUE_SIZE_OFFSET, TOMBSTONE);
+                segment.buffer.putInt(offset + CRC_OFFSET, crc(view(segment, offset + HEADER, keySize), null));
+            }
+
+            offset += HEADER + keySize + capacity;
+        }
+
+        segment.position = offset;
+        return records;
+    }
+
+    private void markGarbage(long address) {
+        Segment segment = segment(address);
+        segment.liveBytes -= recordSize(segment, offset(address));
+    }
+
+    /**
+     * Append a record to the head of the log, the caller must hold the write lock
+     *
+     * @param key   serialized key
+     * @param value serialized value, null - tombstone
+     * @return record address
+     */
+    private long append(ByteBuf key, ByteBuf value) throws IOException {
+        int keySize = key.readableBytes();
+        int valueSize = value == null ? TOMBSTONE : value.readableBytes();
+        int capacity = value == null ? 0 : capacityFor(valueSize);
+        int recordSize = HEADER + keySize + capacity;
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("Record doesn't fit a segment: " + recordSize);
+        }
+
+        if (head.position + recordSize > head.capacity) {
+            head = roll(head.id + 1);
+        }
+
+        Segment segment = head;
+        int offset = segment.position;
+        view(segment, offset + HEADER, keySize).put(key.nioBuffer());
+        if (value != null) {
+            view(segment, offset + HEADER + keySize, valueSize).put(value.nioBuffer());
+        }
+
+        segment.buffer.putInt(offset + VALUE_SIZE_OFFSET, valueSize);
+        segment.buffer.putInt(offset + CAPACITY_OFFSET, capacity);
+        segment.buffer.putInt(offset + CRC_OFFSET, crc(key.nioBuffer(), value == null ? null : value.nioBuffer()));
+        // the key size goes last, a record without it is the end of the log
+        segment.buffer.putInt(offset + KEY_SIZE_OFFSET, keySize);
+
+        segment.position += recordSize;
+        if (value != null) {
+            segment.liveBytes += recordSize;
+        }
+
+        return address(segment, offset);
+    }
+
+    /**
+     * Overwrite the value of a record that has enough capacity, the caller must hold the write lock
+     */
+    private boolean writeInPlace(long address, ByteBuf key, ByteBuf value) {
+        Segment segment = segment(address);
+        int offset = offset(address);
+        if (value.readableBytes() > segment.buffer.getInt(offset + CAPACITY_OFFSET)) {
+            return false;
+        }
+
+        view(segment, offset + HEADER + key.readableBytes(), value.readableBytes()).put(value.nioBuffer());
+        segment.buffer.putInt(offset + VALUE_SIZE_OFFSET, value.readableBytes());
+        segment.buffer.putInt(offset + CRC_OFFSET, crc(key.nioBuffer(), value.nioBuffer()));
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return index.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(@NonNull Object key) {
+        return index.containsKey(key);
+    }
+
+    @Override
+    public V get(@NonNull Object key) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            Long address = index.get(key);
+            return address == null ? null : readValue(address);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public V put(@NonNull K key, @NonNull V value) {
+        ByteBuf keyBuf = codec.encode(key);
+        ByteBuf valueBuf = null;
+
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            valueBuf = codec.encode(value);
+
+            Long previous = index.get(key);
+            V previousValue = previous == null ? null : readValue(previous);
+            if (previous != null && writeInPlace(previous, keyBuf, valueBuf)) {
+                return previousValue;
+            }
+
+            index.put(key, append(keyBuf, valueBuf));
+            if (previous != null) {
+                markGarbage(previous);
+            }
+
+            return previousValue;
+        } catch (IOException e) {
+            throw new IllegalStateException("can't put data", e);
+        } finally {
+            writeLock.unlock();
+            keyBuf.release();
+            if (valueBuf != null) {
+                valueBuf.release();
+            }
+        }
+    }
+
+    @Override
+    public V remove(@NonNull Object key) {
+        ByteBuf keyBuf = codec.encode(key);
+
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            Long previous = index.remove(key);
+            if (previous == null) {
+                return null;
+            }
+
+            V previousValue = readValue(previous);
+            markGarbage(previous);
+            append(keyBuf, null);
+
+            return previousValue;
+        } catch (IOException e) {
+            throw new IllegalStateException("can't remove data", e);
+        } finally {
+            writeLock.unlock();
+            keyBuf.release();
+        }
+    }
+
+    /**
+     * Remove all the entries, the segments are deleted and a new log is started
+     */
+    @Override
+    public void clear() {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            int nextId = head.id + 1;
+            for (Segment segment : segments.values()) {
+                delete(segment);
+            }
+            index.clear();
+            head = roll(nextId);
+        } catch (IOException e) {
+            throw new IllegalStateException("can't clear data", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void delete(Segment segment) throws IOException {
+        segments.remove(segment.id);
+        segment.channel.close();
+        Files.deleteIfExists(segment.path);
+    }
+
+    /**
+     * Compact the sealed segments that are mostly garbage, runs on the background thread
+     */
+    void compact() {
+        try {
+            for (Segment segment : segments.headMap(head.id).values()) {
+                if (segment.liveBytes < compactionThreshold * segment.position) {
+                    compact(segment);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Compaction failed", e);
+        }
+    }
+
+    /**
+     * Move the live records of a segment to the head of the log and delete the segment.
+     * Every record is moved under the write lock, so writers are blocked for a single record at a time.
+     */
+    private void compact(Segment segment) throws IOException {
+        long moved = 0;
+        int offset = 0;
+        while (offset < segment.position) {
+            Lock writeLock = lock.writeLock();
+            writeLock.lock();
+            try {
+                // the map was cleared
+                if (segments.get(segment.id) != segment) {
+                    return;
+                }
+                if (moveRecord(segment, offset)) {
+                    moved++;
+                }
+                offset += recordSize(segment, offset);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (segments.get(segment.id) == segment) {
+                delete(segment);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+
+        log.debug("Compacted segment {}, moved {} records", segment.id, moved);
+    }
+
+    private boolean moveRecord(Segment segment, int offset) throws IOException {
+        int keySize = segment.buffer.getInt(offset + KEY_SIZE_OFFSET);
+        int valueSize = segment.buffer.getInt(offset + VALUE_SIZE_OFFSET);
+        K key = readKey(segment, offset);
+        ByteBuf keyBuf = Unpooled.wrappedBuffer(view(segment, offset + HEADER, keySize));
+
+        if (valueSize == TOMBSTONE) {
+            // an older segment may still have a record of the key
+            boolean oldest = segments.firstKey() == segment.id;
+            if (oldest || index.containsKey(key)) {
+                return false;
+            }
+            append(keyBuf, null);
+            return true;
+        }
+
+        Long address = index.get(key);
+        if (address == null || address != address(segment, offset)) {
+            return false;
+        }
+
+        ByteBuf valueBuf = Unpooled.wrappedBuffer(view(segment, offset + HEADER + keySize, valueSize));
+        index.put(key, append(keyBuf, valueBuf));
+        segment.liveBytes -= recordSize(segment, offset);
+        return true;
+    }
+
+    /**
+     * Number of segment files
+     *
+     * @return number of segments
+     */
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Bytes of all the records in the log, live or not
+     *
+     * @return number of bytes
+     */
+    public long getLogBytes() {
+        return segments.values().stream().mapToLong(segment -> segment.position).sum();
+    }
+
+    /**
+     * View of the entries, values are read on iteration. The iterator doesn't support removal.
+     * The iteration is weakly consistent, like the iteration over the index.
+     *
+     * @return entries
+     */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                Iterator<K> keys = index.keySet().iterator();
+
+                return new Iterator<Entry<K, V>>() {
+                    private Entry<K, V> next = advance();
+
+                    private Entry<K, V> advance() {
+                        while (keys.hasNext()) {
+                            K key = keys.next();
+                            V value = get(key);
+                            if (value != null) {
+                                return new SimpleImmutableEntry<>(key, value);
+                            }
+                        }
+                        return null;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next != null;
+                    }
+
+                    @Override
+                    public Entry<K, V> next() {
+                        if (next == null) {
+                            throw new NoSuchElementException();
+                        }
+
+                        Entry<K, V> entry = next;
+                        next = advance();
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return index.size();
+            }
+        };
+    }
+
+    /**
+     * Stop the compaction, flush the segments to disk and close the files
+     *
+     * @throws IOException io exception
+     */
+    @Override
+    public void close() throws IOException {
+        stopCompaction();
+
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+            segments.clear();
+            index.clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Stop the compaction and close the files without flushing the segments, the log is left the way
+     * a killed process leaves it: the records are in the page cache only. The map can't be used after that.
+     *
+     * @throws IOException io exception
+     */
+    public void abandon() throws IOException {
+        stopCompaction();
+
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+            segments.clear();
+            index.clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void stopCompaction() {
+        if (compactor == null) {
+            return;
+        }
+
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.nearcache;
+
+/**
+ * Count-min sketch of 4-bit counters, estimates how often a key was accessed recently.
+ * Every long holds 16 counters, a key maps to 4 counters in 4 longs and its frequency is the minimum of them.
+ * Once the number of increments reaches the sample size all the counters are halved, so the history ages
+ * and keys that were popular a long time ago lose to the recent ones.
+ */
+class FrequencySketch {
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MAX_COUNT = 15;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int size;
+
+    /**
+     * A sketch
+     *
+     * @param expectedSize expected number of keys in the cache, the sketch is sized for it
+     */
+    FrequencySketch(long expectedSize) {
+        int width = (int) Math.min(Math.max(expectedSize, 16), 1 << 30);
+        width = Integer.highestOneBit(width - 1) << 1;
+
+        table = new long[width];
+        tableMask = width - 1;
+        sampleSize = 10 * width;
+    }
+
+    private static int spread(int hash) {
+        int spread = hash * 0x9E3779B9;
+        return spread ^ (spread >>> 16);
+    }
+
+    private int indexOf(int hash, int depth) {
+        long index = (SEEDS[depth] + hash) * SEEDS[depth];
+        index += index >>> 32;
+        return (int) index & tableMask;
+    }
+
+    /**
+     * Estimated number of recent accesses of a key, up to 15
+     *
+     * @param key key
+     * @return frequency
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+
+        int frequency = MAX_COUNT;
+        for (int depth = 0; depth < SEEDS.length; depth++) {
+            int offset = (start + depth) << 2;
+            int count = (int) ((table[indexOf(hash, depth)] >>> offset) & MAX_COUNT);
+            frequency = Math.min(frequency, count);
+        }
+
+        return frequency;
+    }
+
+    /**
+     * Record an access of a key
+     *
+     * @param key key
+     */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+
+        boolean added = false;
+        for (int depth = 0; depth < SEEDS.length; depth++) {
+            int index = indexOf(hash, depth);
+            int offset = (start + depth) << 2;
+            long mask = (long) MAX_COUNT << offset;
+            if ((table[index] & mask) != mask) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Halve all the counters
+     */
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size - (odd >>> 2)) >>> 1;
+    }
+}
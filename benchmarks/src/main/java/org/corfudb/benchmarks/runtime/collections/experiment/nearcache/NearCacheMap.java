@@ -0,0 +1,402 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.nearcache;
+
+import lombok.Builder;
+import lombok.Builder.Default;
+import lombok.Getter;
+import lombok.NonNull;
+import org.corfudb.common.util.ClassUtils;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * A bounded on-heap cache in front of a map, usually a persisted one, that saves the backend read and
+ * the deserialization for the hot keys.
+ * <p>
+ * The cache follows W-TinyLFU: new entries get into a small LRU window, the entries evicted from the window
+ * compete for the main space with the eviction victims of the main space. A frequency sketch keeps
+ * the recent access counts of all the keys, cached or not, and the candidate is admitted only if it was
+ * accessed more often than the victim, so a scan or a burst of one-off keys can't flush the hot keys.
+ * The main space is a segmented LRU: entries hit in the probation segment are promoted to the protected one.
+ * <p>
+ * The cache is bounded by weight, the weight of an entry is given by the weigher.
+ * Writes go through to the backend and invalidate the cached entry. A read that races with a write
+ * doesn't cache the value it has read, so the cache never returns a value older than the backend has.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+@Builder
+public class NearCacheMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    @NonNull
+    @Getter
+    private final Map<K, V> backend;
+
+    /**
+     * Max total weight of the cached entries
+     */
+    @Default
+    private final long maximumWeight = 10_000;
+
+    /**
+     * Weight of an entry, 1 by default, which bounds the number of entries
+     */
+    @NonNull
+    @Default
+    private final ToIntBiFunction<K, V> weigher = (key, value) -> 1;
+
+    /**
+     * Share of the window in the total weight, in percents
+     */
+    @Default
+    private final int windowPercent = 1;
+
+    /**
+     * Share of the protected segment in the main space, in percents
+     */
+    @Default
+    private final int protectedPercent = 80;
+
+    /**
+     * Expected number of cached entries, the frequency sketch is sized for it
+     */
+    @Default
+    private final long expectedSize = 10_000;
+
+    private final Map<K, Node<K, V>> data = new HashMap<>();
+    private final AccessOrder<K, V> window = new AccessOrder<>();
+    private final AccessOrder<K, V> probation = new AccessOrder<>();
+    private final AccessOrder<K, V> protectedSegment = new AccessOrder<>();
+
+    private FrequencySketch sketch;
+    private long maxWindowWeight;
+    private long maxMainWeight;
+    private long maxProtectedWeight;
+
+    /**
+     * Incremented by every write, a read caches a value only if no write happened while it was reading
+     */
+    private long writes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * An entry of the cache, a node of the access order list of its segment
+     */
+    private static class Node<K, V> {
+        private final K key;
+        private final V value;
+        private final int weight;
+        private int segment;
+        private Node<K, V> prev;
+        private Node<K, V> next;
+
+        Node(K key, V value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Doubly-linked list of nodes from the least recently used to the most recently used one
+     */
+    private static class AccessOrder<K, V> {
+        private Node<K, V> first;
+        private Node<K, V> last;
+        private long weight;
+
+        void add(Node<K, V> node) {
+            node.prev = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+            weight += node.weight;
+        }
+
+        void unlink(Node<K, V> node) {
+            if (node.prev == null) {
+                first = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                last = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            weight -= node.weight;
+        }
+
+        void moveToLast(Node<K, V> node) {
+            if (node != last) {
+                unlink(node);
+                add(node);
+            }
+        }
+
+        void clear() {
+            first = null;
+            last = null;
+            weight = 0;
+        }
+    }
+
+    /**
+     * Size the segments and the frequency sketch
+     *
+     * @return the cache
+     */
+    public NearCacheMap<K, V> init() {
+        if (maximumWeight <= 0 || windowPercent <= 0 || windowPercent >= 100
+                || protectedPercent < 0 || protectedPercent > 100) {
+            throw new IllegalArgumentException("Invalid cache configuration");
+        }
+
+        maxWindowWeight = Math.max(1, maximumWeight * windowPercent / 100);
+        maxMainWeight = maximumWeight - maxWindowWeight;
+        maxProtectedWeight = maxMainWeight * protectedPercent / 100;
+        sketch = new FrequencySketch(expectedSize);
+
+        return this;
+    }
+
+    @Override
+    public V get(@NonNull Object key) {
+        long observedWrites;
+        synchronized (this) {
+            sketch.increment(key);
+
+            Node<K, V> node = data.get(key);
+            if (node != null) {
+                hits++;
+                onHit(node);
+                return node.value;
+            }
+
+            misses++;
+            observedWrites = writes;
+        }
+
+        V value = backend.get(key);
+        if (value == null) {
+            return null;
+        }
+
+        synchronized (this) {
+            if (writes == observedWrites && !data.containsKey(key)) {
+                K typedKey = ClassUtils.cast(key);
+                admitToWindow(new Node<>(typedKey, value, weigher.applyAsInt(typedKey, value)));
+            }
+        }
+
+        return value;
+    }
+
+    private void onHit(Node<K, V> node) {
+        switch (node.segment) {
+            case WINDOW:
+                window.moveToLast(node);
+                break;
+            case PROBATION:
+                probation.unlink(node);
+                node.segment = PROTECTED;
+                protectedSegment.add(node);
+                // demote the least recently used protected entries
+                while (protectedSegment.weight > maxProtectedWeight) {
+                    Node<K, V> demoted = protectedSegment.first;
+                    protectedSegment.unlink(demoted);
+                    demoted.segment = PROBATION;
+                    probation.add(demoted);
+                }
+                break;
+            default:
+                protectedSegment.moveToLast(node);
+                break;
+        }
+    }
+
+    private void admitToWindow(Node<K, V> node) {
+        if (node.weight > maxMainWeight) {
+            return;
+        }
+
+        node.segment = WINDOW;
+        window.add(node);
+        data.put(node.key, node);
+
+        while (window.weight > maxWindowWeight) {
+            Node<K, V> candidate = window.first;
+            window.unlink(candidate);
+            admitToMain(candidate);
+        }
+    }
+
+    /**
+     * Make room for a candidate in the main space, the candidate replaces the victims that were accessed
+     * less often than the candidate, otherwise the candidate is evicted
+     */
+    private void admitToMain(Node<K, V> candidate) {
+        int candidateFrequency = sketch.frequency(candidate.key);
+
+        while (probation.weight + protectedSegment.weight + candidate.weight > maxMainWeight) {
+            Node<K, V> victim = probation.first != null ? probation.first : protectedSegment.first;
+            if (candidateFrequency <= sketch.frequency(victim.key)) {
+                data.remove(candidate.key);
+                evictions++;
+                return;
+            }
+
+            evict(victim);
+        }
+
+        candidate.segment = PROBATION;
+        probation.add(candidate);
+    }
+
+    private void evict(Node<K, V> node) {
+        segmentOf(node).unlink(node);
+        data.remove(node.key);
+        evictions++;
+    }
+
+    private AccessOrder<K, V> segmentOf(Node<K, V> node) {
+        switch (node.segment) {
+            case WINDOW:
+                return window;
+            case PROBATION:
+                return probation;
+            default:
+                return protectedSegment;
+        }
+    }
+
+    private synchronized void invalidate(Object key) {
+        writes++;
+        Node<K, V> node = data.remove(key);
+        if (node != null) {
+            segmentOf(node).unlink(node);
+        }
+    }
+
+    private synchronized void invalidateAll() {
+        writes++;
+        data.clear();
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+    }
+
+    @Override
+    public V put(@NonNull K key, @NonNull V value) {
+        try {
+            return backend.put(key, value);
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public V remove(@NonNull Object key) {
+        try {
+            return backend.remove(key);
+        } finally {
+            invalidate(key);
+        }
+    }
+
+    @Override
+    public void putAll(@NonNull Map<? extends K, ? extends V> map) {
+        try {
+            backend.putAll(map);
+        } finally {
+            map.keySet().forEach(this::invalidate);
+        }
+    }
+
+    @Override
+    public void clear() {
+        try {
+            backend.clear();
+        } finally {
+            invalidateAll();
+        }
+    }
+
+    @Override
+    public boolean containsKey(@NonNull Object key) {
+        synchronized (this) {
+            if (data.containsKey(key)) {
+                return true;
+            }
+        }
+        return backend.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return backend.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return backend.isEmpty();
+    }
+
+    /**
+     * Read-only view of the entries of the backend, the iteration doesn't go through the cache
+     *
+     * @return entries
+     */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return Collections.unmodifiableSet(backend.entrySet());
+    }
+
+    /**
+     * Number of cached entries
+     *
+     * @return number of entries
+     */
+    public synchronized int getCachedEntries() {
+        return data.size();
+    }
+
+    /**
+     * Total weight of the cached entries
+     *
+     * @return weight
+     */
+    public synchronized long getWeightedSize() {
+        return window.weight + probation.weight + protectedSegment.weight;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
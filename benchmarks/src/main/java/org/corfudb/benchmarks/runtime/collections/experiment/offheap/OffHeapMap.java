@@ -0,0 +1,570 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.offheap;
+
+import io.netty.buffer.ByteBuf;
+import lombok.Builder;
+import lombok.Builder.Default;
+import lombok.NonNull;
+import org.corfudb.benchmarks.runtime.collections.experiment.rocksdb.RocksDbCodec;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map that keeps keys and values in direct memory, out of reach of the garbage collector.
+ * <p>
+ * Entries are serialized into records ([key size][value size][key][value]) allocated from slabs of direct memory
+ * by a {@link SlabAllocator}, which reuses the blocks of removed and overwritten records through free lists.
+ * The index is off-heap too: the map is split into segments by the key hash, a segment is an open-addressing
+ * table of (record address, key hash) slots in a direct buffer with linear probing and backward-shift deletion.
+ * The heap holds a fixed number of objects no matter how many entries the map has, so the heap size
+ * and the GC pauses don't grow with the data set.
+ * <p>
+ * Operations lock the segment of the key, so the map is thread safe and operations on different segments
+ * run in parallel. Views of the map are weakly consistent. Direct memory is released by the garbage collector
+ * once the map is closed and dropped, the JVM must be started with a sufficient -XX:MaxDirectMemorySize.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+@Builder
+public class OffHeapMap<K, V> extends AbstractMap<K, V> implements AutoCloseable {
+
+    private static final int MB = 1024 * 1024;
+
+    /**
+     * Record header: key size and value size
+     */
+    private static final int HEADER = Integer.BYTES * 2;
+
+    /**
+     * Index slot: record address and key hash, address 0 - free slot
+     */
+    private static final int SLOT = Long.BYTES + Integer.BYTES;
+
+    private static final int MAX_SEGMENT_CAPACITY = Integer.highestOneBit(Integer.MAX_VALUE / SLOT);
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    @NonNull
+    private final Class<K> keyType;
+
+    @NonNull
+    private final Class<V> valueType;
+
+    /**
+     * Number of index segments (lock stripes), a power of two
+     */
+    @Default
+    private final int segments = 64;
+
+    /**
+     * Expected number of entries, the index is presized for it
+     */
+    @Default
+    private final long expectedSize = 1024;
+
+    @Default
+    private final int slabSize = 64 * MB;
+
+    /**
+     * Limit of the slab memory, the index is not included
+     */
+    @Default
+    private final long maxMemory = 4L * 1024 * MB;
+
+    @NonNull
+    @Default
+    private final RocksDbCodec codec = RocksDbCodec.POOLED;
+
+    private SlabAllocator allocator;
+    private Segment<K, V>[] table;
+    private int segmentShift;
+
+    /**
+     * Allocate the index and the slab allocator
+     *
+     * @return the map
+     */
+    public OffHeapMap<K, V> init() {
+        if (segments <= 0 || Integer.bitCount(segments) != 1) {
+            throw new IllegalArgumentException("Number of segments must be a power of two: " + segments);
+        }
+
+        allocator = new SlabAllocator(slabSize, maxMemory);
+        segmentShift = Integer.SIZE - Integer.numberOfTrailingZeros(segments);
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Segment<K, V>[] segmentTable = new Segment[segments];
+        for (int i = 0; i < segments; i++) {
+            segmentTable[i] = new Segment<>(this, expectedSize / segments);
+        }
+        table = segmentTable;
+
+        return this;
+    }
+
+    private static int capacityFor(long expectedSize) {
+        long capacity = Math.max(16, (long) Math.ceil(expectedSize / LOAD_FACTOR));
+        if (capacity > MAX_SEGMENT_CAPACITY) {
+            throw new IllegalStateException("Segment is full, increase the number of segments");
+        }
+
+        return Integer.highestOneBit((int) capacity - 1) << 1;
+    }
+
+    private static int hash(ByteBuf key) {
+        int hash = 1;
+        for (int i = key.readerIndex(); i < key.writerIndex(); i++) {
+            hash = 31 * hash + key.getByte(i);
+        }
+
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * The segment is chosen by the high bits of the hash, the slot in the segment by the low bits
+     */
+    private Segment<K, V> segment(int hash) {
+        return segments == 1 ? table[0] : table[hash >>> segmentShift];
+    }
+
+    private ByteBuffer view(long address, int skip, int length) {
+        ByteBuffer view = allocator.slab(address).duplicate();
+        int position = SlabAllocator.offset(address) + skip;
+        view.limit(position + length);
+        view.position(position);
+        return view;
+    }
+
+    private int keySize(long address) {
+        return allocator.slab(address).getInt(SlabAllocator.offset(address));
+    }
+
+    private int valueSize(long address) {
+        return allocator.slab(address).getInt(SlabAllocator.offset(address) + Integer.BYTES);
+    }
+
+    private int recordSize(long address) {
+        return HEADER + keySize(address) + valueSize(address);
+    }
+
+    private boolean keyEquals(long address, ByteBuf key) {
+        int size = key.readableBytes();
+        if (keySize(address) != size) {
+            return false;
+        }
+
+        ByteBuffer slab = allocator.slab(address);
+        int offset = SlabAllocator.offset(address) + HEADER;
+        for (int i = 0; i < size; i++) {
+            if (slab.get(offset + i) != key.getByte(key.readerIndex() + i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private <T> T read(long address, int skip, int size, Class<T> type) {
+        ByteBuf buffer = codec.allocate(size);
+        try {
+            buffer.writeBytes(view(address, skip, size));
+            return codec.decode(buffer, type);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    private V readValue(long address) {
+        return read(address, HEADER + keySize(address), valueSize(address), valueType);
+    }
+
+    private K readKey(long address) {
+        return read(address, HEADER, keySize(address), keyType);
+    }
+
+    private void write(long address, ByteBuf key, ByteBuf value) {
+        ByteBuffer view = view(address, 0, HEADER + key.readableBytes() + value.readableBytes());
+        view.putInt(key.readableBytes()).putInt(value.readableBytes());
+        view.limit(view.position() + key.readableBytes());
+        key.getBytes(key.readerIndex(), view);
+        view.limit(view.position() + value.readableBytes());
+        value.getBytes(value.readerIndex(), view);
+    }
+
+    /**
+     * A part of the index, an open-addressing table in a direct buffer
+     */
+    private static class Segment<K, V> {
+        private final OffHeapMap<K, V> map;
+        private ByteBuffer index;
+        private int mask;
+        private int maxFill;
+        private volatile int size;
+
+        Segment(OffHeapMap<K, V> map, long expectedSize) {
+            this.map = map;
+            allocate(capacityFor(expectedSize));
+        }
+
+        private void allocate(int capacity) {
+            index = ByteBuffer.allocateDirect(capacity * SLOT);
+            mask = capacity - 1;
+            maxFill = (int) (capacity * LOAD_FACTOR);
+        }
+
+        private long address(int slot) {
+            return index.getLong(slot * SLOT);
+        }
+
+        private int hash(int slot) {
+            return index.getInt(slot * SLOT + Long.BYTES);
+        }
+
+        private void set(int slot, long address, int hash) {
+            index.putLong(slot * SLOT, address);
+            index.putInt(slot * SLOT + Long.BYTES, hash);
+        }
+
+        /**
+         * Slot of a key
+         *
+         * @return the slot of the key if it exists, otherwise -(free slot + 1)
+         */
+        private int find(int hash, ByteBuf key) {
+            int slot = hash & mask;
+            long address;
+            while ((address = address(slot)) != 0) {
+                if (hash(slot) == hash && map.keyEquals(address, key)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            return -(slot + 1);
+        }
+
+        synchronized boolean contains(int hash, ByteBuf key) {
+            return find(hash, key) >= 0;
+        }
+
+        synchronized V get(int hash, ByteBuf key) {
+            int slot = find(hash, key);
+            return slot < 0 ? null : map.readValue(address(slot));
+        }
+
+        synchronized V put(int hash, ByteBuf key, ByteBuf value) {
+            int recordSize = HEADER + key.readableBytes() + value.readableBytes();
+
+            int slot = find(hash, key);
+            if (slot >= 0) {
+                long address = address(slot);
+                int previousSize = map.recordSize(address);
+                V previous = map.readValue(address);
+
+                if (SlabAllocator.sizeClass(previousSize) == SlabAllocator.sizeClass(recordSize)) {
+                    map.write(address, key, value);
+                } else {
+                    long newAddress = map.allocator.allocate(recordSize);
+                    map.write(newAddress, key, value);
+                    set(slot, newAddress, hash);
+                    map.allocator.free(address, previousSize);
+                }
+
+                return previous;
+            }
+
+            long address = map.allocator.allocate(recordSize);
+            map.write(address, key, value);
+            set(-slot - 1, address, hash);
+
+            if (++size > maxFill) {
+                rehash((mask + 1) << 1);
+            }
+
+            return null;
+        }
+
+        synchronized V remove(int hash, ByteBuf key) {
+            int slot = find(hash, key);
+            if (slot < 0) {
+                return null;
+            }
+
+            long address = address(slot);
+            V previous = map.readValue(address);
+            map.allocator.free(address, map.recordSize(address));
+            shiftBack(slot);
+            size--;
+
+            return previous;
+        }
+
+        /**
+         * Free a slot and move back the entries of the probe sequence that follows it
+         */
+        private void shiftBack(int slot) {
+            int free = slot;
+            int current = slot;
+            while (true) {
+                current = (current + 1) & mask;
+                long address = address(current);
+                if (address == 0) {
+                    set(free, 0, 0);
+                    return;
+                }
+
+                int home = hash(current) & mask;
+                // the entry can move to the free slot only if its home slot is not cyclically in (free, current]
+                boolean stays = free <= current
+                        ? free < home && home <= current
+                        : free < home || home <= current;
+
+                if (!stays) {
+                    set(free, address, hash(current));
+                    free = current;
+                }
+            }
+        }
+
+        private void rehash(int capacity) {
+            if (capacity > MAX_SEGMENT_CAPACITY) {
+                throw new IllegalStateException("Segment is full, increase the number of segments");
+            }
+
+            ByteBuffer oldIndex = index;
+            int oldCapacity = mask + 1;
+            allocate(capacity);
+
+            for (int i = 0; i < oldCapacity; i++) {
+                long address = oldIndex.getLong(i * SLOT);
+                if (address != 0) {
+                    int hash = oldIndex.getInt(i * SLOT + Long.BYTES);
+                    int slot = hash & mask;
+                    while (address(slot) != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    set(slot, address, hash);
+                }
+            }
+        }
+
+        synchronized void clear() {
+            for (int slot = 0; slot <= mask; slot++) {
+                long address = address(slot);
+                if (address != 0) {
+                    map.allocator.free(address, map.recordSize(address));
+                    set(slot, 0, 0);
+                }
+            }
+            size = 0;
+        }
+
+        /**
+         * First occupied slot starting from a slot, the caller must hold the segment lock
+         *
+         * @return the slot or -1 if there are no entries from the slot to the end of the segment
+         */
+        int nextSlot(int from) {
+            for (int slot = from; slot <= mask; slot++) {
+                if (address(slot) != 0) {
+                    return slot;
+                }
+            }
+
+            return -1;
+        }
+
+        /**
+         * Entry at an occupied slot, the caller must hold the segment lock
+         */
+        Entry<K, V> entry(int slot) {
+            long address = address(slot);
+            return new SimpleImmutableEntry<>(map.readKey(address), map.readValue(address));
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+    }
+
+    @Override
+    public int size() {
+        long size = 0;
+        for (Segment<K, V> segment : table) {
+            size += segment.size;
+        }
+
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(@NonNull Object key) {
+        ByteBuf keyBuf = codec.encode(key);
+        try {
+            int hash = hash(keyBuf);
+            return segment(hash).contains(hash, keyBuf);
+        } finally {
+            keyBuf.release();
+        }
+    }
+
+    @Override
+    public V get(@NonNull Object key) {
+        ByteBuf keyBuf = codec.encode(key);
+        try {
+            int hash = hash(keyBuf);
+            return segment(hash).get(hash, keyBuf);
+        } finally {
+            keyBuf.release();
+        }
+    }
+
+    @Override
+    public V put(@NonNull K key, @NonNull V value) {
+        ByteBuf keyBuf = codec.encode(key);
+        ByteBuf valueBuf = null;
+        try {
+            valueBuf = codec.encode(value);
+            int hash = hash(keyBuf);
+            return segment(hash).put(hash, keyBuf, valueBuf);
+        } finally {
+            keyBuf.release();
+            if (valueBuf != null) {
+                valueBuf.release();
+            }
+        }
+    }
+
+    @Override
+    public V remove(@NonNull Object key) {
+        ByteBuf keyBuf = codec.encode(key);
+        try {
+            int hash = hash(keyBuf);
+            return segment(hash).remove(hash, keyBuf);
+        } finally {
+            keyBuf.release();
+        }
+    }
+
+    /**
+     * Remove all the entries, their memory goes to the free lists and stays allocated
+     */
+    @Override
+    public void clear() {
+        for (Segment<K, V> segment : table) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Direct memory taken by the slabs
+     *
+     * @return number of bytes
+     */
+    public long getAllocatedBytes() {
+        return allocator.getAllocatedBytes();
+    }
+
+    /**
+     * Direct memory taken by the records, including the size class rounding
+     *
+     * @return number of bytes
+     */
+    public long getUsedBytes() {
+        return allocator.getUsedBytes();
+    }
+
+    /**
+     * Direct memory taken by the index
+     *
+     * @return number of bytes
+     */
+    public long getIndexBytes() {
+        long bytes = 0;
+        for (Segment<K, V> segment : table) {
+            synchronized (segment) {
+                bytes += (long) segment.capacity() * SLOT;
+            }
+        }
+
+        return bytes;
+    }
+
+    /**
+     * View of the entries, entries are deserialized on iteration. The iterator doesn't support removal.
+     * Entries moved by a concurrent rehash or removal may be skipped or returned twice.
+     *
+     * @return entries
+     */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new Iterator<Entry<K, V>>() {
+                    private int segment;
+                    private int slot;
+                    private Entry<K, V> next = advance();
+
+                    private Entry<K, V> advance() {
+                        while (segment < table.length) {
+                            Segment<K, V> current = table[segment];
+                            synchronized (current) {
+                                int occupied = current.nextSlot(slot);
+                                if (occupied >= 0) {
+                                    slot = occupied + 1;
+                                    return current.entry(occupied);
+                                }
+                            }
+                            segment++;
+                            slot = 0;
+                        }
+
+                        return null;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next != null;
+                    }
+
+                    @Override
+                    public Entry<K, V> next() {
+                        if (next == null) {
+                            throw new NoSuchElementException();
+                        }
+
+                        Entry<K, V> entry = next;
+                        next = advance();
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return OffHeapMap.this.size();
+            }
+        };
+    }
+
+    /**
+     * Drop the references to the direct memory, the map can't be used after that
+     */
+    @Override
+    public void close() {
+        table = null;
+        allocator = null;
+    }
+}
@@ -0,0 +1,146 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.offheap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocates blocks of direct memory out of fixed-size slabs.
+ * A block is addressed by a long: the slab number (starting from 1, so that 0 is never a valid address)
+ * in the high int and the offset in the slab in the low int.
+ * <p>
+ * Block sizes are rounded up to a size class: multiples of 16 bytes up to 4KB, powers of two above.
+ * Freed blocks are kept in a free list per size class and reused before new memory is taken from the slabs.
+ * The free lists are intrusive, the first 8 bytes of a free block hold the address of the next one,
+ * so the allocator keeps no objects on the heap per block.
+ */
+class SlabAllocator {
+
+    private static final int GRANULE = 16;
+    private static final int SMALL_LIMIT = 4096;
+    private static final int SMALL_CLASSES = SMALL_LIMIT / GRANULE;
+
+    private final int slabSize;
+
+    /**
+     * Slabs are preallocated as references only, the slab array is never resized,
+     * so readers can resolve addresses without the allocator lock.
+     */
+    private final ByteBuffer[] slabs;
+    private int slabCount;
+
+    /**
+     * Bump pointer in the last slab
+     */
+    private int position;
+
+    /**
+     * Heads of the free lists by size class, 0 - empty list
+     */
+    private final long[] freeLists;
+
+    private long usedBytes;
+
+    SlabAllocator(int slabSize, long maxMemory) {
+        if (slabSize <= SMALL_LIMIT) {
+            throw new IllegalArgumentException("Slab size must be greater than " + SMALL_LIMIT);
+        }
+
+        long maxSlabs = maxMemory / slabSize;
+        if (maxSlabs < 1 || maxSlabs > Integer.MAX_VALUE - 1) {
+            throw new IllegalArgumentException("Invalid max memory: " + maxMemory);
+        }
+
+        this.slabSize = slabSize;
+        this.slabs = new ByteBuffer[(int) maxSlabs];
+        this.freeLists = new long[sizeClass(slabSize) + 1];
+        this.position = slabSize;
+    }
+
+    static int sizeClass(int size) {
+        if (size <= SMALL_LIMIT) {
+            return (size + GRANULE - 1) / GRANULE;
+        }
+
+        // ceil(log2(size)) - log2(SMALL_LIMIT)
+        return SMALL_CLASSES + (Integer.SIZE - Integer.numberOfLeadingZeros(size - 1)) - 12;
+    }
+
+    static int blockSize(int sizeClass) {
+        return sizeClass <= SMALL_CLASSES ? sizeClass * GRANULE : SMALL_LIMIT << (sizeClass - SMALL_CLASSES);
+    }
+
+    static int offset(long address) {
+        return (int) address;
+    }
+
+    ByteBuffer slab(long address) {
+        return slabs[(int) (address >>> Integer.SIZE) - 1];
+    }
+
+    /**
+     * Allocate a block
+     *
+     * @param size number of bytes
+     * @return block address
+     */
+    synchronized long allocate(int size) {
+        int sizeClass = sizeClass(size);
+        int blockSize = blockSize(sizeClass);
+        if (size <= 0 || blockSize > slabSize) {
+            throw new IllegalArgumentException("Invalid block size: " + size);
+        }
+
+        usedBytes += blockSize;
+
+        long address = freeLists[sizeClass];
+        if (address != 0) {
+            freeLists[sizeClass] = slab(address).getLong(offset(address));
+            return address;
+        }
+
+        // the tail of the last slab is lost if the block doesn't fit
+        if (position + blockSize > slabSize) {
+            if (slabCount == slabs.length) {
+                usedBytes -= blockSize;
+                throw new IllegalStateException("Off-heap memory is exhausted: " + getAllocatedBytes() + " bytes");
+            }
+
+            slabs[slabCount++] = ByteBuffer.allocateDirect(slabSize);
+            position = 0;
+        }
+
+        address = ((long) slabCount << Integer.SIZE) | position;
+        position += blockSize;
+        return address;
+    }
+
+    /**
+     * Return a block to the free list of its size class
+     *
+     * @param address block address
+     * @param size    number of bytes the block was allocated for
+     */
+    synchronized void free(long address, int size) {
+        int sizeClass = sizeClass(size);
+        slab(address).putLong(offset(address), freeLists[sizeClass]);
+        freeLists[sizeClass] = address;
+        usedBytes -= blockSize(sizeClass);
+    }
+
+    /**
+     * Direct memory taken by the slabs
+     *
+     * @return number of bytes
+     */
+    synchronized long getAllocatedBytes() {
+        return (long) slabCount * slabSize;
+    }
+
+    /**
+     * Direct memory taken by the allocated blocks, including the size class rounding
+     *
+     * @return number of bytes
+     */
+    synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+}
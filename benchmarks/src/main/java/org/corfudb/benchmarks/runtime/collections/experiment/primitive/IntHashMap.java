@@ -0,0 +1,305 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.primitive;
+
+import lombok.NonNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * An int-keyed open-addressing hash map with values stored as byte arrays.
+ * Keys are kept in a plain int array and values in a parallel array of serialized values, so an entry costs
+ * an int, a reference and the value bytes, with no boxed keys and no node objects. Collisions are resolved
+ * by linear probing, removals shift the following entries back instead of leaving tombstones.
+ * <p>
+ * Values are serialized on put and deserialized on every get. Not thread safe, like {@link java.util.HashMap}.
+ *
+ * @param <V> value type
+ */
+public class IntHashMap<V> extends AbstractMap<Integer, V> {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final Function<V, byte[]> serializer;
+    private final Function<byte[], V> deserializer;
+
+    private int[] keys;
+
+    /**
+     * Serialized values, null - free slot
+     */
+    private byte[][] values;
+
+    private int mask;
+    private int maxFill;
+    private int size;
+
+    /**
+     * An int-keyed map
+     *
+     * @param expectedSize expected number of entries, the map doesn't resize until it gets bigger
+     * @param serializer   value serializer
+     * @param deserializer value deserializer
+     */
+    public IntHashMap(int expectedSize, @NonNull Function<V, byte[]> serializer,
+                      @NonNull Function<byte[], V> deserializer) {
+        this.serializer = serializer;
+        this.deserializer = deserializer;
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * An int-keyed map of strings, stored in UTF-8
+     *
+     * @param expectedSize expected number of entries
+     * @return the map
+     */
+    public static IntHashMap<String> ofStrings(int expectedSize) {
+        Function<String, byte[]> serializer = value -> value.getBytes(StandardCharsets.UTF_8);
+        Function<byte[], String> deserializer = bytes -> new String(bytes, StandardCharsets.UTF_8);
+        return new IntHashMap<>(expectedSize, serializer, deserializer);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long capacity = Math.max(MIN_CAPACITY, (long) Math.ceil(expectedSize / LOAD_FACTOR));
+        if (capacity > 1 << 30) {
+            throw new IllegalArgumentException("Too many entries: " + expectedSize);
+        }
+
+        return Integer.highestOneBit((int) capacity - 1) << 1;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new byte[capacity][];
+        mask = capacity - 1;
+        maxFill = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Spread sequential keys over the table, linear probing degrades on clustered hashes
+     */
+    private static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Slot of a key
+     *
+     * @return the slot of the key if it exists, otherwise -(free slot + 1)
+     */
+    private int find(int key) {
+        int slot = mix(key) & mask;
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return -(slot + 1);
+    }
+
+    private V decode(byte[] value) {
+        return value == null ? null : deserializer.apply(value);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Check whether a key exists
+     *
+     * @param key key
+     * @return true if the key exists
+     */
+    public boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Integer && containsKey(((Integer) key).intValue());
+    }
+
+    /**
+     * Get a value
+     *
+     * @param key key
+     * @return value or null if the key doesn't exist
+     */
+    public V get(int key) {
+        int slot = find(key);
+        return slot < 0 ? null : deserializer.apply(values[slot]);
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof Integer ? get(((Integer) key).intValue()) : null;
+    }
+
+    /**
+     * Put a value
+     *
+     * @param key   key
+     * @param value value
+     * @return the previous value or null if the key didn't exist
+     */
+    public V put(int key, @NonNull V value) {
+        byte[] bytes = serializer.apply(value);
+
+        int slot = find(key);
+        if (slot >= 0) {
+            byte[] previous = values[slot];
+            values[slot] = bytes;
+            return decode(previous);
+        }
+
+        slot = -slot - 1;
+        keys[slot] = key;
+        values[slot] = bytes;
+
+        if (++size > maxFill) {
+            rehash(keys.length << 1);
+        }
+
+        return null;
+    }
+
+    @Override
+    public V put(@NonNull Integer key, V value) {
+        return put(key.intValue(), value);
+    }
+
+    /**
+     * Remove a key
+     *
+     * @param key key
+     * @return the removed value or null if the key didn't exist
+     */
+    public V remove(int key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+
+        byte[] previous = values[slot];
+        shiftBack(slot);
+        size--;
+
+        return decode(previous);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return key instanceof Integer ? remove(((Integer) key).intValue()) : null;
+    }
+
+    /**
+     * Free a slot and move back the entries of the probe sequence that follows it,
+     * so that every entry stays reachable from its home slot without tombstones.
+     */
+    private void shiftBack(int slot) {
+        int free = slot;
+        int current = slot;
+        while (true) {
+            current = (current + 1) & mask;
+            if (values[current] == null) {
+                values[free] = null;
+                return;
+            }
+
+            int home = mix(keys[current]) & mask;
+            // the entry can move to the free slot only if its home slot is not cyclically in (free, current]
+            boolean stays = free <= current
+                    ? free < home && home <= current
+                    : free < home || home <= current;
+
+            if (!stays) {
+                keys[free] = keys[current];
+                values[free] = values[current];
+                free = current;
+            }
+        }
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        byte[][] oldValues = values;
+        allocate(capacity);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = -find(oldKeys[i]) - 1;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * View of the entries, values are deserialized on iteration. The iterator doesn't support removal.
+     *
+     * @return entries
+     */
+    @Override
+    public Set<Entry<Integer, V>> entrySet() {
+        return new AbstractSet<Entry<Integer, V>>() {
+            @Override
+            public Iterator<Entry<Integer, V>> iterator() {
+                return new Iterator<Entry<Integer, V>>() {
+                    private int slot = advance(0);
+
+                    private int advance(int from) {
+                        int next = from;
+                        while (next < values.length && values[next] == null) {
+                            next++;
+                        }
+                        return next;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return slot < values.length;
+                    }
+
+                    @Override
+                    public Entry<Integer, V> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+
+                        Entry<Integer, V> entry = new SimpleImmutableEntry<>(keys[slot], decode(values[slot]));
+                        slot = advance(slot + 1);
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
@@ -0,0 +1,327 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.rocksdb;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import lombok.NonNull;
+import org.apache.commons.io.FileUtils;
+import org.rocksdb.AbstractWriteBatch;
+import org.rocksdb.EnvOptions;
+import org.rocksdb.IngestExternalFileOptions;
+import org.rocksdb.PlainTableConfig;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.SstFileWriter;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteBatchWithIndex;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Accumulates writes of a {@link RocksDbMap} and applies them in batches.
+ * A batch is flushed as soon as it reaches either the max number of entries or the max size in bytes.
+ * Not thread safe, every writer thread needs its own bulk writer.
+ * If the map maintains an exact size, the key counter is updated in the same write batch as the data,
+ * or right after the file is ingested in {@link BulkLoadMode#SST_FILE} mode. The new keys of a batch are counted
+ * and written holding the counter locks of all the keys of the batch, the same locks the single key writes
+ * of the map take, so a key written concurrently by the map and by the writer is counted once.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class RocksDbBulkWriter<K, V> implements AutoCloseable {
+
+    /**
+     * The way a batch gets into the database
+     */
+    public enum BulkLoadMode {
+        /**
+         * Atomic {@link WriteBatch} write
+         */
+        WRITE_BATCH,
+
+        /**
+         * {@link WriteBatchWithIndex}, a batch that maintains a searchable index of its entries
+         */
+        WRITE_BATCH_WITH_INDEX,
+
+        /**
+         * The batch is sorted and written into an sst file, the file gets ingested into the database,
+         * bypassing memtables and the write path entirely. Requires block based table format.
+         */
+        SST_FILE
+    }
+
+    private final RocksDbMap<K, V> map;
+    private final BulkLoadMode mode;
+    private final int maxEntries;
+    private final long maxBytes;
+
+    private final WriteBatch writeBatch;
+    private final WriteBatchWithIndex indexedWriteBatch;
+    private final TreeMap<byte[], byte[]> sortedBatch;
+
+    /**
+     * Exact key counter of the map, the keys of the current batch and their lock stripes,
+     * to count every new key once
+     */
+    private final RocksDbKeyCounter keyCounter;
+    private final Set<ByteBuffer> pendingKeys = new HashSet<>();
+    private long pendingStripes;
+
+    private int entries;
+    private long bytes;
+    private int sstFileCounter;
+
+    RocksDbBulkWriter(@NonNull RocksDbMap<K, V> map, @NonNull BulkLoadMode mode, int maxEntries, long maxBytes) {
+        if (maxEntries <= 0 || maxBytes <= 0) {
+            String msg = "Invalid batch size: " + maxEntries + " entries, " + maxBytes + " bytes";
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (mode == BulkLoadMode.SST_FILE && map.getOptions().tableFormatConfig() instanceof PlainTableConfig) {
+            throw new IllegalStateException("Sst file ingestion is not supported by plain table format");
+        }
+        if (mode == BulkLoadMode.SST_FILE && map.getTtlSeconds() > 0) {
+            throw new IllegalStateException("Sst file ingestion is not supported with ttl, values have no timestamps");
+        }
+
+        this.map = map;
+        this.mode = mode;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+
+        this.writeBatch = mode == BulkLoadMode.WRITE_BATCH ? new WriteBatch() : null;
+        this.indexedWriteBatch = mode == BulkLoadMode.WRITE_BATCH_WITH_INDEX ? new WriteBatchWithIndex() : null;
+        this.sortedBatch = mode == BulkLoadMode.SST_FILE ? new TreeMap<>(RocksDbBulkWriter::compareBytes) : null;
+        this.keyCounter = map.getKeyCounter();
+    }
+
+    /**
+     * Add an entry to the current batch, flush the batch if it's full
+     *
+     * @param key   key
+     * @param value value
+     * @return the bulk writer
+     */
+    public RocksDbBulkWriter<K, V> put(@NonNull K key, @NonNull V value) {
+        byte[] keyBytes = map.serialize(key);
+        byte[] valueBytes = toBytes(value);
+
+        if (keyCounter != null) {
+            pendingKeys.add(ByteBuffer.wrap(keyBytes));
+            pendingStripes |= 1L << keyCounter.stripe(key);
+        }
+
+        try {
+            switch (mode) {
+                case WRITE_BATCH:
+                    writeBatch.put(map.getDataColumn(), keyBytes, valueBytes);
+                    break;
+                case WRITE_BATCH_WITH_INDEX:
+                    indexedWriteBatch.put(map.getDataColumn(), keyBytes, valueBytes);
+                    break;
+                case SST_FILE:
+                    sortedBatch.put(keyBytes, valueBytes);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown mode: " + mode);
+            }
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("can't add data to the batch", e);
+        }
+
+        entries++;
+        bytes += keyBytes.length + valueBytes.length;
+
+        if (entries >= maxEntries || bytes >= maxBytes) {
+            flush();
+        }
+
+        return this;
+    }
+
+    /**
+     * Add all the entries to the writer
+     *
+     * @param data entries
+     * @return the bulk writer
+     */
+    public RocksDbBulkWriter<K, V> putAll(@NonNull Map<? extends K, ? extends V> data) {
+        data.forEach(this::put);
+        return this;
+    }
+
+    /**
+     * Write the current batch into the database
+     */
+    public void flush() {
+        if (entries == 0) {
+            return;
+        }
+
+        try {
+            if (keyCounter == null) {
+                write(0);
+            } else {
+                keyCounter.locked(pendingStripes, () -> write(countNewKeys()));
+            }
+        } catch (RocksDBException | IOException e) {
+            throw new IllegalStateException("can't write batch", e);
+        }
+
+        clearBatch();
+        entries = 0;
+        bytes = 0;
+        pendingKeys.clear();
+        pendingStripes = 0;
+    }
+
+    /**
+     * Number of the keys of the batch that don't exist yet, checked under the locks of the keys
+     */
+    private long countNewKeys() throws RocksDBException {
+        long newKeys = 0;
+        for (ByteBuffer key : pendingKeys) {
+            if (!map.exists(key.array())) {
+                newKeys++;
+            }
+        }
+        return newKeys;
+    }
+
+    private void write(long newKeys) throws RocksDBException, IOException {
+        switch (mode) {
+            case WRITE_BATCH:
+                updateKeyCounter(writeBatch, newKeys);
+                map.getDb().write(map.getWriteOptions(), writeBatch);
+                break;
+            case WRITE_BATCH_WITH_INDEX:
+                updateKeyCounter(indexedWriteBatch, newKeys);
+                map.getDb().write(map.getWriteOptions(), indexedWriteBatch);
+                break;
+            case SST_FILE:
+                ingest();
+                if (keyCounter != null) {
+                    keyCounter.update(map.getDb(), newKeys);
+                }
+                return;
+            default:
+                throw new IllegalStateException("Unknown mode: " + mode);
+        }
+
+        if (keyCounter != null) {
+            keyCounter.applied(newKeys);
+        }
+    }
+
+    /**
+     * The counter is updated in the same batch as the data
+     */
+    private void updateKeyCounter(AbstractWriteBatch batch, long newKeys) throws RocksDBException {
+        if (keyCounter != null && newKeys > 0) {
+            keyCounter.update(batch, newKeys);
+        }
+    }
+
+    private void clearBatch() {
+        switch (mode) {
+            case WRITE_BATCH:
+                writeBatch.clear();
+                break;
+            case WRITE_BATCH_WITH_INDEX:
+                indexedWriteBatch.clear();
+                break;
+            case SST_FILE:
+                sortedBatch.clear();
+                break;
+            default:
+                throw new IllegalStateException("Unknown mode: " + mode);
+        }
+    }
+
+    private void ingest() throws RocksDBException, IOException {
+        Path ingestDir = getIngestDir();
+        Files.createDirectories(ingestDir);
+        String prefix = map.getTable() == null ? "bulk-" : "bulk-" + map.getTable() + "-";
+        Path sstFile = ingestDir.resolve(prefix + sstFileCounter++ + ".sst");
+
+        try (EnvOptions envOptions = new EnvOptions();
+             SstFileWriter writer = new SstFileWriter(envOptions, map.getOptions());
+             IngestExternalFileOptions ingestOptions = new IngestExternalFileOptions().setMoveFiles(true)) {
+
+            writer.open(sstFile.toString());
+            for (Map.Entry<byte[], byte[]> entry : sortedBatch.entrySet()) {
+                writer.put(entry.getKey(), entry.getValue());
+            }
+            writer.finish();
+
+            map.getDb().ingestExternalFile(
+                    map.getDataColumn(), Collections.singletonList(sstFile.toString()), ingestOptions
+            );
+        } finally {
+            Files.deleteIfExists(sstFile);
+        }
+    }
+
+    private Path getIngestDir() {
+        Path dbPath = map.getDbPath();
+        return dbPath.resolveSibling(dbPath.getFileName() + "-ingest");
+    }
+
+    private byte[] toBytes(V obj) {
+        ByteBuf buffer = map.getCodec().encode(obj);
+        try {
+            return ByteBufUtil.getBytes(buffer);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Flush the remaining data and release native resources
+     */
+    @Override
+    public void close() {
+        try {
+            flush();
+        } finally {
+            if (writeBatch != null) {
+                writeBatch.close();
+            }
+
+            if (indexedWriteBatch != null) {
+                indexedWriteBatch.close();
+            }
+
+            if (mode == BulkLoadMode.SST_FILE) {
+                FileUtils.deleteQuietly(getIngestDir().toFile());
+            }
+        }
+    }
+
+    /**
+     * Compares byte arrays the same way the default RocksDb comparator does (unsigned lexicographic order)
+     *
+     * @param left  left array
+     * @param right right array
+     * @return comparison result
+     */
+    static int compareBytes(byte[] left, byte[] right) {
+        int length = Math.min(left.length, right.length);
+        for (int i = 0; i < length; i++) {
+            int result = Integer.compare(left[i] & 0xFF, right[i] & 0xFF);
+            if (result != 0) {
+                return result;
+            }
+        }
+
+        return Integer.compare(left.length, right.length);
+    }
+}
@@ -0,0 +1,129 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.rocksdb;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import lombok.NonNull;
+import org.corfudb.protocols.CorfuProtocolCommon;
+
+/**
+ * Serializes keys and values of a {@link RocksDbMap} into heap buffers.
+ * The map passes the readable region of a buffer (array, offset, length) straight to RocksDb,
+ * so the only difference between the pooled and unpooled codecs is where the buffers come from.
+ * <p>
+ * Byte arrays are taken as already serialized values and written as is, without a length prefix,
+ * a value takes the whole buffer anyway.
+ */
+public enum RocksDbCodec {
+
+    /**
+     * The original serialization of the map, kept as the baseline: a new unpooled buffer for every key and value
+     * and the whole backing array of the buffer, including the unused capacity, goes to RocksDb.
+     * Keys and values are stored padded to the buffer capacity, 256 bytes at least.
+     */
+    LEGACY(UnpooledByteBufAllocator.DEFAULT) {
+        @Override
+        public ByteBuf encode(@NonNull Object obj) {
+            if (obj instanceof byte[]) {
+                return Unpooled.wrappedBuffer((byte[]) obj);
+            }
+
+            ByteBuf buffer = Unpooled.buffer();
+            CorfuProtocolCommon.serialize(buffer, obj);
+            return Unpooled.wrappedBuffer(buffer.array());
+        }
+    },
+
+    /**
+     * A new buffer for every key and value, each operation leaves garbage behind.
+     */
+    UNPOOLED(UnpooledByteBufAllocator.DEFAULT),
+
+    /**
+     * Buffers are taken from the netty pooled allocator and returned back after the RocksDb call.
+     */
+    POOLED(PooledByteBufAllocator.DEFAULT);
+
+    private final ByteBufAllocator allocator;
+
+    RocksDbCodec(ByteBufAllocator allocator) {
+        this.allocator = allocator;
+    }
+
+    /**
+     * Serialize an object into a heap buffer. The caller must release the buffer.
+     *
+     * @param obj key or value
+     * @return heap buffer
+     */
+    public ByteBuf encode(@NonNull Object obj) {
+        ByteBuf buffer = allocator.heapBuffer();
+        try {
+            if (obj instanceof byte[]) {
+                buffer.writeBytes((byte[]) obj);
+            } else {
+                CorfuProtocolCommon.serialize(buffer, obj);
+            }
+        } catch (RuntimeException ex) {
+            buffer.release();
+            throw ex;
+        }
+        return buffer;
+    }
+
+    /**
+     * Allocate a heap buffer to read a value into. The caller must release the buffer.
+     *
+     * @param capacity initial capacity
+     * @return heap buffer
+     */
+    public ByteBuf allocate(int capacity) {
+        return allocator.heapBuffer(capacity);
+    }
+
+    /**
+     * Deserialize an object from the readable region of a buffer
+     *
+     * @param buffer buffer
+     * @param type   object type
+     * @param <T>    object type
+     * @return deserialized object
+     */
+    public <T> T decode(@NonNull ByteBuf buffer, @NonNull Class<T> type) {
+        if (type == byte[].class) {
+            byte[] bytes = new byte[buffer.readableBytes()];
+            buffer.readBytes(bytes);
+            return type.cast(bytes);
+        }
+
+        return CorfuProtocolCommon.fromBuffer(buffer, type);
+    }
+
+    /**
+     * Deserialize an object from an array
+     *
+     * @param data serialized object
+     * @param type object type
+     * @param <T>  object type
+     * @return deserialized object
+     */
+    public <T> T decode(@NonNull byte[] data, @NonNull Class<T> type) {
+        if (type == byte[].class) {
+            return type.cast(data);
+        }
+
+        return CorfuProtocolCommon.fromBuffer(data, type);
+    }
+
+    /**
+     * Offset of the first readable byte in the backing array of a heap buffer
+     *
+     * @param buffer heap buffer
+     * @return offset in the backing array
+     */
+    public static int offset(ByteBuf buffer) {
+        return buffer.arrayOffset() + buffer.readerIndex();
+    }
+}
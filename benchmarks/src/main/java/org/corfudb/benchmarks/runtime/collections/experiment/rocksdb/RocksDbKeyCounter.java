@@ -0,0 +1,189 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.rocksdb;
+
+import lombok.NonNull;
+import org.rocksdb.AbstractWriteBatch;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Exact number of live keys of a {@link RocksDbMap}.
+ * The counter is persisted in the metadata column family (see {@link RocksDbOptions#metadataColumnFamilyOptions()}),
+ * every change is written as a uint64add merge operand in the same write batch as the data change itself,
+ * so the persisted counter matches the data after a clean close. The map writes without the WAL
+ * by default and the column families are flushed one by one, so after a crash the counter and the data
+ * may come from different flushes: a map that has to survive a crash with an exact size enables the WAL
+ * in its write options.
+ */
+class RocksDbKeyCounter {
+
+    /**
+     * At most 64, a set of stripes is a long bit mask
+     */
+    private static final int LOCK_STRIPES = 64;
+
+    /**
+     * Operands of the single key changes, encoded once
+     */
+    private static final byte[] INCREMENT = encode(1);
+    private static final byte[] DECREMENT = encode(-1);
+
+    private final ColumnFamilyHandle metaColumn;
+    private final byte[] counterKey;
+    private final AtomicLong liveKeys = new AtomicLong();
+
+    /**
+     * Serializes check-then-write sequences for the same key, otherwise two concurrent puts of a new key
+     * would both count it.
+     */
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    RocksDbKeyCounter(@NonNull ColumnFamilyHandle metaColumn, @NonNull byte[] counterKey) {
+        this.metaColumn = metaColumn;
+        this.counterKey = counterKey;
+
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Load the persisted counter. If the counter doesn't exist, the keys get counted and the counter is persisted.
+     *
+     * @param db         database
+     * @param dataColumn column family of the map
+     * @throws RocksDBException db exception
+     */
+    void load(RocksDB db, ColumnFamilyHandle dataColumn) throws RocksDBException {
+        byte[] persisted = db.get(metaColumn, counterKey);
+        if (persisted != null) {
+            liveKeys.set(decode(persisted));
+            return;
+        }
+
+        long count = 0;
+        try (RocksIterator iter = db.newIterator(dataColumn)) {
+            iter.seekToFirst();
+            while (iter.isValid()) {
+                count++;
+                iter.next();
+            }
+        }
+
+        db.put(metaColumn, counterKey, encode(count));
+        liveKeys.set(count);
+    }
+
+    /**
+     * Remove the persisted counter, used when the map doesn't maintain it, so that the next time
+     * the map is opened with an exact counter the keys get recounted.
+     *
+     * @param db database
+     * @throws RocksDBException db exception
+     */
+    void invalidate(RocksDB db) throws RocksDBException {
+        db.delete(metaColumn, counterKey);
+    }
+
+    /**
+     * Add a counter change to a write batch. Call {@link #applied(long)} after the batch is written.
+     *
+     * @param batch write batch
+     * @param delta counter change
+     * @throws RocksDBException db exception
+     */
+    void update(AbstractWriteBatch batch, long delta) throws RocksDBException {
+        batch.merge(metaColumn, counterKey, operand(delta));
+    }
+
+    /**
+     * Write a counter change directly into the database
+     *
+     * @param db    database
+     * @param delta counter change
+     * @throws RocksDBException db exception
+     */
+    void update(RocksDB db, long delta) throws RocksDBException {
+        db.merge(metaColumn, counterKey, operand(delta));
+        applied(delta);
+    }
+
+    void applied(long delta) {
+        liveKeys.addAndGet(delta);
+    }
+
+    void reset(RocksDB db) throws RocksDBException {
+        db.put(metaColumn, counterKey, encode(0));
+        liveKeys.set(0);
+    }
+
+    long get() {
+        return liveKeys.get();
+    }
+
+    Object lock(Object key) {
+        return locks[stripe(key)];
+    }
+
+    /**
+     * Lock stripe of a key, a bit of the mask taken by {@link #locked(long, LockedAction)}
+     *
+     * @param key key
+     * @return stripe index, below 64
+     */
+    int stripe(Object key) {
+        return Math.floorMod(key.hashCode(), LOCK_STRIPES);
+    }
+
+    /**
+     * Run an action holding the locks of several stripes. The locks are taken in the stripe order,
+     * a single key operation holds one lock only, so the callers can't deadlock.
+     *
+     * @param stripes bit mask of the stripes
+     * @param action  action
+     * @throws RocksDBException db exception
+     * @throws IOException      io exception
+     */
+    void locked(long stripes, LockedAction action) throws RocksDBException, IOException {
+        if (stripes == 0) {
+            action.run();
+            return;
+        }
+
+        synchronized (locks[Long.numberOfTrailingZeros(stripes)]) {
+            locked(stripes & (stripes - 1), action);
+        }
+    }
+
+    /**
+     * A write that checks and counts keys under their locks
+     */
+    @FunctionalInterface
+    interface LockedAction {
+        void run() throws RocksDBException, IOException;
+    }
+
+    private static byte[] operand(long delta) {
+        if (delta == 1) {
+            return INCREMENT;
+        }
+        return delta == -1 ? DECREMENT : encode(delta);
+    }
+
+    /**
+     * uint64add merge operator expects 64 bit little endian integers, negative deltas wrap around.
+     */
+    static byte[] encode(long value) {
+        return ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(value).array();
+    }
+
+    static long decode(byte[] value) {
+        return ByteBuffer.wrap(value).order(ByteOrder.LITTLE_ENDIAN).getLong();
+    }
+}
@@ -0,0 +1,75 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.rocksdb;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes keys of a {@link RocksDbMap} so that the order of encoded keys (unsigned lexicographic,
+ * the default RocksDb comparator) matches the natural order of the keys. That makes key ranges
+ * contiguous in the database, see {@link RocksDbMap#subMap(Object, Object)}.
+ *
+ * @param <K> key type
+ */
+public interface RocksDbKeyEncoder<K> {
+
+    /**
+     * Big-endian with the sign bit flipped, negative numbers go before positive ones
+     */
+    RocksDbKeyEncoder<Integer> INT = new RocksDbKeyEncoder<Integer>() {
+        @Override
+        public byte[] encode(Integer key) {
+            return ByteBuffer.allocate(Integer.BYTES).putInt(key ^ Integer.MIN_VALUE).array();
+        }
+
+        @Override
+        public Integer decode(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getInt() ^ Integer.MIN_VALUE;
+        }
+    };
+
+    /**
+     * Big-endian with the sign bit flipped, negative numbers go before positive ones
+     */
+    RocksDbKeyEncoder<Long> LONG = new RocksDbKeyEncoder<Long>() {
+        @Override
+        public byte[] encode(Long key) {
+            return ByteBuffer.allocate(Long.BYTES).putLong(key ^ Long.MIN_VALUE).array();
+        }
+
+        @Override
+        public Long decode(byte[] bytes) {
+            return ByteBuffer.wrap(bytes).getLong() ^ Long.MIN_VALUE;
+        }
+    };
+
+    /**
+     * UTF-8, byte order of UTF-8 strings is the code point order
+     */
+    RocksDbKeyEncoder<String> STRING = new RocksDbKeyEncoder<String>() {
+        @Override
+        public byte[] encode(String key) {
+            return key.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    /**
+     * Encode a key
+     *
+     * @param key key
+     * @return encoded key
+     */
+    byte[] encode(K key);
+
+    /**
+     * Decode a key
+     *
+     * @param bytes encoded key
+     * @return key
+     */
+    K decode(byte[] bytes);
+}
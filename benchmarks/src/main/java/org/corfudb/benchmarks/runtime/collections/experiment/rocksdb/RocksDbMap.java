@@ -2,26 +2,57 @@ package org.corfudb.benchmarks.runtime.collections.experiment.rocksdb;
 
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Builder.Default;
 import lombok.Getter;
 import lombok.NonNull;
+import org.corfudb.benchmarks.runtime.collections.experiment.rocksdb.RocksDbBulkWriter.BulkLoadMode;
 import org.corfudb.protocols.CorfuProtocolCommon;
+import org.rocksdb.AbstractNativeReference;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.CompactionOptionsFIFO;
+import org.rocksdb.CompactionStyle;
+import org.rocksdb.DBOptions;
 import org.rocksdb.Options;
 import org.rocksdb.PlainTableConfig;
+import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.Statistics;
+import org.rocksdb.TtlDB;
+import org.rocksdb.WriteBatch;
 import org.rocksdb.WriteOptions;
 
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A persistent Map backed by RocksDb embedded database.
@@ -36,9 +67,117 @@ public class RocksDbMap<K, V> implements Map<K, V> {
         RocksDB.loadLibrary();
     }
 
+    private static final int DEFAULT_VALUE_CAPACITY = 256;
+    private static final int DEFAULT_BATCH_SIZE_ENTRIES = 10_000;
+    private static final long DEFAULT_BATCH_SIZE_BYTES = 16L * 1024 * 1024;
+
+    static final byte[] METADATA_COLUMN_FAMILY = "metadata".getBytes(StandardCharsets.UTF_8);
+    private static final String SIZE = "size";
+    private static final String COUNTER = "counter";
+    private static final byte[] EMPTY = new byte[0];
+
+    /**
+     * The way the map calculates its size
+     */
+    public enum SizeMode {
+        /**
+         * Exact number of live keys, maintained on every write and persisted in the metadata column family.
+         * Size is O(1), but every put and remove has to check whether the key exists.
+         */
+        EXACT,
+
+        /**
+         * rocksdb.estimate-num-keys property, O(1) and no write overhead, but approximate
+         */
+        ESTIMATE,
+
+        /**
+         * Iterates over all the keys, O(n)
+         */
+        SCAN
+    }
+
+    /**
+     * The way {@link #remove(Object)} deletes a key
+     */
+    public enum RemovalPolicy {
+        /**
+         * Reads the value before deleting the key and returns it, as required by {@link Map#remove(Object)}
+         */
+        RETURN_PREVIOUS,
+
+        /**
+         * Writes a tombstone without reading the value, remove always returns null
+         */
+        BLIND_DELETE,
+
+        /**
+         * Writes a single delete tombstone, which is dropped by compaction together with the value it deletes,
+         * remove always returns null. Only valid if every key is written once and never overwritten
+         * before it's removed, otherwise the behaviour is undefined.
+         */
+        SINGLE_DELETE
+    }
+
+    /**
+     * The way {@link #clear()} deletes all the keys, the map stays open in all the modes
+     */
+    public enum ClearMode {
+        /**
+         * A single range tombstone over all the keys. Clear is O(1), but reads have to skip the tombstone
+         * and the deleted keys until compaction drops them. Not supported by plain table format.
+         */
+        DELETE_RANGE,
+
+        /**
+         * Drop and recreate the column family of the table, the old data files are deleted right away.
+         * Only for a table in a shared database, see {@link RocksDbMapFactory}.
+         * Snapshots taken before the clear see the table empty. The handle of the dropped column family
+         * is closed by the clear, so no other operation of the map may run concurrently with it.
+         */
+        DROP_COLUMN,
+
+        /**
+         * Iterate over the keys and delete them in batches, O(n) point tombstones
+         */
+        DELETE_KEYS
+    }
+
     @Getter
     private RocksDB db;
 
+    /**
+     * Column family holding the map data
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private volatile ColumnFamilyHandle dataColumn;
+
+    private RocksDbKeyCounter keyCounter;
+
+    /**
+     * Column family of the size counter and the counters of {@link #increment(Object, long)}
+     */
+    private ColumnFamilyHandle metaColumn;
+
+    /**
+     * Prefix of the keys of the counters in the metadata column family
+     */
+    private byte[] counterPrefix;
+
+    private Statistics statistics;
+
+    /**
+     * Factory of the shared database the map is stored in, null - the map owns its database,
+     * see {@link RocksDbMapFactory#map(String, Class, Class)}
+     */
+    private final RocksDbMapFactory factory;
+
+    /**
+     * Table name of the map in the shared database
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final String table;
+
     @NonNull
     private final Class<K> keyType;
 
@@ -49,54 +188,277 @@ public class RocksDbMap<K, V> implements Map<K, V> {
     @Getter
     private final Path dbPath;
 
+    /**
+     * No WAL by default, the data and the key counter are consistent after a clean close only,
+     * see {@link RocksDbKeyCounter}
+     */
+    @NonNull
+    @Default
+    @Getter(AccessLevel.PACKAGE)
+    private final WriteOptions writeOptions = new WriteOptions().setDisableWAL(true);
+
+    @NonNull
+    @Default
+    @Getter(AccessLevel.PACKAGE)
+    private final ReadOptions readOptions = new ReadOptions();
+
+    @NonNull
+    @Default
+    @Getter
+    private final RocksDbCodec codec = RocksDbCodec.POOLED;
+
+    /**
+     * Order-preserving key encoder, needed for range scans. If not set, keys are serialized by the codec,
+     * which doesn't preserve the order.
+     */
+    private final RocksDbKeyEncoder<K> keyEncoder;
+
+    /**
+     * Collect tickers and latency histograms, see {@link #getStatistics()}
+     */
+    @Default
+    private final boolean statisticsEnabled = false;
+
+    /**
+     * Readahead size of iterators, 0 - RocksDb default (automatic readahead)
+     */
+    @Default
+    @Getter(AccessLevel.PACKAGE)
+    private final long readaheadSize = 0;
+
+    /**
+     * Bulk load configuration used by {@link #putAll(Map)}
+     */
+    @NonNull
+    @Default
+    private final BulkLoadMode bulkLoadMode = BulkLoadMode.WRITE_BATCH;
+
+    @Default
+    private final int batchSizeEntries = DEFAULT_BATCH_SIZE_ENTRIES;
+
+    @Default
+    private final long batchSizeBytes = DEFAULT_BATCH_SIZE_BYTES;
+
     @NonNull
     @Default
-    private final WriteOptions opts = new WriteOptions().setDisableWAL(true);
+    @Getter
+    private final SizeMode sizeMode = SizeMode.EXACT;
 
+    /**
+     * CorfuTable deletes through {@link Map#remove(Object)} and ignores the previous value,
+     * a map configured with a read-free policy makes those deletes a single write.
+     */
     @NonNull
     @Default
-    private final Options options = new Options()
-            .setCreateIfMissing(true)
-            .setWriteBufferSize((long) 256 * (long) 1024 * (long) 1024)
-            .setMaxWriteBufferNumber(4)
-            .setIncreaseParallelism(8)
-            //.setBloomLocality(10)
-
-            //.setOptimizeFiltersForHits(true)
-
-            //.setCompactionStyle(CompactionStyle.LEVEL)
-            //.setCompressionType(CompressionType.NO_COMPRESSION)
-
-            //.setMemTableConfig(new SkipListMemTableConfig())
-
-            .useCappedPrefixExtractor(64)
-            .setMemtablePrefixBloomSizeRatio(0.1)
-            .setTableFormatConfig(new PlainTableConfig())
-
-            /*
-            .setTableFormatConfig(new BlockBasedTableConfig()
-                    .setPartitionFilters(true)
-                    .setIndexType(IndexType.kHashSearch)
-                    .setPinL0FilterAndIndexBlocksInCache(true)
-                    //.setCacheIndexAndFilterBlocks(true) //- huge performance degradation
-                    .setCacheIndexAndFilterBlocksWithHighPriority(true)
-                    .setBlockCache(new LRUCache(100_000))
-                    .setFilterPolicy(new BloomFilter())
-            )*/;
+    @Getter
+    private final RemovalPolicy removalPolicy = RemovalPolicy.RETURN_PREVIOUS;
+
+    /**
+     * Time to live of the entries in seconds, 0 - no expiry. The database is opened as a TtlDB,
+     * which stores a write timestamp with every value and drops expired entries during compactions.
+     * Expired entries stay readable until a compaction gets to them.
+     */
+    @Default
+    @Getter(AccessLevel.PACKAGE)
+    private final int ttlSeconds = 0;
+
+    /**
+     * Max total size of the data files in bytes, 0 - unbounded. The data column family uses FIFO compaction,
+     * which deletes the oldest files once the bound is exceeded, together with all the keys in them.
+     * All the files stay in level 0, so reads rely on bloom filters.
+     */
+    @Default
+    private final long maxBytes = 0;
+
+    /**
+     * Clear mode, null - chosen by the database type, see {@link #getClearMode()}
+     */
+    private final ClearMode clearMode;
+
+    /**
+     * Native resources owned by the map, released on close.
+     * Column family handles have to be closed before the database, options after.
+     */
+    private final List<ColumnFamilyHandle> columnHandles = new ArrayList<>();
+    private final List<AbstractNativeReference> resources = new ArrayList<>();
 
+    /**
+     * Live snapshots by version, see {@link #snapshot(long)}
+     */
+    private final RocksDbSnapshotRegistry<K, V> snapshots = new RocksDbSnapshotRegistry<>(this);
+
+    /**
+     * Value holders of {@link #mayExist}, the value of a key found in a memtable is copied into it
+     */
+    private final ThreadLocal<StringBuilder> valueHolder = ThreadLocal.withInitial(StringBuilder::new);
+
+    /**
+     * Write batches of the threads writing to the map, see {@link RocksDbWriteBuffers}
+     */
+    private final ThreadLocal<RocksDbWriteBuffers> writeBuffers = ThreadLocal.withInitial(this::newWriteBuffers);
+    private final Queue<RocksDbWriteBuffers> allWriteBuffers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The size of the biggest value read so far, used to allocate read buffers of the right size
+     */
+    private final AtomicInteger valueCapacity = new AtomicInteger(DEFAULT_VALUE_CAPACITY);
+
+    @NonNull
+    @Default
+    @Getter(AccessLevel.PACKAGE)
+    private final Options options = RocksDbOptions.plainTable();
+
+    /**
+     * Open the database. The map data is kept in the default column family,
+     * the key counter in the metadata column family.
+     *
+     * @return the map
+     * @throws RocksDBException db exception
+     */
     public RocksDbMap<K, V> init() throws RocksDBException {
-        db = RocksDB.open(options, dbPath.toString());
+        if (clearMode == ClearMode.DROP_COLUMN && factory == null) {
+            throw new IllegalStateException("Only a table in a shared database can be dropped");
+        }
+        if (clearMode == ClearMode.DELETE_RANGE && !isRangeScanSupported()) {
+            throw new IllegalStateException("Range deletes are not supported by plain table format");
+        }
+
+        boolean evicting = ttlSeconds > 0 || maxBytes > 0;
+        if (evicting && sizeMode == SizeMode.EXACT) {
+            throw new IllegalStateException("Exact size can't be maintained when entries expire or get evicted");
+        }
+
+        if (factory != null) {
+            if (evicting) {
+                throw new IllegalStateException("Expiry and eviction are not supported for shared tables");
+            }
+            return attach();
+        }
+
+        DBOptions dbOptions = new DBOptions(options).setCreateMissingColumnFamilies(true);
+        ColumnFamilyOptions dataOptions = new ColumnFamilyOptions(options);
+        ColumnFamilyOptions metaOptions = RocksDbOptions.metadataColumnFamilyOptions();
+        resources.addAll(Arrays.asList(dbOptions, dataOptions, metaOptions));
+
+        if (maxBytes > 0) {
+            CompactionOptionsFIFO fifoOptions = new CompactionOptionsFIFO().setMaxTableFilesSize(maxBytes);
+            dataOptions.setCompactionStyle(CompactionStyle.FIFO).setCompactionOptionsFIFO(fifoOptions);
+            resources.add(fifoOptions);
+        }
+
+        if (statisticsEnabled) {
+            statistics = new Statistics();
+            dbOptions.setStatistics(statistics);
+            resources.add(statistics);
+        }
+
+        List<ColumnFamilyDescriptor> descriptors = Arrays.asList(
+                new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, dataOptions),
+                new ColumnFamilyDescriptor(METADATA_COLUMN_FAMILY, metaOptions)
+        );
+        List<ColumnFamilyHandle> handles = new ArrayList<>();
+        if (ttlSeconds > 0) {
+            // metadata never expires
+            List<Integer> ttls = Arrays.asList(ttlSeconds, 0);
+            db = TtlDB.open(dbOptions, dbPath.toString(), descriptors, handles, ttls, false);
+        } else {
+            db = RocksDB.open(dbOptions, dbPath.toString(), descriptors, handles);
+        }
+
+        columnHandles.addAll(handles);
+
+        dataColumn = handles.get(0);
+        metaColumn = handles.get(1);
+        initCounters("");
+
+        return this;
+    }
+
+    /**
+     * Open the table of the map in the shared database of the factory.
+     * The size counter and the counters of the table are kept under their own keys
+     * in the shared metadata column family.
+     */
+    private RocksDbMap<K, V> attach() throws RocksDBException {
+        if (table == null) {
+            throw new IllegalStateException("Table name is required for a map in a shared database");
+        }
+
+        dataColumn = factory.attach(table);
+        db = factory.getDb();
+        statistics = factory.getStatistics();
+
+        metaColumn = factory.getMetaColumn();
+
+        try {
+            initCounters(":" + table);
+        } catch (RocksDBException e) {
+            factory.detach(table);
+            throw e;
+        }
+
         return this;
     }
 
+    /**
+     * Metadata keys of the map: "size" and "counter:" prefix, suffixed with the table name in a shared database
+     */
+    private void initCounters(String suffix) throws RocksDBException {
+        counterPrefix = (COUNTER + suffix + ":").getBytes(StandardCharsets.UTF_8);
+        keyCounter = new RocksDbKeyCounter(metaColumn, (SIZE + suffix).getBytes(StandardCharsets.UTF_8));
+
+        if (sizeMode == SizeMode.EXACT) {
+            keyCounter.load(db, dataColumn);
+        } else {
+            keyCounter.invalidate(db);
+        }
+    }
+
+    /**
+     * Close the database and release native resources.
+     * A map in a shared database only releases its table, the database is closed by the factory.
+     */
     public void close() {
+        snapshots.releaseAll();
+        allWriteBuffers.forEach(RocksDbWriteBuffers::close);
+        allWriteBuffers.clear();
+
+        if (factory != null) {
+            factory.detach(table);
+            return;
+        }
+
+        columnHandles.forEach(AbstractNativeReference::close);
+        columnHandles.clear();
+
         db.close();
+
+        resources.forEach(AbstractNativeReference::close);
+        resources.clear();
     }
 
     @Override
     public int size() {
+        switch (sizeMode) {
+            case EXACT:
+                return (int) Math.min(keyCounter.get(), Integer.MAX_VALUE);
+            case ESTIMATE:
+                try {
+                    long estimate = db.getLongProperty(dataColumn, "rocksdb.estimate-num-keys");
+                    return (int) Math.min(estimate, Integer.MAX_VALUE);
+                } catch (RocksDBException e) {
+                    throw new IllegalStateException("can't get size", e);
+                }
+            case SCAN:
+                return scanSize();
+            default:
+                throw new IllegalStateException("Unknown size mode: " + sizeMode);
+        }
+    }
+
+    private int scanSize() {
         int size = 0;
-        try (RocksIterator iter = db.newIterator()) {
+        try (RocksIterator iter = db.newIterator(dataColumn)) {
             iter.seekToFirst();
             while (iter.isValid()) {
                 size++;
@@ -109,28 +471,46 @@ public class RocksDbMap<K, V> implements Map<K, V> {
 
     @Override
     public boolean isEmpty() {
-        try (RocksIterator iter = db.newIterator()) {
+        if (sizeMode == SizeMode.EXACT) {
+            return keyCounter.get() == 0;
+        }
+
+        try (RocksIterator iter = db.newIterator(dataColumn)) {
             iter.seekToFirst();
 
             return !iter.isValid();
         }
     }
 
+    /**
+     * Point lookup: a bloom filter probe rules out missing keys, a get confirms existing ones
+     *
+     * @param key key
+     * @return true if the key exists
+     */
     @Override
     public boolean containsKey(Object key) {
-        try (RocksIterator iter = db.newIterator()) {
-            iter.seek(serialize(key));
-            return iter.isValid();
+        return containsKey(key, readOptions);
+    }
+
+    boolean containsKey(Object key, ReadOptions options) {
+        ByteBuf keyBuf = encodeKey(key);
+        try {
+            return exists(options, keyBuf.array(), RocksDbCodec.offset(keyBuf), keyBuf.readableBytes());
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("can't check key", e);
+        } finally {
+            keyBuf.release();
         }
     }
 
     @Override
     public boolean containsValue(Object value) {
-        try (RocksIterator iter = db.newIterator()) {
+        try (RocksIterator iter = db.newIterator(dataColumn)) {
             iter.seekToFirst();
 
             while (iter.isValid()) {
-                if (value.equals(CorfuProtocolCommon.fromBuffer(iter.value(), valueType))) {
+                if (value.equals(codec.decode(iter.value(), valueType))) {
                     return true;
                 }
                 iter.next();
@@ -141,40 +521,370 @@ public class RocksDbMap<K, V> implements Map<K, V> {
 
     @Override
     public V get(Object key) {
+        return get(key, readOptions);
+    }
+
+    V get(Object key, ReadOptions options) {
+        ByteBuf keyBuf = encodeKey(key);
         try {
-            byte[] value = db.get(serialize(key));
-            if (value == null) {
-                return null;
+            return read(options, keyBuf);
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("can't get data", e);
+        } finally {
+            keyBuf.release();
+        }
+    }
+
+    /**
+     * Batched point lookup, all the keys are read by a single multiGet call instead of a JNI call per key.
+     * Missing keys are absent in the result.
+     *
+     * @param keys keys
+     * @return existing keys and their values
+     */
+    public Map<K, V> getAll(@NonNull Collection<? extends K> keys) {
+        if (keys.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        List<K> keyList = new ArrayList<>(keys);
+        List<byte[]> serializedKeys = new ArrayList<>(keyList.size());
+        for (K key : keyList) {
+            serializedKeys.add(serialize(key));
+        }
+
+        try {
+            List<ColumnFamilyHandle> columns = Collections.nCopies(keyList.size(), dataColumn);
+            List<byte[]> values = db.multiGetAsList(readOptions, columns, serializedKeys);
+
+            Map<K, V> result = new HashMap<>(keyList.size() * 4 / 3 + 1);
+            for (int i = 0; i < keyList.size(); i++) {
+                byte[] value = values.get(i);
+                if (value != null) {
+                    result.put(keyList.get(i), codec.decode(value, valueType));
+                }
             }
-            return CorfuProtocolCommon.fromBuffer(value, valueType);
+
+            return result;
         } catch (RocksDBException e) {
-            throw new IllegalStateException("can't put data", e);
+            throw new IllegalStateException("can't get data", e);
+        }
+    }
+
+    /**
+     * Read a value into a buffer provided by the codec, grow the buffer if the value doesn't fit.
+     */
+    private V read(ReadOptions options, ByteBuf keyBuf) throws RocksDBException {
+        ByteBuf valueBuf = codec.allocate(valueCapacity.get());
+        try {
+            while (true) {
+                int capacity = valueBuf.capacity();
+                int size = db.get(
+                        dataColumn, options,
+                        keyBuf.array(), RocksDbCodec.offset(keyBuf), keyBuf.readableBytes(),
+                        valueBuf.array(), valueBuf.arrayOffset(), capacity
+                );
+
+                if (size == RocksDB.NOT_FOUND) {
+                    return null;
+                }
+
+                if (size <= capacity) {
+                    valueBuf.writerIndex(size);
+                    return codec.decode(valueBuf, valueType);
+                }
+
+                valueCapacity.accumulateAndGet(size, Math::max);
+                valueBuf.capacity(size);
+            }
+        } finally {
+            valueBuf.release();
         }
     }
 
     @Override
     public V put(K key, V value) {
+        ByteBuf keyBuf = encodeKey(key);
+        ByteBuf valueBuf = codec.encode(value);
         try {
-            db.put(opts, serialize(key), serialize(value));
+            if (sizeMode != SizeMode.EXACT) {
+                write(keyBuf, valueBuf);
+                return value;
+            }
+
+            synchronized (keyCounter.lock(key)) {
+                if (exists(readOptions, keyBuf.array(), RocksDbCodec.offset(keyBuf), keyBuf.readableBytes())) {
+                    write(keyBuf, valueBuf);
+                    return value;
+                }
+
+                RocksDbWriteBuffers buffers = writeBuffers.get();
+                WriteBatch batch = buffers.batch();
+                batch.put(dataColumn, buffers.key(keyBuf), buffers.value(valueBuf));
+                keyCounter.update(batch, 1);
+                db.write(writeOptions, batch);
+                keyCounter.applied(1);
+            }
+
             return value;
         } catch (RocksDBException e) {
             throw new IllegalStateException("can't put data", e);
+        } finally {
+            keyBuf.release();
+            valueBuf.release();
+        }
+    }
+
+    private RocksDbWriteBuffers newWriteBuffers() {
+        RocksDbWriteBuffers buffers = new RocksDbWriteBuffers();
+        allWriteBuffers.add(buffers);
+        return buffers;
+    }
+
+    private void write(ByteBuf keyBuf, ByteBuf valueBuf) throws RocksDBException {
+        db.put(dataColumn, writeOptions,
+                keyBuf.array(), RocksDbCodec.offset(keyBuf), keyBuf.readableBytes(),
+                valueBuf.array(), RocksDbCodec.offset(valueBuf), valueBuf.readableBytes()
+        );
+    }
+
+    /**
+     * Check whether a key exists without copying its value
+     *
+     * @param key serialized key
+     * @return true if the key exists
+     * @throws RocksDBException db exception
+     */
+    boolean exists(byte[] key) throws RocksDBException {
+        return exists(readOptions, key, 0, key.length);
+    }
+
+    private boolean exists(ReadOptions options, byte[] key, int offset, int length) throws RocksDBException {
+        if (!mayExist(options, key, offset, length)) {
+            return false;
         }
 
+        return db.get(dataColumn, options, key, offset, length, EMPTY, 0, 0) != RocksDB.NOT_FOUND;
+    }
+
+    /**
+     * Checks memtables and filters without any disk reads. False means the key definitely doesn't exist,
+     * with a bloom filter a miss costs a single filter probe. Only worth it before a get that doesn't copy
+     * the value: a get of the value checks the filters itself, and a key found in a memtable or in the block cache
+     * gets its value copied into the holder.
+     */
+    private boolean mayExist(ReadOptions options, byte[] key, int offset, int length) {
+        StringBuilder holder = valueHolder.get();
+        holder.setLength(0);
+        return db.keyMayExist(options, dataColumn, key, offset, length, holder);
     }
 
+    /**
+     * Remove a key according to the removal policy of the map, a missing key is a no-op
+     *
+     * @param key key
+     * @return the previous value with {@link RemovalPolicy#RETURN_PREVIOUS}, null otherwise
+     */
     @Override
     public V remove(Object key) {
+        return removeKey(key, removalPolicy);
+    }
+
+    private V removeKey(Object key, RemovalPolicy policy) {
+        ByteBuf keyBuf = encodeKey(key);
+        try {
+            if (sizeMode != SizeMode.EXACT) {
+                return removeKey(keyBuf, policy);
+            }
+
+            synchronized (keyCounter.lock(key)) {
+                return removeKey(keyBuf, policy);
+            }
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("can't remove data", e);
+        } finally {
+            keyBuf.release();
+        }
+    }
+
+    /**
+     * Only {@link RemovalPolicy#RETURN_PREVIOUS} reads the value. The exact key counter needs to know whether
+     * the key exists, which costs a filter probe and a get that doesn't copy the value.
+     * Without the counter the read-free policies write the tombstone straight away.
+     */
+    private V removeKey(ByteBuf keyBuf, RemovalPolicy policy) throws RocksDBException {
+        byte[] key = keyBuf.array();
+        int offset = RocksDbCodec.offset(keyBuf);
+        int length = keyBuf.readableBytes();
+
+        V previous = null;
+        if (policy == RemovalPolicy.RETURN_PREVIOUS) {
+            previous = read(readOptions, keyBuf);
+            if (previous == null) {
+                return null;
+            }
+        } else if (sizeMode == SizeMode.EXACT && !exists(readOptions, key, offset, length)) {
+            return null;
+        }
+
+        if (sizeMode != SizeMode.EXACT) {
+            if (policy == RemovalPolicy.SINGLE_DELETE) {
+                db.singleDelete(dataColumn, writeOptions, writeBuffers.get().key(keyBuf));
+            } else {
+                db.delete(dataColumn, writeOptions, key, offset, length);
+            }
+            return previous;
+        }
+
+        RocksDbWriteBuffers buffers = writeBuffers.get();
+        WriteBatch batch = buffers.batch();
+        if (policy == RemovalPolicy.SINGLE_DELETE) {
+            batch.singleDelete(dataColumn, buffers.key(keyBuf));
+        } else {
+            batch.delete(dataColumn, buffers.key(keyBuf));
+        }
+        keyCounter.update(batch, -1);
+        db.write(writeOptions, batch);
+        keyCounter.applied(-1);
+
+        return previous;
+    }
+
+    /**
+     * Atomic read-modify-write with one read and one write batch, while the default implementation
+     * is a get followed by a put or a remove, each of which checks whether the key exists
+     * if the map maintains the exact size. Atomic with respect to other merges and, with the exact size,
+     * to all the writes of the key.
+     *
+     * @param key               key
+     * @param value             value to merge with the existing one
+     * @param remappingFunction merges the existing value with the given one, null - remove the key
+     * @return the new value or null if the key was removed
+     */
+    @Override
+    public V merge(K key, @NonNull V value, @NonNull BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        ByteBuf keyBuf = encodeKey(key);
+        try {
+            synchronized (keyCounter.lock(key)) {
+                V previous = read(readOptions, keyBuf);
+                V merged = previous == null ? value : remappingFunction.apply(previous, value);
+
+                if (merged != null) {
+                    writeMerged(keyBuf, merged, previous == null);
+                } else if (previous != null) {
+                    removeKey(keyBuf, RemovalPolicy.BLIND_DELETE);
+                }
+
+                return merged;
+            }
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("can't merge data", e);
+        } finally {
+            keyBuf.release();
+        }
+    }
+
+    private void writeMerged(ByteBuf keyBuf, V merged, boolean created) throws RocksDBException {
+        ByteBuf valueBuf = codec.encode(merged);
+        try {
+            if (sizeMode != SizeMode.EXACT || !created) {
+                write(keyBuf, valueBuf);
+                return;
+            }
+
+            RocksDbWriteBuffers buffers = writeBuffers.get();
+            WriteBatch batch = buffers.batch();
+            batch.put(dataColumn, buffers.key(keyBuf), buffers.value(valueBuf));
+            keyCounter.update(batch, 1);
+            db.write(writeOptions, batch);
+            keyCounter.applied(1);
+        } finally {
+            valueBuf.release();
+        }
+    }
+
+    /**
+     * Add a delta to a counter, a missing counter starts from 0. Write-only: the delta is written
+     * as a uint64add merge operand and RocksDb sums the operands on reads and compactions.
+     * Counters are kept apart from the map entries: they are not counted by {@link #size()},
+     * not visible to get and iteration and not removed by {@link #clear()}.
+     *
+     * @param key   counter key
+     * @param delta counter change, may be negative
+     */
+    public void increment(K key, long delta) {
+        try {
+            db.merge(metaColumn, writeOptions, counterKey(key), RocksDbKeyCounter.encode(delta));
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("can't update counter", e);
+        }
+    }
+
+    /**
+     * Value of a counter, see {@link #increment(Object, long)}
+     *
+     * @param key counter key
+     * @return counter value, 0 if the counter doesn't exist
+     */
+    public long getCounter(K key) {
+        try {
+            byte[] value = db.get(metaColumn, readOptions, counterKey(key));
+            return value == null ? 0 : RocksDbKeyCounter.decode(value);
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("can't get counter", e);
+        }
+    }
+
+    /**
+     * Overwrite a counter, see {@link #increment(Object, long)}
+     *
+     * @param key   counter key
+     * @param value counter value
+     */
+    public void setCounter(K key, long value) {
         try {
-            byte[] serializedKey = serialize(key);
-            byte[] value = db.get(serializedKey);
-            db.delete(serializedKey);
-            return CorfuProtocolCommon.fromBuffer(value, valueType);
+            db.put(metaColumn, writeOptions, counterKey(key), RocksDbKeyCounter.encode(value));
         } catch (RocksDBException e) {
-            throw new IllegalStateException("Error", e);
+            throw new IllegalStateException("can't set counter", e);
         }
     }
 
+    /**
+     * Remove a counter, see {@link #increment(Object, long)}
+     *
+     * @param key counter key
+     */
+    public void removeCounter(K key) {
+        try {
+            db.delete(metaColumn, writeOptions, counterKey(key));
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("can't remove counter", e);
+        }
+    }
+
+    private byte[] counterKey(Object key) {
+        ByteBuf keyBuf = encodeKey(key);
+        try {
+            byte[] counterKey = Arrays.copyOf(counterPrefix, counterPrefix.length + keyBuf.readableBytes());
+            keyBuf.getBytes(keyBuf.readerIndex(), counterKey, counterPrefix.length, keyBuf.readableBytes());
+            return counterKey;
+        } finally {
+            keyBuf.release();
+        }
+    }
+
+    /**
+     * Encode a key with the key encoder if the map has one, otherwise serialize it with the codec.
+     * The caller must release the buffer.
+     */
+    private ByteBuf encodeKey(Object key) {
+        if (keyEncoder == null) {
+            return codec.encode(key);
+        }
+
+        return Unpooled.wrappedBuffer(keyEncoder.encode(keyType.cast(key)));
+    }
+
     /**
      * Serialize a key into a byte array
      *
@@ -182,60 +892,498 @@ public class RocksDbMap<K, V> implements Map<K, V> {
      * @return byte array
      */
     public byte[] serialize(Object key) {
-        ByteBuf buffer = Unpooled.buffer();
-        CorfuProtocolCommon.serialize(buffer, key);
-        return buffer.array();
+        ByteBuf buffer = encodeKey(key);
+        try {
+            return ByteBufUtil.getBytes(buffer);
+        } finally {
+            buffer.release();
+        }
     }
 
+    /**
+     * Write all the entries in batches, according to the bulk load configuration of the map
+     *
+     * @param map entries
+     */
     @Override
     public void putAll(Map<? extends K, ? extends V> map) {
-        map.forEach(this::put);
+        try (RocksDbBulkWriter<K, V> writer = bulkWriter()) {
+            writer.putAll(map);
+        }
+    }
+
+    /**
+     * Create a bulk writer with the bulk load configuration of the map
+     *
+     * @return bulk writer
+     */
+    public RocksDbBulkWriter<K, V> bulkWriter() {
+        return bulkWriter(bulkLoadMode, batchSizeEntries, batchSizeBytes);
+    }
+
+    /**
+     * Create a bulk writer
+     *
+     * @param mode       the way batches get into the database
+     * @param maxEntries max number of entries in a batch
+     * @param maxBytes   max size of a batch in bytes
+     * @return bulk writer
+     */
+    public RocksDbBulkWriter<K, V> bulkWriter(BulkLoadMode mode, int maxEntries, long maxBytes) {
+        return new RocksDbBulkWriter<>(this, mode, maxEntries, maxBytes);
     }
 
+    /**
+     * Delete all the keys, see {@link ClearMode}. The map stays open.
+     * Keys written concurrently with the clear may or may not survive it, except for {@link ClearMode#DROP_COLUMN}
+     * which must not run concurrently with other operations of the map.
+     */
     @Override
     public void clear() {
         try {
-            db.close();
-            RocksDB.destroyDB(dbPath.toString(), options);
+            switch (getClearMode()) {
+                case DELETE_RANGE:
+                    deleteRange();
+                    break;
+                case DROP_COLUMN:
+                    dropColumn();
+                    break;
+                case DELETE_KEYS:
+                    deleteKeys();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown clear mode: " + clearMode);
+            }
+
+            if (sizeMode == SizeMode.EXACT) {
+                keyCounter.reset(db);
+            }
         } catch (RocksDBException e) {
-            throw new IllegalStateException("yay");
+            throw new IllegalStateException("Can't clear the map", e);
         }
     }
 
-    @Override
-    public Set<K> keySet() {
-        try (RocksIterator iter = db.newIterator()) {
-            iter.seekToFirst();
+    /**
+     * Clear mode of the map: the configured one, otherwise dropping the column family for a table
+     * in a shared database, a range delete for block based tables and deleting the keys for plain tables
+     *
+     * @return clear mode
+     */
+    public ClearMode getClearMode() {
+        if (clearMode != null) {
+            return clearMode;
+        }
 
-            Set<K> keySet = new HashSet<>();
-            while (iter.isValid()) {
-                keySet.add(CorfuProtocolCommon.fromBuffer(iter.key(), keyType));
-                iter.next();
+        if (factory != null) {
+            return ClearMode.DROP_COLUMN;
+        }
+
+        return isRangeScanSupported() ? ClearMode.DELETE_RANGE : ClearMode.DELETE_KEYS;
+    }
+
+    /**
+     * Range tombstone from the empty key to the successor of the last key
+     */
+    private void deleteRange() throws RocksDBException {
+        byte[] end;
+        try (RocksIterator iter = db.newIterator(dataColumn)) {
+            iter.seekToLast();
+            if (!iter.isValid()) {
+                iter.status();
+                return;
             }
 
-            return keySet;
+            end = Arrays.copyOf(iter.key(), iter.key().length + 1);
         }
+
+        db.deleteRange(dataColumn, writeOptions, EMPTY, end);
     }
 
-    @Override
-    public Collection<V> values() {
-        List<V> result = new ArrayList<>();
+    /**
+     * Switch the map to a new column family and close the handle of the dropped one,
+     * RocksDb deletes the data files of a dropped column family only once its last handle is closed.
+     * Iterators opened before the switch keep the dropped data until they are closed.
+     */
+    private synchronized void dropColumn() throws RocksDBException {
+        ColumnFamilyHandle dropped = dataColumn;
+        dataColumn = factory.recreate(table);
+        dropped.close();
+    }
+
+    private void deleteKeys() throws RocksDBException {
+        try (RocksIterator iter = db.newIterator(dataColumn);
+             WriteBatch batch = new WriteBatch()) {
 
-        try (RocksIterator iter = db.newIterator()) {
             iter.seekToFirst();
             while (iter.isValid()) {
-                V value = CorfuProtocolCommon.fromBuffer(iter.value(), valueType);
-                result.add(value);
+                batch.delete(dataColumn, iter.key());
+                if (batch.count() >= batchSizeEntries) {
+                    db.write(writeOptions, batch);
+                    batch.clear();
+                }
                 iter.next();
             }
+            iter.status();
+
+            if (batch.count() > 0) {
+                db.write(writeOptions, batch);
+            }
         }
+    }
+
+    /**
+     * Lazy view of the keys, see {@link #entrySet()}
+     *
+     * @return keys
+     */
+    @Override
+    public Set<K> keySet() {
+        return new AbstractSet<K>() {
+            @Override
+            public Iterator<K> iterator() {
+                return Spliterators.iterator(spliterator());
+            }
+
+            @Override
+            public RocksDbSpliterator<K> spliterator() {
+                return new RocksDbSpliterator<>(RocksDbMap.this, RocksDbMap.this::readKey, Spliterator.DISTINCT);
+            }
+
+            @Override
+            public Stream<K> stream() {
+                return RocksDbMap.stream(spliterator(), false);
+            }
+
+            @Override
+            public Stream<K> parallelStream() {
+                return RocksDbMap.stream(spliterator(), true);
+            }
+
+            @Override
+            public int size() {
+                return RocksDbMap.this.size();
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return containsKey(key);
+            }
+        };
+    }
+
+    /**
+     * Lazy view of the values, see {@link #entrySet()}
+     *
+     * @return values
+     */
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return Spliterators.iterator(spliterator());
+            }
+
+            @Override
+            public RocksDbSpliterator<V> spliterator() {
+                return new RocksDbSpliterator<>(RocksDbMap.this, RocksDbMap.this::readValue, 0);
+            }
+
+            @Override
+            public Stream<V> stream() {
+                return RocksDbMap.stream(spliterator(), false);
+            }
 
-        return result;
+            @Override
+            public Stream<V> parallelStream() {
+                return RocksDbMap.stream(spliterator(), true);
+            }
+
+            @Override
+            public int size() {
+                return RocksDbMap.this.size();
+            }
+
+            @Override
+            public boolean contains(Object value) {
+                return containsValue(value);
+            }
+        };
     }
 
+    /**
+     * Lazy read-only view of the entries, entries are read from the database and deserialized on demand.
+     * An iterator releases its native iterator when it's exhausted, a stream also when it's closed,
+     * so a stream that may stop early (findFirst, limit, etc.) has to be closed.
+     * Parallel streams split the key range, see {@link RocksDbSpliterator}.
+     *
+     * @return entries
+     */
     @Override
     public Set<Entry<K, V>> entrySet() {
-        throw new IllegalStateException("yay");
+        return entrySet(readOptions);
+    }
+
+    /**
+     * Lazy view of the entries read with the given options, e.g. at a snapshot
+     */
+    Set<Entry<K, V>> entrySet(ReadOptions options) {
+        return new EntryView(options, null, null);
+    }
+
+    /**
+     * Lazy read-only view of the entries with keys in [from, to), backed by the map.
+     * Requires an order-preserving key encoder and a table format that supports range scans.
+     * Scans use {@link #readaheadSize} and the encoded boundary keys as iterate bounds,
+     * so the database doesn't read past the range.
+     *
+     * @param from inclusive lower bound, null - from the first key
+     * @param to   exclusive upper bound, null - up to the last key
+     * @return entries of the range
+     */
+    public Map<K, V> subMap(K from, K to) {
+        if (keyEncoder == null) {
+            throw new IllegalStateException("Range scans require an order-preserving key encoder");
+        }
+
+        if (!isRangeScanSupported()) {
+            throw new IllegalStateException("Range scans are not supported by the table format");
+        }
+
+        byte[] lower = from == null ? null : keyEncoder.encode(from);
+        byte[] upper = to == null ? null : keyEncoder.encode(to);
+        EntryView entries = new EntryView(readOptions, lower, upper);
+
+        return new AbstractMap<K, V>() {
+            @Override
+            public Set<Entry<K, V>> entrySet() {
+                return entries;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return entries.inRange(key) && RocksDbMap.this.containsKey(key);
+            }
+
+            @Override
+            public V get(Object key) {
+                return entries.inRange(key) ? RocksDbMap.this.get(key) : null;
+            }
+        };
+    }
+
+    /**
+     * Stream of the entries with keys in [from, to), see {@link #subMap(Object, Object)}.
+     * The stream has to be closed.
+     *
+     * @param from inclusive lower bound, null - from the first key
+     * @param to   exclusive upper bound, null - up to the last key
+     * @return entries of the range
+     */
+    public Stream<Entry<K, V>> range(K from, K to) {
+        return subMap(from, to).entrySet().stream();
+    }
+
+    /**
+     * Lazy read-only view of the entries in a key range, entries are read from the database
+     * and deserialized on demand. An iterator releases its native iterator when it's exhausted,
+     * a stream also when it's closed, so a stream that may stop early (findFirst, limit, etc.) has to be closed.
+     * Parallel streams split the key range, see {@link RocksDbSpliterator}.
+     */
+    private class EntryView extends AbstractSet<Entry<K, V>> {
+
+        private final ReadOptions options;
+
+        /**
+         * Encoded bounds of the range, null - unbounded
+         */
+        private final byte[] lower;
+        private final byte[] upper;
+
+        EntryView(ReadOptions options, byte[] lower, byte[] upper) {
+            this.options = options;
+            this.lower = lower;
+            this.upper = upper;
+        }
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return Spliterators.iterator(spliterator());
+        }
+
+        @Override
+        public RocksDbSpliterator<Entry<K, V>> spliterator() {
+            return new RocksDbSpliterator<>(
+                    RocksDbMap.this, options, RocksDbMap.this::readEntry, Spliterator.DISTINCT, lower, upper
+            );
+        }
+
+        @Override
+        public Stream<Entry<K, V>> stream() {
+            return RocksDbMap.stream(spliterator(), false);
+        }
+
+        @Override
+        public Stream<Entry<K, V>> parallelStream() {
+            return RocksDbMap.stream(spliterator(), true);
+        }
+
+        /**
+         * The size of the whole map is O(1) in exact size mode, the size of a range or a snapshot is always a scan
+         */
+        @Override
+        public int size() {
+            if (options == readOptions && lower == null && upper == null) {
+                return RocksDbMap.this.size();
+            }
+
+            try (Stream<Entry<K, V>> entries = stream()) {
+                return (int) Math.min(entries.count(), Integer.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public boolean contains(Object obj) {
+            if (!(obj instanceof Entry)) {
+                return false;
+            }
+
+            Entry<?, ?> entry = (Entry<?, ?>) obj;
+            if (!inRange(entry.getKey())) {
+                return false;
+            }
+
+            V value = RocksDbMap.this.get(entry.getKey(), options);
+            return value != null && value.equals(entry.getValue());
+        }
+
+        boolean inRange(Object key) {
+            if (lower == null && upper == null) {
+                return true;
+            }
+
+            if (!keyType.isInstance(key)) {
+                return false;
+            }
+
+            byte[] encoded = keyEncoder.encode(keyType.cast(key));
+            return (lower == null || RocksDbBulkWriter.compareBytes(lower, encoded) <= 0)
+                    && (upper == null || RocksDbBulkWriter.compareBytes(encoded, upper) < 0);
+        }
+    }
+
+    private static <T> Stream<T> stream(RocksDbSpliterator<T> spliterator, boolean parallel) {
+        return StreamSupport.stream(spliterator, parallel).onClose(spliterator::close);
+    }
+
+    private K readKey(RocksIterator iter) {
+        if (keyEncoder == null) {
+            return CorfuProtocolCommon.fromBuffer(iter.key(), keyType);
+        }
+
+        return keyEncoder.decode(iter.key());
+    }
+
+    private V readValue(RocksIterator iter) {
+        return codec.decode(iter.value(), valueType);
+    }
+
+    private Entry<K, V> readEntry(RocksIterator iter) {
+        return new SimpleImmutableEntry<>(readKey(iter), readValue(iter));
+    }
+
+    /**
+     * Number of keys for spliterators: exact if the map maintains the counter, the rocksdb estimate otherwise
+     *
+     * @return number of keys
+     */
+    long estimateSize() {
+        if (sizeMode == SizeMode.EXACT) {
+            return keyCounter.get();
+        }
+
+        try {
+            return db.getLongProperty(dataColumn, "rocksdb.estimate-num-keys");
+        } catch (RocksDBException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Key range scans need total order seek, which plain table format doesn't support
+     *
+     * @return true if the map can be scanned by key ranges
+     */
+    boolean isRangeScanSupported() {
+        return !(options.tableFormatConfig() instanceof PlainTableConfig);
+    }
+
+    /**
+     * Pin the current state of the map as the state at a version. If the version already has a live snapshot,
+     * the snapshot is shared, otherwise a new RocksDb snapshot is taken, so the caller has to make sure
+     * the map is at the version, e.g. take the snapshot right after applying the updates of the version.
+     * The snapshot has to be closed.
+     *
+     * @param version version
+     * @return snapshot
+     */
+    public RocksDbSnapshot<K, V> snapshot(long version) {
+        return snapshots.acquire(version);
+    }
+
+    /**
+     * Acquire the live snapshot of a version for reading, the snapshot has to be closed
+     *
+     * @param version version
+     * @return snapshot or empty if the version doesn't have a live snapshot
+     */
+    public Optional<RocksDbSnapshot<K, V>> snapshotAt(long version) {
+        return snapshots.acquireExisting(version);
+    }
+
+    /**
+     * Number of versions with a live snapshot
+     *
+     * @return live snapshots
+     */
+    public int getLiveSnapshots() {
+        return snapshots.size();
+    }
+
+    /**
+     * Exact size counter of the map, null if the map doesn't maintain it
+     *
+     * @return key counter
+     */
+    RocksDbKeyCounter getKeyCounter() {
+        return sizeMode == SizeMode.EXACT ? keyCounter : null;
+    }
+
+    /**
+     * Statistics collected since the last reset
+     *
+     * @return statistics snapshot
+     * @throws RocksDBException db exception
+     */
+    public RocksDbStatistics getStatistics() throws RocksDBException {
+        if (statistics == null) {
+            throw new IllegalStateException("Statistics are disabled");
+        }
+
+        return RocksDbStatistics.of(statistics, db, dataColumn);
+    }
+
+    /**
+     * Reset tickers and histograms
+     *
+     * @throws RocksDBException db exception
+     */
+    public void resetStatistics() throws RocksDBException {
+        if (statistics == null) {
+            throw new IllegalStateException("Statistics are disabled");
+        }
+
+        statistics.reset();
     }
 
     /**
@@ -0,0 +1,304 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.rocksdb;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Builder.Default;
+import lombok.Getter;
+import lombok.NonNull;
+import org.corfudb.benchmarks.runtime.collections.experiment.rocksdb.RocksDbMap.RocksDbMapBuilder;
+import org.rocksdb.AbstractNativeReference;
+import org.rocksdb.Cache;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.DBOptions;
+import org.rocksdb.LRUCache;
+import org.rocksdb.MemoryUsageType;
+import org.rocksdb.MemoryUtil;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.Statistics;
+import org.rocksdb.WriteBufferManager;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Hosts many {@link RocksDbMap}s in one RocksDb database, every map (table) is a column family.
+ * The tables share the block cache and the background threads. Memtables of all the tables are charged
+ * to the block cache by a write buffer manager, which flushes memtables once the write buffer budget
+ * is exceeded, so the memory of the database is bounded by the block cache size
+ * no matter how many tables are open.
+ * <p>
+ * Size counters of the tables are kept in the shared metadata column family, one key per table.
+ */
+@Builder
+public class RocksDbMapFactory implements AutoCloseable {
+
+    static {
+        RocksDB.loadLibrary();
+    }
+
+    private static final long MB = 1024 * 1024;
+
+    private static final String TABLE_PREFIX = "table:";
+
+    @NonNull
+    @Getter
+    private final Path dbPath;
+
+    /**
+     * Block cache shared by all the tables, bounds the memory of block cache and memtables
+     */
+    @Default
+    private final long blockCacheSize = 512 * MB;
+
+    /**
+     * Memtable memory of all the tables, charged to the block cache
+     */
+    @Default
+    private final long writeBufferBudget = 256 * MB;
+
+    /**
+     * Memtable size of a table
+     */
+    @Default
+    private final long tableWriteBufferSize = 16 * MB;
+
+    @Default
+    private final boolean statisticsEnabled = false;
+
+    @Getter(AccessLevel.PACKAGE)
+    private RocksDB db;
+
+    /**
+     * The default column family is not used by the tables, but it always exists
+     */
+    private ColumnFamilyHandle defaultColumn;
+
+    @Getter(AccessLevel.PACKAGE)
+    private ColumnFamilyHandle metaColumn;
+
+    @Getter(AccessLevel.PACKAGE)
+    private Statistics statistics;
+
+    private Cache blockCache;
+
+    /**
+     * Options of the tables, see {@link RocksDbOptions#sharedTable(Cache, long)}
+     */
+    private Options tableOptions;
+    private ColumnFamilyOptions columnOptions;
+
+    /**
+     * Column families of all the tables of the database, open or not
+     */
+    private final Map<String, ColumnFamilyHandle> columns = new HashMap<>();
+
+    /**
+     * Tables with an open map
+     */
+    private final Set<String> openTables = new HashSet<>();
+
+    private final List<AbstractNativeReference> resources = new ArrayList<>();
+
+    /**
+     * Open the database with the column families of all the existing tables
+     *
+     * @return the factory
+     * @throws RocksDBException db exception
+     */
+    public RocksDbMapFactory init() throws RocksDBException {
+        blockCache = new LRUCache(blockCacheSize);
+        WriteBufferManager writeBufferManager = new WriteBufferManager(writeBufferBudget, blockCache);
+        tableOptions = RocksDbOptions.sharedTable(blockCache, tableWriteBufferSize);
+        columnOptions = new ColumnFamilyOptions(tableOptions);
+        ColumnFamilyOptions metaOptions = RocksDbOptions.metadataColumnFamilyOptions();
+
+        DBOptions dbOptions = new DBOptions(tableOptions)
+                .setCreateMissingColumnFamilies(true)
+                .setWriteBufferManager(writeBufferManager);
+
+        if (statisticsEnabled) {
+            statistics = new Statistics();
+            dbOptions.setStatistics(statistics);
+        }
+
+        // options reference the cache and the write buffer manager, release them first
+        resources.addAll(Arrays.asList(dbOptions, tableOptions, columnOptions, metaOptions, writeBufferManager));
+        if (statistics != null) {
+            resources.add(statistics);
+        }
+        resources.add(blockCache);
+
+        List<ColumnFamilyDescriptor> descriptors = new ArrayList<>(Arrays.asList(
+                new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, columnOptions),
+                new ColumnFamilyDescriptor(RocksDbMap.METADATA_COLUMN_FAMILY, metaOptions)
+        ));
+        List<String> tables = listTables();
+        tables.forEach(table -> descriptors.add(new ColumnFamilyDescriptor(columnName(table), columnOptions)));
+
+        List<ColumnFamilyHandle> handles = new ArrayList<>();
+        db = RocksDB.open(dbOptions, dbPath.toString(), descriptors, handles);
+
+        defaultColumn = handles.get(0);
+        metaColumn = handles.get(1);
+        for (int i = 0; i < tables.size(); i++) {
+            columns.put(tables.get(i), handles.get(i + 2));
+        }
+
+        return this;
+    }
+
+    private List<String> listTables() throws RocksDBException {
+        if (!Files.exists(dbPath.resolve("CURRENT"))) {
+            return Collections.emptyList();
+        }
+
+        List<String> tables = new ArrayList<>();
+        for (byte[] column : RocksDB.listColumnFamilies(tableOptions, dbPath.toString())) {
+            String name = new String(column, StandardCharsets.UTF_8);
+            if (name.startsWith(TABLE_PREFIX)) {
+                tables.add(name.substring(TABLE_PREFIX.length()));
+            }
+        }
+
+        return tables;
+    }
+
+    private static byte[] columnName(String table) {
+        return (TABLE_PREFIX + table).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Builder of a map stored in a table of the database, the table is created when the map gets initialized.
+     * The map uses the shared table options and statistics of the factory.
+     *
+     * @param table     table name
+     * @param keyType   key type
+     * @param valueType value type
+     * @param <K>       key type
+     * @param <V>       value type
+     * @return map builder
+     */
+    public <K, V> RocksDbMapBuilder<K, V> map(@NonNull String table, Class<K> keyType, Class<V> valueType) {
+        return RocksDbMap.<K, V>builder()
+                .factory(this)
+                .table(table)
+                .keyType(keyType)
+                .valueType(valueType)
+                .dbPath(dbPath)
+                .options(tableOptions);
+    }
+
+    /**
+     * Column family of a table, created if the table doesn't exist. A table can be open by one map at a time.
+     *
+     * @param table table name
+     * @return column family handle
+     * @throws RocksDBException db exception
+     */
+    synchronized ColumnFamilyHandle attach(String table) throws RocksDBException {
+        if (db == null) {
+            throw new IllegalStateException("The factory is not initialized");
+        }
+
+        if (!openTables.add(table)) {
+            throw new IllegalStateException("Table is already open: " + table);
+        }
+
+        ColumnFamilyHandle column = columns.get(table);
+        if (column == null) {
+            try {
+                column = db.createColumnFamily(new ColumnFamilyDescriptor(columnName(table), columnOptions));
+            } catch (RocksDBException e) {
+                openTables.remove(table);
+                throw e;
+            }
+            columns.put(table, column);
+        }
+
+        return column;
+    }
+
+    /**
+     * Drop the column family of a table and create an empty one instead.
+     * The map closes the handle of the dropped column family once it switched to the new one.
+     *
+     * @param table table name
+     * @return column family handle of the new table
+     * @throws RocksDBException db exception
+     */
+    synchronized ColumnFamilyHandle recreate(String table) throws RocksDBException {
+        ColumnFamilyHandle dropped = columns.remove(table);
+        db.dropColumnFamily(dropped);
+
+        ColumnFamilyHandle column = db.createColumnFamily(new ColumnFamilyDescriptor(columnName(table), columnOptions));
+        columns.put(table, column);
+
+        return column;
+    }
+
+    /**
+     * Mark the table closed, the column family stays open until the factory is closed
+     *
+     * @param table table name
+     */
+    synchronized void detach(String table) {
+        openTables.remove(table);
+    }
+
+    /**
+     * Names of all the tables in the database
+     *
+     * @return table names
+     */
+    public synchronized Set<String> getTables() {
+        return new TreeSet<>(columns.keySet());
+    }
+
+    /**
+     * Approximate native memory usage of the database: memtables, table readers (indexes and filters
+     * that are not in the block cache) and the block cache, which includes the memtables charged to it
+     *
+     * @return memory usage by type
+     */
+    public Map<MemoryUsageType, Long> getMemoryUsage() {
+        return MemoryUtil.getApproximateMemoryUsageByType(
+                Collections.singletonList(db), Collections.singleton(blockCache)
+        );
+    }
+
+    /**
+     * Close the database and release native resources. Maps created by the factory can't be used after that.
+     */
+    @Override
+    public synchronized void close() {
+        if (db == null) {
+            return;
+        }
+
+        columns.values().forEach(AbstractNativeReference::close);
+        columns.clear();
+        metaColumn.close();
+        defaultColumn.close();
+        openTables.clear();
+
+        db.close();
+        db = null;
+
+        resources.forEach(AbstractNativeReference::close);
+        resources.clear();
+    }
+}
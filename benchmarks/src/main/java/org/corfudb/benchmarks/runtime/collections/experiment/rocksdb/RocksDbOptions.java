@@ -0,0 +1,243 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.rocksdb;
+
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.Cache;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.CompressionType;
+import org.rocksdb.DataBlockIndexType;
+import org.rocksdb.IndexType;
+import org.rocksdb.LRUCache;
+import org.rocksdb.Options;
+import org.rocksdb.PlainTableConfig;
+import org.rocksdb.RateLimiter;
+import org.rocksdb.UInt64AddOperator;
+
+/**
+ * RocksDb option sets used by {@link RocksDbMap}
+ */
+public final class RocksDbOptions {
+
+    private static final long KB = 1024;
+    private static final long MB = 1024 * KB;
+    private static final long GB = 1024 * MB;
+
+    private static final long WRITE_BUFFER_SIZE = 256 * MB;
+    private static final long BLOCK_CACHE_SIZE = 256 * MB;
+    private static final int BLOOM_BITS_PER_KEY = 10;
+
+    private RocksDbOptions() {
+        //prevent creating instances
+    }
+
+    /**
+     * Plain table format, the default RocksDbMap configuration.
+     * Plain tables are memory-mapped and optimized for point lookups, but don't support sst file ingestion.
+     *
+     * @return db options
+     */
+    public static Options plainTable() {
+        return baseOptions()
+                //.setBloomLocality(10)
+
+                //.setOptimizeFiltersForHits(true)
+
+                //.setCompactionStyle(CompactionStyle.LEVEL)
+                //.setCompressionType(CompressionType.NO_COMPRESSION)
+
+                //.setMemTableConfig(new SkipListMemTableConfig())
+
+                .useCappedPrefixExtractor(64)
+                .setMemtablePrefixBloomSizeRatio(0.1)
+                .setTableFormatConfig(new PlainTableConfig());
+    }
+
+    /**
+     * Block based table format with an LRU block cache and a whole key bloom filter
+     *
+     * @return db options
+     */
+    public static Options blockBasedTable() {
+        return blockBasedTable(BLOOM_BITS_PER_KEY, true);
+    }
+
+    /**
+     * Block based table format with an LRU block cache and a configurable bloom filter.
+     * A full (not block based) filter is used, so a lookup of a missing key costs one filter probe per sst file.
+     *
+     * @param bloomBitsPerKey   bloom filter bits per key, 10 bits give ~1% false positive rate, 0 - no filter
+     * @param wholeKeyFiltering put whole keys into the filter, needed for point lookups
+     * @return db options
+     */
+    public static Options blockBasedTable(int bloomBitsPerKey, boolean wholeKeyFiltering) {
+        return baseOptions().setTableFormatConfig(blockBasedTableConfig(bloomBitsPerKey, wholeKeyFiltering));
+    }
+
+    /**
+     * {@link RocksDbProfile#POINT_LOOKUP}: small blocks with a hash index inside every data block,
+     * so a get reads little data and finds the key in a block without a binary search.
+     *
+     * @return db options
+     */
+    public static Options pointLookup() {
+        BlockBasedTableConfig tableConfig = blockBasedTableConfig(BLOOM_BITS_PER_KEY, true)
+                .setBlockSize(4 * KB)
+                .setDataBlockIndexType(DataBlockIndexType.kDataBlockBinaryAndHash);
+
+        return baseOptions()
+                .setTableFormatConfig(tableConfig)
+                .setLevelCompactionDynamicLevelBytes(true);
+    }
+
+    /**
+     * {@link RocksDbProfile#SCAN_HEAVY}: big compressed blocks and no filter, scans don't use filters
+     * and read fewer, bigger blocks.
+     *
+     * @return db options
+     */
+    public static Options scanHeavy() {
+        BlockBasedTableConfig tableConfig = blockBasedTableConfig(0, true)
+                .setBlockSize(64 * KB);
+
+        return baseOptions()
+                .setTableFormatConfig(tableConfig)
+                .setCompressionType(CompressionType.LZ4_COMPRESSION)
+                .setLevelCompactionDynamicLevelBytes(true)
+                .setCompactionReadaheadSize(2 * MB);
+    }
+
+    /**
+     * {@link RocksDbProfile#WRITE_HEAVY}: more memtables merged before flush, a higher L0 compaction trigger,
+     * bigger files and pipelined writes. Trades read amplification for fewer write stalls.
+     *
+     * @return db options
+     */
+    public static Options writeHeavy() {
+        return baseOptions()
+                .setTableFormatConfig(blockBasedTableConfig(BLOOM_BITS_PER_KEY, true))
+                .setMaxWriteBufferNumber(6)
+                .setMinWriteBufferNumberToMerge(2)
+                .setLevel0FileNumCompactionTrigger(8)
+                .setLevel0SlowdownWritesTrigger(32)
+                .setLevel0StopWritesTrigger(64)
+                .setTargetFileSizeBase(256 * MB)
+                .setMaxBytesForLevelBase(GB)
+                .setMaxBackgroundJobs(8)
+                .setBytesPerSync(MB)
+                .setEnablePipelinedWrite(true);
+    }
+
+    /**
+     * {@link RocksDbProfile#LOW_MEMORY}: small memtables and block cache. Index and filter blocks are
+     * partitioned and kept in the block cache, so their memory is bounded by the cache size too.
+     *
+     * @return db options
+     */
+    public static Options lowMemory() {
+        BlockBasedTableConfig tableConfig = new BlockBasedTableConfig()
+                .setBlockCache(new LRUCache(16 * MB))
+                .setCacheIndexAndFilterBlocks(true)
+                .setCacheIndexAndFilterBlocksWithHighPriority(true)
+                .setPinL0FilterAndIndexBlocksInCache(true)
+                .setFilterPolicy(new BloomFilter(BLOOM_BITS_PER_KEY, false))
+                .setPartitionFilters(true)
+                .setIndexType(IndexType.kTwoLevelIndexSearch)
+                .setMetadataBlockSize(4 * KB);
+
+        return baseOptions()
+                .setTableFormatConfig(tableConfig)
+                .setWriteBufferSize(16 * MB)
+                .setMaxWriteBufferNumber(2)
+                .setMaxOpenFiles(256)
+                .setCompressionType(CompressionType.LZ4_COMPRESSION);
+    }
+
+    /**
+     * Block based table format tuned to reach compactions of all the levels within minutes of sustained writes:
+     * smaller memtables, files and levels. Background io is shaped by the parameters.
+     *
+     * @param rateLimitBytesPerSecond flush and compaction write rate limit, 0 - unlimited
+     * @param directIo                bypass the page cache for reads, flushes and compactions
+     * @param maxBackgroundJobs       max number of concurrent flushes and compactions
+     * @return db options
+     */
+    public static Options sustainedWrite(long rateLimitBytesPerSecond, boolean directIo, int maxBackgroundJobs) {
+        Options options = baseOptions()
+                .setTableFormatConfig(blockBasedTableConfig(BLOOM_BITS_PER_KEY, true))
+                .setWriteBufferSize(64 * MB)
+                .setMaxWriteBufferNumber(3)
+                .setLevel0FileNumCompactionTrigger(4)
+                .setTargetFileSizeBase(64 * MB)
+                .setMaxBytesForLevelBase(256 * MB)
+                .setMaxBackgroundJobs(maxBackgroundJobs)
+                .setUseDirectReads(directIo)
+                .setUseDirectIoForFlushAndCompaction(directIo);
+
+        if (rateLimitBytesPerSecond > 0) {
+            options.setRateLimiter(new RateLimiter(rateLimitBytesPerSecond));
+        }
+
+        return options;
+    }
+
+    /**
+     * Column family options of the tables of a {@link RocksDbMapFactory}: small memtables and a block cache
+     * shared by all the tables. Index and filter blocks are kept in the block cache,
+     * otherwise their memory grows with the number of tables.
+     *
+     * @param blockCache      shared block cache
+     * @param writeBufferSize memtable size of a table
+     * @return db options
+     */
+    public static Options sharedTable(Cache blockCache, long writeBufferSize) {
+        BlockBasedTableConfig tableConfig = blockBasedTableConfig(blockCache, BLOOM_BITS_PER_KEY, true)
+                .setCacheIndexAndFilterBlocks(true);
+
+        return new Options()
+                .setCreateIfMissing(true)
+                .setTableFormatConfig(tableConfig)
+                .setWriteBufferSize(writeBufferSize)
+                .setMaxWriteBufferNumber(2)
+                .setIncreaseParallelism(8);
+    }
+
+    /**
+     * Table config shared by the block based option sets
+     */
+    private static BlockBasedTableConfig blockBasedTableConfig(int bloomBitsPerKey, boolean wholeKeyFiltering) {
+        return blockBasedTableConfig(new LRUCache(BLOCK_CACHE_SIZE), bloomBitsPerKey, wholeKeyFiltering);
+    }
+
+    private static BlockBasedTableConfig blockBasedTableConfig(Cache blockCache, int bloomBitsPerKey,
+                                                               boolean wholeKeyFiltering) {
+        BlockBasedTableConfig tableConfig = new BlockBasedTableConfig()
+                .setPinL0FilterAndIndexBlocksInCache(true)
+                //.setCacheIndexAndFilterBlocks(true) //- huge performance degradation
+                .setCacheIndexAndFilterBlocksWithHighPriority(true)
+                .setBlockCache(blockCache)
+                .setWholeKeyFiltering(wholeKeyFiltering);
+
+        if (bloomBitsPerKey > 0) {
+            tableConfig.setFilterPolicy(new BloomFilter(bloomBitsPerKey, false));
+        }
+
+        return tableConfig;
+    }
+
+    /**
+     * Metadata column family keeps map counters, values are 64 bit integers updated with uint64add merge operator
+     *
+     * @return column family options
+     */
+    public static ColumnFamilyOptions metadataColumnFamilyOptions() {
+        return new ColumnFamilyOptions().setMergeOperator(new UInt64AddOperator());
+    }
+
+    private static Options baseOptions() {
+        return new Options()
+                .setCreateIfMissing(true)
+                .setWriteBufferSize(WRITE_BUFFER_SIZE)
+                .setMaxWriteBufferNumber(4)
+                .setIncreaseParallelism(8);
+    }
+}
@@ -0,0 +1,51 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.rocksdb;
+
+import org.rocksdb.Options;
+
+import java.util.function.Supplier;
+
+/**
+ * Named RocksDb option sets tuned for a workload, see {@link RocksDbOptions} for the settings of each profile
+ */
+public enum RocksDbProfile {
+
+    /**
+     * Memory-mapped plain tables, the default RocksDbMap configuration. Doesn't support range scans.
+     */
+    PLAIN_TABLE(RocksDbOptions::plainTable),
+
+    /**
+     * Gets and containsKey of existing and missing keys
+     */
+    POINT_LOOKUP(RocksDbOptions::pointLookup),
+
+    /**
+     * Iteration over the whole map or key ranges
+     */
+    SCAN_HEAVY(RocksDbOptions::scanHeavy),
+
+    /**
+     * Sustained puts and bulk loads
+     */
+    WRITE_HEAVY(RocksDbOptions::writeHeavy),
+
+    /**
+     * Bounded memory footprint at the cost of throughput
+     */
+    LOW_MEMORY(RocksDbOptions::lowMemory);
+
+    private final Supplier<Options> options;
+
+    RocksDbProfile(Supplier<Options> options) {
+        this.options = options;
+    }
+
+    /**
+     * A new option set of the profile, owned by the caller
+     *
+     * @return db options
+     */
+    public Options options() {
+        return options.get();
+    }
+}
@@ -0,0 +1,105 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.rocksdb;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.Snapshot;
+
+import java.util.AbstractMap;
+import java.util.Set;
+
+/**
+ * Read-only view of a {@link RocksDbMap} at a version, backed by a RocksDb snapshot.
+ * Snapshots are reference counted, every {@link RocksDbMap#snapshot(long)}, {@link RocksDbMap#snapshotAt(long)}
+ * or successful {@link #retain()} call has to be paired with a {@link #close()} call,
+ * the RocksDb snapshot is released with the last reference.
+ * A live snapshot keeps the versions of the keys it sees from being compacted away,
+ * so it holds disk space and memory until it's released.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class RocksDbSnapshot<K, V> extends AbstractMap<K, V> implements AutoCloseable {
+
+    @Getter
+    private final long version;
+
+    private final RocksDbMap<K, V> map;
+    private final RocksDbSnapshotRegistry<K, V> registry;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final Snapshot snapshot;
+
+    /**
+     * Read options with the snapshot, all the reads of the view go through them
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private final ReadOptions readOptions;
+
+    /**
+     * Number of open references, guarded by the registry
+     */
+    int references = 1;
+    private volatile boolean released;
+
+    RocksDbSnapshot(RocksDbMap<K, V> map, RocksDbSnapshotRegistry<K, V> registry, long version, Snapshot snapshot) {
+        this.map = map;
+        this.registry = registry;
+        this.version = version;
+        this.snapshot = snapshot;
+        this.readOptions = new ReadOptions(map.getReadOptions()).setSnapshot(snapshot);
+    }
+
+    @Override
+    public V get(Object key) {
+        checkReleased();
+        return map.get(key, readOptions);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        checkReleased();
+        return map.containsKey(key, readOptions);
+    }
+
+    /**
+     * Lazy view of the entries at the snapshot, see {@link RocksDbMap#entrySet()}.
+     * The size of the view is a scan.
+     *
+     * @return entries
+     */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        checkReleased();
+        return map.entrySet(readOptions);
+    }
+
+    /**
+     * Acquire one more reference to the snapshot, the reference has to be closed.
+     * Lets a reader share a published snapshot without looking it up by version.
+     *
+     * @return false if the snapshot is already released
+     */
+    public boolean retain() {
+        return registry.retain(this);
+    }
+
+    /**
+     * Release the reference
+     */
+    @Override
+    public void close() {
+        registry.release(this);
+    }
+
+    void markReleased() {
+        released = true;
+        readOptions.close();
+    }
+
+    private void checkReleased() {
+        if (released) {
+            throw new IllegalStateException("Snapshot is released. Version: " + version);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.rocksdb;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Live snapshots of a {@link RocksDbMap} by version. A version has at most one RocksDb snapshot,
+ * shared by all the readers of the version.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+class RocksDbSnapshotRegistry<K, V> {
+
+    private final RocksDbMap<K, V> map;
+    private final Map<Long, RocksDbSnapshot<K, V>> snapshots = new HashMap<>();
+
+    RocksDbSnapshotRegistry(RocksDbMap<K, V> map) {
+        this.map = map;
+    }
+
+    /**
+     * Acquire the snapshot of a version, a new snapshot of the current state of the database
+     * is taken if the version doesn't have a live snapshot
+     *
+     * @param version version
+     * @return snapshot
+     */
+    synchronized RocksDbSnapshot<K, V> acquire(long version) {
+        RocksDbSnapshot<K, V> snapshot = snapshots.get(version);
+        if (snapshot != null) {
+            snapshot.references++;
+            return snapshot;
+        }
+
+        snapshot = new RocksDbSnapshot<>(map, this, version, map.getDb().getSnapshot());
+        snapshots.put(version, snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Acquire the live snapshot of a version
+     *
+     * @param version version
+     * @return snapshot or empty if the version doesn't have a live snapshot
+     */
+    synchronized Optional<RocksDbSnapshot<K, V>> acquireExisting(long version) {
+        RocksDbSnapshot<K, V> snapshot = snapshots.get(version);
+        if (snapshot == null) {
+            return Optional.empty();
+        }
+
+        snapshot.references++;
+        return Optional.of(snapshot);
+    }
+
+    /**
+     * Acquire one more reference to a snapshot if it's still live
+     *
+     * @param snapshot snapshot
+     * @return false if the snapshot is released
+     */
+    synchronized boolean retain(RocksDbSnapshot<K, V> snapshot) {
+        if (snapshot.references <= 0) {
+            return false;
+        }
+
+        snapshot.references++;
+        return true;
+    }
+
+    synchronized void release(RocksDbSnapshot<K, V> snapshot) {
+        if (snapshot.references <= 0) {
+            throw new IllegalStateException("Snapshot is released. Version: " + snapshot.getVersion());
+        }
+
+        snapshot.references--;
+        if (snapshot.references == 0) {
+            snapshots.remove(snapshot.getVersion());
+            dispose(snapshot);
+        }
+    }
+
+    synchronized int size() {
+        return snapshots.size();
+    }
+
+    /**
+     * Release all the snapshots regardless of references, called before the database is closed
+     */
+    synchronized void releaseAll() {
+        for (RocksDbSnapshot<K, V> snapshot : snapshots.values()) {
+            snapshot.references = 0;
+            dispose(snapshot);
+        }
+        snapshots.clear();
+    }
+
+    private void dispose(RocksDbSnapshot<K, V> snapshot) {
+        snapshot.markReleased();
+        map.getDb().releaseSnapshot(snapshot.getSnapshot());
+    }
+}
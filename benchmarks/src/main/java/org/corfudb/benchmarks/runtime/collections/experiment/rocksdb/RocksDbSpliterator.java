@@ -0,0 +1,259 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.rocksdb;
+
+import lombok.NonNull;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.Slice;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Lazy scan over a key range [lower, upper) of a {@link RocksDbMap}, elements are read on demand.
+ * The native iterator is opened on the first element and released as soon as the range is exhausted.
+ * Closing the root spliterator releases the iterators of all the spliterators split from it,
+ * so a scan that may stop early has to be closed.
+ * <p>
+ * A range is split at the midpoint of its boundary keys, which are used as iterate bounds
+ * of the native iterators. Ranges can't be split if the table format doesn't support
+ * total order seek (plain table), then the map is scanned sequentially.
+ *
+ * @param <T> element type
+ */
+class RocksDbSpliterator<T> implements Spliterator<T>, AutoCloseable {
+
+    private final RocksDbMap<?, ?> map;
+    private final ReadOptions baseOptions;
+    private final Function<RocksIterator, T> reader;
+    private final int characteristics;
+
+    /**
+     * All the spliterators split from the same root, including the root itself
+     */
+    private final Queue<RocksDbSpliterator<T>> family;
+
+    /**
+     * Inclusive lower bound, null - the first key
+     */
+    private byte[] lower;
+
+    /**
+     * Exclusive upper bound, null - after the last key
+     */
+    private byte[] upper;
+
+    private long estimate;
+    private boolean exhausted;
+
+    private ReadOptions readOptions;
+    private Slice lowerSlice;
+    private Slice upperSlice;
+    private RocksIterator iterator;
+
+    RocksDbSpliterator(@NonNull RocksDbMap<?, ?> map, @NonNull Function<RocksIterator, T> reader,
+                       int characteristics) {
+        this(map, map.getReadOptions(), reader, characteristics, null, null);
+    }
+
+    /**
+     * Spliterator over a key range
+     *
+     * @param map             the map
+     * @param options         base read options, e.g. with a snapshot
+     * @param reader          reads an element from the current iterator position
+     * @param characteristics spliterator characteristics
+     * @param lower           inclusive encoded lower bound, null - the first key
+     * @param upper           exclusive encoded upper bound, null - after the last key
+     */
+    RocksDbSpliterator(@NonNull RocksDbMap<?, ?> map, @NonNull ReadOptions options,
+                       @NonNull Function<RocksIterator, T> reader, int characteristics, byte[] lower, byte[] upper) {
+        this(map, options, reader, characteristics, new ConcurrentLinkedQueue<>(), lower, upper, map.estimateSize());
+    }
+
+    private RocksDbSpliterator(RocksDbMap<?, ?> map, ReadOptions options, Function<RocksIterator, T> reader,
+                               int characteristics, Queue<RocksDbSpliterator<T>> family,
+                               byte[] lower, byte[] upper, long estimate) {
+        this.map = map;
+        this.baseOptions = options;
+        this.reader = reader;
+        this.characteristics = characteristics | Spliterator.ORDERED | Spliterator.NONNULL;
+        this.family = family;
+        this.lower = lower;
+        this.upper = upper;
+        this.estimate = estimate;
+
+        family.add(this);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (exhausted) {
+            return false;
+        }
+
+        if (iterator == null) {
+            open();
+        }
+
+        if (!iterator.isValid()) {
+            try {
+                iterator.status();
+            } catch (RocksDBException e) {
+                throw new IllegalStateException("can't iterate", e);
+            } finally {
+                exhausted = true;
+                release();
+            }
+            return false;
+        }
+
+        action.accept(reader.apply(iterator));
+        iterator.next();
+        return true;
+    }
+
+    private void open() {
+        readOptions = new ReadOptions(baseOptions);
+        if (map.getReadaheadSize() > 0) {
+            readOptions.setReadaheadSize(map.getReadaheadSize());
+        }
+        if (lower != null) {
+            lowerSlice = new Slice(lower);
+            readOptions.setTotalOrderSeek(true).setIterateLowerBound(lowerSlice);
+        }
+        if (upper != null) {
+            upperSlice = new Slice(upper);
+            readOptions.setTotalOrderSeek(true).setIterateUpperBound(upperSlice);
+        }
+
+        iterator = map.getDb().newIterator(map.getDataColumn(), readOptions);
+        if (lower == null) {
+            iterator.seekToFirst();
+        } else {
+            iterator.seek(lower);
+        }
+    }
+
+    /**
+     * Split off the first half of the range, only possible before the iteration has started
+     *
+     * @return spliterator over the first half of the range, or null if the range can't be split
+     */
+    @Override
+    public RocksDbSpliterator<T> trySplit() {
+        if (iterator != null || exhausted || !map.isRangeScanSupported()) {
+            return null;
+        }
+
+        if (lower == null || upper == null) {
+            if (!resolveBounds()) {
+                return null;
+            }
+        }
+
+        byte[] mid = midpoint(lower, upper);
+        if (mid == null) {
+            return null;
+        }
+
+        RocksDbSpliterator<T> prefix = new RocksDbSpliterator<>(
+                map, baseOptions, reader, characteristics, family, lower, mid, estimate / 2
+        );
+        lower = mid;
+        estimate -= prefix.estimate;
+
+        return prefix;
+    }
+
+    /**
+     * Replace open bounds with the first key and the successor of the last key
+     *
+     * @return false if the map is empty
+     */
+    private boolean resolveBounds() {
+        try (RocksIterator iter = map.getDb().newIterator(map.getDataColumn(), baseOptions)) {
+            if (lower == null) {
+                iter.seekToFirst();
+                if (!iter.isValid()) {
+                    return false;
+                }
+                lower = iter.key();
+            }
+
+            if (upper == null) {
+                iter.seekToLast();
+                if (!iter.isValid()) {
+                    return false;
+                }
+                upper = Arrays.copyOf(iter.key(), iter.key().length + 1);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * A key strictly between two keys. The keys are padded with zeros to the same length
+     * (plus one byte of precision) and treated as unsigned integers.
+     *
+     * @param low  lower key
+     * @param high upper key
+     * @return middle key or null if there is no key between the keys
+     */
+    static byte[] midpoint(byte[] low, byte[] high) {
+        int length = Math.max(low.length, high.length) + 1;
+        BigInteger sum = new BigInteger(1, Arrays.copyOf(low, length))
+                .add(new BigInteger(1, Arrays.copyOf(high, length)));
+        byte[] value = sum.shiftRight(1).toByteArray();
+
+        byte[] mid = new byte[length];
+        int copied = Math.min(value.length, length);
+        System.arraycopy(value, value.length - copied, mid, length - copied, copied);
+
+        boolean between = RocksDbBulkWriter.compareBytes(low, mid) < 0
+                && RocksDbBulkWriter.compareBytes(mid, high) < 0;
+        return between ? mid : null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return characteristics;
+    }
+
+    private void release() {
+        if (iterator != null) {
+            iterator.close();
+        }
+        if (readOptions != null) {
+            readOptions.close();
+        }
+        if (lowerSlice != null) {
+            lowerSlice.close();
+        }
+        if (upperSlice != null) {
+            upperSlice.close();
+        }
+    }
+
+    /**
+     * Release native iterators of the spliterator and all the spliterators split from the same root
+     */
+    @Override
+    public void close() {
+        family.forEach(spliterator -> {
+            spliterator.exhausted = true;
+            spliterator.release();
+        });
+    }
+}
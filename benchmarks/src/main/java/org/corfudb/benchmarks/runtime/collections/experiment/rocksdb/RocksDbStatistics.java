@@ -0,0 +1,212 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.rocksdb;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.HistogramData;
+import org.rocksdb.HistogramType;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.Statistics;
+import org.rocksdb.Status;
+import org.rocksdb.TickerType;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Snapshot of RocksDb statistics of a {@link RocksDbMap}. Tickers and histograms are counted
+ * since the statistics were last reset, stall counts since the database was opened,
+ * sizes are the current values.
+ * Latencies are in microseconds.
+ */
+@Builder
+@Getter
+@ToString
+public class RocksDbStatistics {
+
+    /**
+     * "Stalls(count): 0 level0_slowdown, 0 level0_numfiles, ..., 0 memtable_slowdown, interval 0 total count"
+     * line of rocksdb.cfstats property
+     */
+    private static final Pattern STALL_COUNT = Pattern.compile("(\\d+) ([a-z_0-9 ]+?)(?=,|$)");
+
+    /**
+     * Latency histogram of an operation
+     */
+    @Builder
+    @Getter
+    @ToString
+    public static class Latency {
+        private final long count;
+        private final double average;
+        private final double p50;
+        private final double p99;
+        private final double max;
+
+        static Latency of(HistogramData data) {
+            return Latency.builder()
+                    .count(data.getCount())
+                    .average(data.getAverage())
+                    .p50(data.getMedian())
+                    .p99(data.getPercentile99())
+                    .max(data.getMax())
+                    .build();
+        }
+    }
+
+    @NonNull
+    private final Latency get;
+
+    @NonNull
+    private final Latency write;
+
+    @NonNull
+    private final Latency seek;
+
+    private final long blockCacheHits;
+    private final long blockCacheMisses;
+
+    /**
+     * Time writers spent waiting for flushes and compactions
+     */
+    private final long stallMicros;
+
+    /**
+     * Writes delayed or stopped because of too many memtables waiting for a flush
+     */
+    private final long memtableStalls;
+
+    /**
+     * Writes delayed or stopped because of too many L0 files or too many pending compaction bytes
+     */
+    private final long compactionStalls;
+
+    /**
+     * Current compaction state: files at level 0, bytes compactions have to rewrite to bring
+     * all the levels under their targets and compactions running right now
+     */
+    private final long level0Files;
+    private final long pendingCompactionBytes;
+    private final long runningCompactions;
+
+    /**
+     * Bytes written by users, by flushes and by compactions
+     */
+    private final long bytesWritten;
+    private final long flushBytesWritten;
+    private final long compactionBytesWritten;
+
+    /**
+     * Live snapshots of the database. Snapshots keep old versions of keys, which shows up in memtable
+     * and sst file sizes growing over the estimated live data size.
+     */
+    private final long snapshots;
+    private final long memtableBytes;
+    private final long sstFilesBytes;
+    private final long liveDataBytes;
+
+    /**
+     * Native memory of the whole database: memtables of all the column families, the block cache
+     * (shared by all the column families) and table readers, i.e. indexes and filters outside the block cache
+     */
+    private final long totalMemtableBytes;
+    private final long blockCacheBytes;
+    private final long tableReadersBytes;
+
+    /**
+     * Block cache hits to all the block cache lookups, 0 if there were no lookups
+     *
+     * @return hit ratio
+     */
+    public double getBlockCacheHitRatio() {
+        long lookups = blockCacheHits + blockCacheMisses;
+        return lookups == 0 ? 0 : (double) blockCacheHits / lookups;
+    }
+
+    /**
+     * Bytes written to the disk for every byte written by users, 0 if nothing was written
+     *
+     * @return write amplification
+     */
+    public double getWriteAmplification() {
+        return bytesWritten == 0 ? 0 : (double) (flushBytesWritten + compactionBytesWritten) / bytesWritten;
+    }
+
+    /**
+     * Take a snapshot of the statistics
+     *
+     * @param statistics database statistics
+     * @param db         database
+     * @param column     column family to get stall counts for
+     * @return statistics snapshot
+     * @throws RocksDBException db exception
+     */
+    static RocksDbStatistics of(Statistics statistics, RocksDB db, ColumnFamilyHandle column)
+            throws RocksDBException {
+
+        long memtableStalls = 0;
+        long compactionStalls = 0;
+
+        String cfStats = db.getProperty(column, "rocksdb.cfstats");
+        for (String line : cfStats.split("\n")) {
+            if (!line.startsWith("Stalls(count):")) {
+                continue;
+            }
+
+            Matcher matcher = STALL_COUNT.matcher(line);
+            while (matcher.find()) {
+                long count = Long.parseLong(matcher.group(1));
+                String cause = matcher.group(2);
+                if (cause.startsWith("memtable")) {
+                    memtableStalls += count;
+                } else if (cause.contains("level0") || cause.contains("pending_compaction_bytes")) {
+                    compactionStalls += count;
+                }
+            }
+        }
+
+        return RocksDbStatistics.builder()
+                .get(Latency.of(statistics.getHistogramData(HistogramType.DB_GET)))
+                .write(Latency.of(statistics.getHistogramData(HistogramType.DB_WRITE)))
+                .seek(Latency.of(statistics.getHistogramData(HistogramType.DB_SEEK)))
+                .blockCacheHits(statistics.getTickerCount(TickerType.BLOCK_CACHE_HIT))
+                .blockCacheMisses(statistics.getTickerCount(TickerType.BLOCK_CACHE_MISS))
+                .stallMicros(statistics.getTickerCount(TickerType.STALL_MICROS))
+                .memtableStalls(memtableStalls)
+                .compactionStalls(compactionStalls)
+                .level0Files(Long.parseLong(db.getProperty(column, "rocksdb.num-files-at-level0")))
+                .pendingCompactionBytes(db.getLongProperty(column, "rocksdb.estimate-pending-compaction-bytes"))
+                .runningCompactions(db.getLongProperty("rocksdb.num-running-compactions"))
+                .bytesWritten(statistics.getTickerCount(TickerType.BYTES_WRITTEN))
+                .flushBytesWritten(statistics.getTickerCount(TickerType.FLUSH_WRITE_BYTES))
+                .compactionBytesWritten(statistics.getTickerCount(TickerType.COMPACT_WRITE_BYTES))
+                .snapshots(db.getLongProperty("rocksdb.num-snapshots"))
+                .memtableBytes(db.getLongProperty(column, "rocksdb.size-all-mem-tables"))
+                .sstFilesBytes(db.getLongProperty(column, "rocksdb.total-sst-files-size"))
+                .liveDataBytes(db.getLongProperty(column, "rocksdb.estimate-live-data-size"))
+                .totalMemtableBytes(db.getAggregatedLongProperty("rocksdb.size-all-mem-tables"))
+                .blockCacheBytes(optionalProperty(db, column, "rocksdb.block-cache-usage"))
+                .tableReadersBytes(db.getAggregatedLongProperty("rocksdb.estimate-table-readers-mem"))
+                .build();
+    }
+
+    /**
+     * A property the table format may not have, e.g. plain table has no block cache
+     *
+     * @return property value, 0 if the column family doesn't have the property
+     */
+    private static long optionalProperty(RocksDB db, ColumnFamilyHandle column, String property)
+            throws RocksDBException {
+        try {
+            return db.getLongProperty(column, property);
+        } catch (RocksDBException e) {
+            if (e.getStatus() != null && e.getStatus().getCode() == Status.Code.NotFound) {
+                return 0;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.rocksdb;
+
+import io.netty.buffer.ByteBuf;
+import org.rocksdb.WriteBatch;
+
+/**
+ * Write batch of a thread for the writes of a {@link RocksDbMap} that update the exact key counter
+ * together with the data.
+ * <p>
+ * WriteBatch of rocksdbjni takes whole arrays only, without an offset and a length, so the key and the value
+ * are copied out of the codec buffers into arrays that are reused while their size doesn't change.
+ * The batch is cleared and reused as well, a write doesn't allocate once the sizes settle.
+ */
+class RocksDbWriteBuffers implements AutoCloseable {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final WriteBatch batch = new WriteBatch();
+    private byte[] key = EMPTY;
+    private byte[] value = EMPTY;
+
+    /**
+     * The batch of the thread, cleared
+     *
+     * @return empty write batch
+     */
+    WriteBatch batch() {
+        batch.clear();
+        return batch;
+    }
+
+    /**
+     * Copy the readable region of a key buffer into the key array
+     *
+     * @param buffer serialized key
+     * @return array holding exactly the key, valid until the next call
+     */
+    byte[] key(ByteBuf buffer) {
+        key = copy(buffer, key);
+        return key;
+    }
+
+    /**
+     * Copy the readable region of a value buffer into the value array
+     *
+     * @param buffer serialized value
+     * @return array holding exactly the value, valid until the next call
+     */
+    byte[] value(ByteBuf buffer) {
+        value = copy(buffer, value);
+        return value;
+    }
+
+    private static byte[] copy(ByteBuf buffer, byte[] target) {
+        int length = buffer.readableBytes();
+        byte[] array = target.length == length ? target : new byte[length];
+        buffer.getBytes(buffer.readerIndex(), array);
+        return array;
+    }
+
+    @Override
+    public void close() {
+        batch.close();
+    }
+}
@@ -0,0 +1,365 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.writebehind;
+
+import lombok.Builder;
+import lombok.Builder.Default;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes to a map, usually a persisted one, applied asynchronously by a background thread,
+ * so the writers don't wait for the map.
+ * <p>
+ * A put or a remove is appended to a lock-free ring buffer and becomes the pending write of its key.
+ * The flusher thread takes the writes from the buffer in batches: a write that is not the pending write
+ * of its key anymore is coalesced, it's overwritten by a later write and skipped. The puts of a batch
+ * go to the backend by a single putAll call. A write is applied once there is a full batch (or a half
+ * of the buffer) or when it was in the buffer for the max delay, which bounds the staleness of the backend.
+ * Writers wait while the buffer is full, so a slow backend slows the writers down instead of filling the heap.
+ * <p>
+ * Reads see the pending writes of the map before they are applied. Put returns the value it puts,
+ * like the other maps of the experiment, remove returns the value of a pending write only,
+ * neither of them reads the backend. Size, iteration and clear apply the pending writes first,
+ * the writes racing with them may be applied later.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+@Slf4j
+@Builder
+public class WriteBehindMap<K, V> extends AbstractMap<K, V> implements AutoCloseable {
+
+    private static final long BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    @NonNull
+    @Getter
+    private final Map<K, V> backend;
+
+    /**
+     * Capacity of the write buffer, a power of two
+     */
+    @Default
+    private final int bufferSize = 64 * 1024;
+
+    /**
+     * Max number of writes applied to the backend at once
+     */
+    @Default
+    private final int batchSize = 1000;
+
+    /**
+     * Max time a write waits in the buffer for a full batch
+     */
+    @Default
+    private final long maxDelayMs = 10;
+
+    private final Map<K, Write<K, V>> pending = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    /**
+     * Buffer position up to which the writes are applied
+     */
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong flushTarget = new AtomicLong();
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder appliedWrites = new LongAdder();
+    private final LongAdder coalescedWrites = new LongAdder();
+    private final LongAdder backpressureWaits = new LongAdder();
+
+    private WriteRing<Write<K, V>> ring;
+    private Thread flusher;
+
+    /**
+     * Number of buffered writes the flusher applies without waiting, a batch or a half of the buffer
+     */
+    private int flushThreshold;
+
+    /**
+     * A put or a remove (null value)
+     */
+    private static class Write<K, V> {
+        private final K key;
+        private final V value;
+        private final long time = System.nanoTime();
+
+        Write(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Allocate the buffer and start the flusher
+     *
+     * @return the map
+     */
+    public WriteBehindMap<K, V> init() {
+        if (batchSize <= 0 || maxDelayMs <= 0) {
+            throw new IllegalArgumentException("Invalid write-behind configuration");
+        }
+
+        ring = new WriteRing<>(bufferSize);
+        flushThreshold = Math.max(1, Math.min(batchSize, bufferSize / 2));
+        flusher = new Thread(this::flushLoop, "write-behind-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+
+        return this;
+    }
+
+    @Override
+    public V get(@NonNull Object key) {
+        Write<K, V> write = pending.get(key);
+        return write == null ? backend.get(key) : write.value;
+    }
+
+    @Override
+    public boolean containsKey(@NonNull Object key) {
+        Write<K, V> write = pending.get(key);
+        return write == null ? backend.containsKey(key) : write.value != null;
+    }
+
+    @Override
+    public V put(@NonNull K key, @NonNull V value) {
+        write(new Write<>(key, value));
+        return value;
+    }
+
+    @Override
+    public V remove(@NonNull Object key) {
+        @SuppressWarnings("unchecked")
+        Write<K, V> previous = write(new Write<>((K) key, null));
+        return previous == null ? null : previous.value;
+    }
+
+    @Override
+    public void putAll(@NonNull Map<? extends K, ? extends V> map) {
+        map.forEach(this::put);
+    }
+
+    private Write<K, V> write(Write<K, V> write) {
+        checkState();
+        Write<K, V> previous = pending.put(write.key, write);
+
+        long position;
+        while ((position = ring.offer(write)) < 0) {
+            backpressureWaits.increment();
+            LockSupport.unpark(flusher);
+            LockSupport.parkNanos(BACKOFF_NANOS);
+            checkState();
+        }
+
+        if ((position + 1) % flushThreshold == 0) {
+            LockSupport.unpark(flusher);
+        }
+
+        return previous;
+    }
+
+    private void checkState() {
+        RuntimeException error = failure.get();
+        if (error != null) {
+            throw new IllegalStateException("can't apply pending writes", error);
+        }
+        if (closed.get()) {
+            throw new IllegalStateException("Write-behind map is closed");
+        }
+    }
+
+    /**
+     * Wait until all the writes made before the call are applied to the backend
+     */
+    public void flush() {
+        long target = ring.getTail();
+        flushTarget.accumulateAndGet(target, Math::max);
+
+        while (flushed.get() < target) {
+            RuntimeException error = failure.get();
+            if (error != null) {
+                throw new IllegalStateException("can't apply pending writes", error);
+            }
+
+            LockSupport.unpark(flusher);
+            LockSupport.parkNanos(BACKOFF_NANOS);
+        }
+    }
+
+    private void flushLoop() {
+        long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        Map<K, Write<K, V>> batch = new LinkedHashMap<>();
+
+        while (true) {
+            long head = ring.getHead();
+            long buffered = ring.getTail() - head;
+            if (buffered == 0) {
+                if (closed.get()) {
+                    return;
+                }
+                LockSupport.parkNanos(maxDelayNanos);
+                continue;
+            }
+
+            Write<K, V> oldest = ring.peek();
+            if (oldest == null) {
+                // the position is claimed, the write is not published yet
+                LockSupport.parkNanos(BACKOFF_NANOS);
+                continue;
+            }
+
+            long age = System.nanoTime() - oldest.time;
+            boolean due = buffered >= flushThreshold || age >= maxDelayNanos
+                    || flushTarget.get() > head || closed.get();
+            if (!due) {
+                LockSupport.parkNanos(maxDelayNanos - age);
+                continue;
+            }
+
+            try {
+                applyBatch(batch);
+            } catch (RuntimeException e) {
+                log.error("Write-behind flush failed", e);
+                failure.set(e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Take up to a batch of writes from the buffer, skip the overwritten ones and apply the rest
+     */
+    private void applyBatch(Map<K, Write<K, V>> batch) {
+        batch.clear();
+        int taken = 0;
+        Write<K, V> write;
+        while (taken < batchSize && (write = ring.poll()) != null) {
+            taken++;
+            if (pending.get(write.key) != write || batch.put(write.key, write) != null) {
+                coalescedWrites.increment();
+            }
+        }
+
+        Map<K, V> puts = new HashMap<>(batch.size() * 4 / 3 + 1);
+        for (Write<K, V> latest : batch.values()) {
+            if (latest.value == null) {
+                backend.remove(latest.key);
+            } else {
+                puts.put(latest.key, latest.value);
+            }
+        }
+        if (!puts.isEmpty()) {
+            backend.putAll(puts);
+        }
+
+        // a write stays visible through the pending writes until the backend has it
+        for (Write<K, V> latest : batch.values()) {
+            pending.remove(latest.key, latest);
+        }
+
+        batches.increment();
+        appliedWrites.add(batch.size());
+        flushed.set(ring.getHead());
+    }
+
+    @Override
+    public int size() {
+        flush();
+        return backend.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        flush();
+        return backend.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        flush();
+        backend.clear();
+    }
+
+    /**
+     * Read-only view of the entries of the backend, the pending writes are applied first
+     *
+     * @return entries
+     */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        flush();
+        return Collections.unmodifiableSet(backend.entrySet());
+    }
+
+    /**
+     * Apply the pending writes and stop the flusher. The backend stays open.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        RuntimeException error = failure.get();
+        if (error != null) {
+            throw new IllegalStateException("can't apply pending writes", error);
+        }
+    }
+
+    /**
+     * Number of writes in the buffer
+     *
+     * @return number of writes
+     */
+    public long getBufferedWrites() {
+        return ring.getTail() - ring.getHead();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    public long getAppliedWrites() {
+        return appliedWrites.sum();
+    }
+
+    /**
+     * Number of writes skipped because a later write of the same key was made before they were applied
+     *
+     * @return number of writes
+     */
+    public long getCoalescedWrites() {
+        return coalescedWrites.sum();
+    }
+
+    /**
+     * Number of times a writer waited for a full buffer
+     *
+     * @return number of waits
+     */
+    public long getBackpressureWaits() {
+        return backpressureWaits.sum();
+    }
+}
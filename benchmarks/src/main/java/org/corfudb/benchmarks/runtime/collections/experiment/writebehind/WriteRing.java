@@ -0,0 +1,115 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.writebehind;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer for many producers and a single consumer.
+ * <p>
+ * Every slot has a sequence number: a producer claims the tail position with a cas when the sequence
+ * of its slot equals the position, writes the element and publishes it by setting the sequence
+ * to the position + 1. The consumer takes the element once it's published and frees the slot for the next
+ * lap by setting the sequence to the position + capacity.
+ *
+ * @param <E> element type
+ */
+class WriteRing<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Written by the consumer only
+     */
+    private volatile long head;
+
+    WriteRing(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+
+        slots = new AtomicReferenceArray<>(capacity);
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * Append an element
+     *
+     * @param element element
+     * @return position of the element or -1 if the buffer is full
+     */
+    long offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long lag = sequences.get(index) - position;
+
+            if (lag == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.lazySet(index, element);
+                    sequences.set(index, position + 1);
+                    return position;
+                }
+            } else if (lag < 0) {
+                return -1;
+            }
+            // otherwise another producer has claimed the position
+        }
+    }
+
+    /**
+     * The first element, consumer only
+     *
+     * @return element or null if there is no published element
+     */
+    E peek() {
+        long position = head;
+        int index = (int) position & mask;
+        return sequences.get(index) == position + 1 ? slots.get(index) : null;
+    }
+
+    /**
+     * Take the first element, consumer only
+     *
+     * @return element or null if there is no published element
+     */
+    E poll() {
+        long position = head;
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+
+        E element = slots.get(index);
+        slots.lazySet(index, null);
+        sequences.set(index, position + mask + 1);
+        head = position + 1;
+        return element;
+    }
+
+    /**
+     * Position of the next element the consumer takes
+     *
+     * @return position
+     */
+    long getHead() {
+        return head;
+    }
+
+    /**
+     * Position of the next element a producer appends, the elements before it may be not published yet
+     *
+     * @return position
+     */
+    long getTail() {
+        return tail.get();
+    }
+}
@@ -1,6 +1,6 @@
 package org.corfudb.benchmarks.util;
 
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Fast data generator, can be used to achieve high throughput for data-intensive operations.
@@ -8,7 +8,6 @@ import java.util.Random;
 public class DataGenerator {
 
     private static final char[] CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ1234567890".toCharArray();
-    private static final Random rnd = new Random();
 
     private static final int PRE_GENERATED_DATASET_SIZE = 16 * 1024 * 1024;
     private static final char[] PRE_GENERATED = generate();
@@ -25,11 +24,12 @@ public class DataGenerator {
      */
     public static String generateDataString(int size) {
         int length = PRE_GENERATED.length;
-        int offset = rnd.nextInt(length - size - 1);
+        int offset = ThreadLocalRandom.current().nextInt(length - size - 1);
         return new String(PRE_GENERATED, offset, size);
     }
 
     private static char[] generate() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
         char[] result = new char[PRE_GENERATED_DATASET_SIZE];
         for (int i = 0; i < PRE_GENERATED_DATASET_SIZE; i++) {
             result[i] = CHARS[rnd.nextInt(CHARS.length)];
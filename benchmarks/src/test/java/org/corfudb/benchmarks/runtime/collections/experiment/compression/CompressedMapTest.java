@@ -0,0 +1,58 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.compression;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompressedMapTest {
+
+    /**
+     * Values up to the size of the compressed header can't get shorter, every codec stores them as is
+     */
+    @Test
+    public void testTinyValues() {
+        for (ValueCodec codec : ValueCodec.values()) {
+            try (CompressedMap<Integer> map = CompressedMap.<Integer>builder()
+                    .backend(new HashMap<>())
+                    .codec(codec)
+                    .minSize(0)
+                    .build()) {
+
+                StringBuilder value = new StringBuilder();
+                for (int size = 0; size <= Integer.BYTES; size++) {
+                    map.put(size, value.toString());
+                    value.append('a');
+                }
+
+                value.setLength(0);
+                for (int size = 0; size <= Integer.BYTES; size++) {
+                    assertThat(map.get(size)).isEqualTo(value.toString());
+                    assertThat(map.getBackend().get(size).length).isEqualTo(size + 1);
+                    value.append('a');
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            value.append("value").append(i % 4);
+        }
+
+        for (ValueCodec codec : ValueCodec.values()) {
+            try (CompressedMap<Integer> map = CompressedMap.<Integer>builder()
+                    .backend(new HashMap<>())
+                    .codec(codec)
+                    .minSize(0)
+                    .build()) {
+
+                map.put(1, value.toString());
+                assertThat(map.get(1)).isEqualTo(value.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package org.corfudb.benchmarks.runtime.collections.experiment.mmap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedLogMapTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+    private static final int HEADER = Integer.BYTES * 4;
+    private static final int KEY_SIZE_OFFSET = Integer.BYTES;
+    private static final int CAPACITY_OFFSET = Integer.BYTES * 3;
+
+    private static MappedLogMap<Integer, String> open(Path dbPath) throws IOException {
+        return MappedLogMap.<Integer, String>builder()
+                .keyType(Integer.class)
+                .valueType(String.class)
+                .dbPath(dbPath)
+                .segmentSize(SEGMENT_SIZE)
+                .compactionIntervalMs(0)
+                .build()
+                .init();
+    }
+
+    private static Path firstSegment(Path dbPath) throws IOException {
+        try (Stream<Path> files = Files.list(dbPath)) {
+            return files.sorted().findFirst().orElseThrow(IllegalStateException::new);
+        }
+    }
+
+    private static Path lastSegment(Path dbPath) throws IOException {
+        try (Stream<Path> files = Files.list(dbPath)) {
+            return files.sorted(Comparator.reverseOrder()).findFirst().orElseThrow(IllegalStateException::new);
+        }
+    }
+
+    private static int readInt(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+        channel.read(buffer, position);
+        buffer.flip();
+        return buffer.getInt();
+    }
+
+    private static void writeInt(FileChannel channel, long position, int value) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+        buffer.putInt(value).flip();
+        channel.write(buffer, position);
+    }
+
+    /**
+     * A kill in the middle of an append leaves a record without the key size, which is written last.
+     * The replay stops there and the next append overwrites the torn record.
+     */
+    @Test
+    public void testReplayAfterTornAppend(@TempDir Path dbPath) throws IOException {
+        MappedLogMap<Integer, String> killed = open(dbPath);
+        for (int i = 0; i < 10; i++) {
+            killed.put(i, "value" + i);
+        }
+        long end = killed.getLogBytes();
+        killed.abandon();
+
+        try (FileChannel channel = FileChannel.open(firstSegment(dbPath), StandardOpenOption.WRITE)) {
+            writeInt(channel, end + Integer.BYTES * 2, 8);
+            writeInt(channel, end + Integer.BYTES * 3, 8);
+        }
+
+        MappedLogMap<Integer, String> recovered = open(dbPath);
+        assertThat(recovered.size()).isEqualTo(10);
+        assertThat(recovered.getLogBytes()).isEqualTo(end);
+        for (int i = 0; i < 10; i++) {
+            assertThat(recovered.get(i)).isEqualTo("value" + i);
+        }
+
+        recovered.put(10, "value10");
+        recovered.close();
+
+        MappedLogMap<Integer, String> reopened = open(dbPath);
+        assertThat(reopened.size()).isEqualTo(11);
+        assertThat(reopened.get(10)).isEqualTo("value10");
+        reopened.close();
+    }
+
+    /**
+     * A kill in the middle of an in-place update leaves a record that fails the crc check,
+     * the replay drops the key and goes on with the next records
+     */
+    @Test
+    public void testReplaySkipsTornUpdate(@TempDir Path dbPath) throws IOException {
+        MappedLogMap<Integer, String> killed = open(dbPath);
+        for (int i = 0; i < 10; i++) {
+            killed.put(i, "value" + i);
+        }
+        killed.abandon();
+
+        try (FileChannel channel = FileChannel.open(firstSegment(dbPath),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int keySize = readInt(channel, KEY_SIZE_OFFSET);
+            ByteBuffer torn = ByteBuffer.wrap(new byte[]{'X'});
+            channel.write(torn, HEADER + keySize);
+        }
+
+        MappedLogMap<Integer, String> recovered = open(dbPath);
+        assertThat(recovered.size()).isEqualTo(9);
+        assertThat(recovered.get(0)).isNull();
+        for (int i = 1; i < 10; i++) {
+            assertThat(recovered.get(i)).isEqualTo("value" + i);
+        }
+        recovered.close();
+    }
+
+    /**
+     * A torn in-place update of a key with an older record in an earlier segment drops the key,
+     * the older value doesn't come back, not even after another reopen
+     */
+    @Test
+    public void testTornUpdateDoesNotResurrectOlderRecord(@TempDir Path dbPath) throws IOException {
+        MappedLogMap<Integer, String> killed = open(dbPath);
+        killed.put(0, "value0");
+        for (int i = 1; killed.getSegmentCount() < 2; i++) {
+            killed.put(i, "value" + i);
+        }
+        // a longer value doesn't fit the capacity of the older record and gets appended to the second segment
+        killed.put(0, "value0-appended");
+        // the update fits the capacity of the appended record and is written in place
+        killed.put(0, "value0-in-place");
+        killed.abandon();
+
+        try (FileChannel channel = FileChannel.open(lastSegment(dbPath),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the first record of the segment is the one that rolled it, the key 0 follows
+            int offset = HEADER + readInt(channel, KEY_SIZE_OFFSET) + readInt(channel, CAPACITY_OFFSET);
+            int keySize = readInt(channel, offset + KEY_SIZE_OFFSET);
+            ByteBuffer torn = ByteBuffer.wrap(new byte[]{'X'});
+            channel.write(torn, offset + HEADER + keySize);
+        }
+
+        MappedLogMap<Integer, String> recovered = open(dbPath);
+        assertThat(recovered.get(0)).isNull();
+        assertThat(recovered.get(1)).isEqualTo("value1");
+        int size = recovered.size();
+        recovered.close();
+
+        MappedLogMap<Integer, String> reopened = open(dbPath);
+        assertThat(reopened.get(0)).isNull();
+        assertThat(reopened.size()).isEqualTo(size);
+        reopened.close();
+    }
+
+    /**
+     * Compaction moves the live records out of the garbage segments, the moved records and the removals
+     * survive a reopen
+     */
+    @Test
+    public void testCompaction(@TempDir Path dbPath) throws IOException {
+        MappedLogMap<Integer, String> map = open(dbPath);
+        StringBuilder value = new StringBuilder();
+        for (int round = 0; round < 20; round++) {
+            // a longer value doesn't fit the capacity of the previous record and gets appended
+            value.append("12345678");
+            for (int i = 0; i < 10; i++) {
+                map.put(i, value.toString() + i);
+            }
+        }
+        map.remove(0);
+
+        int segments = map.getSegmentCount();
+        long logBytes = map.getLogBytes();
+        assertThat(segments).isGreaterThan(2);
+
+        map.compact();
+
+        assertThat(map.getSegmentCount()).isLessThan(segments);
+        assertThat(map.getLogBytes()).isLessThan(logBytes);
+        assertThat(map.size()).isEqualTo(9);
+        assertThat(map.get(0)).isNull();
+        for (int i = 1; i < 10; i++) {
+            assertThat(map.get(i)).isEqualTo(value.toString() + i);
+        }
+        map.close();
+
+        MappedLogMap<Integer, String> reopened = open(dbPath);
+        assertThat(reopened.size()).isEqualTo(9);
+        assertThat(reopened.get(0)).isNull();
+        for (int i = 1; i < 10; i++) {
+            assertThat(reopened.get(i)).isEqualTo(value.toString() + i);
+        }
+        reopened.close();
+    }
+}